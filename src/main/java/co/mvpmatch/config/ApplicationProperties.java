@@ -1,5 +1,9 @@
 package co.mvpmatch.config;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -9,4 +13,1073 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * See {@link tech.jhipster.config.JHipsterProperties} for a good example.
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
-public class ApplicationProperties {}
+public class ApplicationProperties {
+
+    private final CoinFloat coinFloat = new CoinFloat();
+
+    private final Change change = new Change();
+
+    private final Currency currency = new Currency();
+
+    private final Purchase purchase = new Purchase();
+
+    private final Inventory inventory = new Inventory();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final AsyncPurchase asyncPurchase = new AsyncPurchase();
+
+    private final Ledger ledger = new Ledger();
+
+    private final SellerRevenue sellerRevenue = new SellerRevenue();
+
+    private final PurchaseHistory purchaseHistory = new PurchaseHistory();
+
+    private final FastReject fastReject = new FastReject();
+
+    private final Reservation reservation = new Reservation();
+
+    private final WaitingRoom waitingRoom = new WaitingRoom();
+
+    private final ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+
+    private final RateLimit rateLimit = new RateLimit();
+
+    private final PasswordHashing passwordHashing = new PasswordHashing();
+
+    public CoinFloat getCoinFloat() {
+        return coinFloat;
+    }
+
+    public Change getChange() {
+        return change;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public Purchase getPurchase() {
+        return purchase;
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public AsyncPurchase getAsyncPurchase() {
+        return asyncPurchase;
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    public SellerRevenue getSellerRevenue() {
+        return sellerRevenue;
+    }
+
+    public PurchaseHistory getPurchaseHistory() {
+        return purchaseHistory;
+    }
+
+    public FastReject getFastReject() {
+        return fastReject;
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    public WaitingRoom getWaitingRoom() {
+        return waitingRoom;
+    }
+
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public PasswordHashing getPasswordHashing() {
+        return passwordHashing;
+    }
+
+    public static class CoinFloat {
+
+        /**
+         * Whether change is paid out of the coins the machine holds, instead of any coin it needs.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Coins, per value in cents, the float starts with for a coin that has no stored count yet.
+         */
+        private Map<Integer, Integer> initial = new LinkedHashMap<>();
+
+        /**
+         * Delay, in milliseconds, between two write-behind flushes of the machine coin float.
+         */
+        private long flushDelay = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<Integer, Integer> getInitial() {
+            return initial;
+        }
+
+        public void setInitial(Map<Integer, Integer> initial) {
+            this.initial = initial;
+        }
+
+        public long getFlushDelay() {
+            return flushDelay;
+        }
+
+        public void setFlushDelay(long flushDelay) {
+            this.flushDelay = flushDelay;
+        }
+    }
+
+    public static class Change {
+
+        /**
+         * Largest amount, in cents, for which each deposit keeps a table of the exact amounts it can pay.
+         */
+        private int exactChangeCap = 2000;
+
+        /**
+         * Largest number of items a change batch computes on one thread before it is split.
+         */
+        private int batchThreshold = 512;
+
+        /**
+         * Largest amount, in cents, a change batch computes change for.
+         */
+        private int maxAmount = 100_000;
+
+        /**
+         * Largest number of items a change batch may hold.
+         */
+        private int maxBatchSize = 10_000;
+
+        public int getExactChangeCap() {
+            return exactChangeCap;
+        }
+
+        public void setExactChangeCap(int exactChangeCap) {
+            this.exactChangeCap = exactChangeCap;
+        }
+
+        public int getBatchThreshold() {
+            return batchThreshold;
+        }
+
+        public void setBatchThreshold(int batchThreshold) {
+            this.batchThreshold = batchThreshold;
+        }
+
+        public int getMaxAmount() {
+            return maxAmount;
+        }
+
+        public void setMaxAmount(int maxAmount) {
+            this.maxAmount = maxAmount;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class Currency {
+
+        /**
+         * Name of the active entry of {@link #profiles}.
+         */
+        private String profile = "default";
+
+        /**
+         * Accepted coin values, in cents, per currency profile.
+         */
+        private Map<String, List<Integer>> profiles = new LinkedHashMap<>(Map.of("default", List.of(5, 10, 20, 50, 100)));
+
+        public String getProfile() {
+            return profile;
+        }
+
+        public void setProfile(String profile) {
+            this.profile = profile;
+        }
+
+        public Map<String, List<Integer>> getProfiles() {
+            return profiles;
+        }
+
+        public void setProfiles(Map<String, List<Integer>> profiles) {
+            this.profiles = profiles;
+        }
+    }
+
+    public static class Purchase {
+
+        public enum Concurrency {
+            OPTIMISTIC,
+            PESSIMISTIC,
+        }
+
+        /**
+         * How buyer operations guard the rows they update.
+         */
+        private Concurrency concurrency = Concurrency.OPTIMISTIC;
+
+        /**
+         * Number of times an optimistic transaction is run before its conflict is reported.
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Upper bound, in milliseconds, of the random pause before the first optimistic retry; doubled on each retry.
+         */
+        private long backoff = 5;
+
+        /**
+         * Cap, in milliseconds, of the pause between two optimistic retries.
+         */
+        private long maxBackoff = 100;
+
+        public Concurrency getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(Concurrency concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getBackoff() {
+            return backoff;
+        }
+
+        public void setBackoff(long backoff) {
+            this.backoff = backoff;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+    }
+
+    public static class Inventory {
+
+        /**
+         * Whether the stock of the products is kept in memory, instead of being read from the product rows.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Delay, in milliseconds, between two flushes of the unflushed stock changes to the product table.
+         */
+        private long flushDelay = 1000;
+
+        /**
+         * Number of products whose stock changes are written per transaction.
+         */
+        private int flushBatchSize = 1000;
+
+        /**
+         * Number of locks the product counters are spread over; rounded up to a power of two.
+         */
+        private int stripes = 64;
+
+        private final Lease lease = new Lease();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getFlushDelay() {
+            return flushDelay;
+        }
+
+        public void setFlushDelay(long flushDelay) {
+            this.flushDelay = flushDelay;
+        }
+
+        public int getFlushBatchSize() {
+            return flushBatchSize;
+        }
+
+        public void setFlushBatchSize(int flushBatchSize) {
+            this.flushBatchSize = flushBatchSize;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public Lease getLease() {
+            return lease;
+        }
+
+        public static class Lease {
+
+            /**
+             * Whether each node leases blocks of stock from the product rows and sells them from memory.
+             */
+            private boolean enabled = false;
+
+            /**
+             * Name of this node in its leases; a random one if empty. A fixed name lets the node take its leases
+             * back after a restart.
+             */
+            private String node = "";
+
+            /**
+             * Units leased from a product row at once.
+             */
+            private long blockSize = 50;
+
+            /**
+             * Time, in milliseconds, a lease lasts unless its node renews it.
+             */
+            private long duration = 30000;
+
+            /**
+             * Delay, in milliseconds, between two renewals of the leases of this node, which also write back the
+             * units sold from them.
+             */
+            private long renewDelay = 5000;
+
+            /**
+             * Time, in milliseconds, an expired lease is left to its node to write back what it sold before any
+             * other node gives it back; at least twice the renewal delay.
+             */
+            private long grace = 15000;
+
+            /**
+             * Time, in milliseconds, after which a lease nothing was sold from is given back.
+             */
+            private long idle = 60000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getNode() {
+                return node;
+            }
+
+            public void setNode(String node) {
+                this.node = node;
+            }
+
+            public long getBlockSize() {
+                return blockSize;
+            }
+
+            public void setBlockSize(long blockSize) {
+                this.blockSize = blockSize;
+            }
+
+            public long getDuration() {
+                return duration;
+            }
+
+            public void setDuration(long duration) {
+                this.duration = duration;
+            }
+
+            public long getRenewDelay() {
+                return renewDelay;
+            }
+
+            public void setRenewDelay(long renewDelay) {
+                this.renewDelay = renewDelay;
+            }
+
+            public long getGrace() {
+                return grace;
+            }
+
+            public void setGrace(long grace) {
+                this.grace = grace;
+            }
+
+            public long getIdle() {
+                return idle;
+            }
+
+            public void setIdle(long idle) {
+                this.idle = idle;
+            }
+        }
+    }
+
+    public static class Idempotency {
+
+        /**
+         * Number of results kept in memory; older ones are looked up in the database.
+         */
+        private int maxEntries = 10000;
+
+        /**
+         * Time, in milliseconds, a result is replayed for.
+         */
+        private long ttl = 86400000;
+
+        /**
+         * Delay, in milliseconds, between two purges of the expired results from the database.
+         */
+        private long purgeDelay = 60000;
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public long getPurgeDelay() {
+            return purgeDelay;
+        }
+
+        public void setPurgeDelay(long purgeDelay) {
+            this.purgeDelay = purgeDelay;
+        }
+    }
+
+    public static class AsyncPurchase {
+
+        /**
+         * Whether {@code POST /api/buy} queues the purchase and answers with a ticket instead of its result.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of threads running the queued purchases.
+         */
+        private int workers = 2;
+
+        /**
+         * Number of purchases queued before rejecting new ones.
+         */
+        private int capacity = 1024;
+
+        /**
+         * Largest number of purchases run in one transaction.
+         */
+        private int batchSize = 32;
+
+        /**
+         * Time, in milliseconds, the outcome of a purchase is kept for its ticket.
+         */
+        private long ticketTtl = 60000;
+
+        /**
+         * Time, in milliseconds, a completion stream stays open.
+         */
+        private long streamTimeout = 30000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        public void setWorkers(int workers) {
+            this.workers = workers;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getTicketTtl() {
+            return ticketTtl;
+        }
+
+        public void setTicketTtl(long ticketTtl) {
+            this.ticketTtl = ticketTtl;
+        }
+
+        public long getStreamTimeout() {
+            return streamTimeout;
+        }
+
+        public void setStreamTimeout(long streamTimeout) {
+            this.streamTimeout = streamTimeout;
+        }
+    }
+
+    public static class Ledger {
+
+        /**
+         * Whether deposits, purchases and resets are appended to a memory-mapped journal.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the journal segments and snapshots.
+         */
+        private String directory = "ledger";
+
+        /**
+         * Size, in bytes, of a journal segment file.
+         */
+        private long segmentSize = 64L * 1024 * 1024;
+
+        /**
+         * Delay, in milliseconds, between two snapshots of the balances and stock changes.
+         */
+        private long snapshotDelay = 60000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public long getSnapshotDelay() {
+            return snapshotDelay;
+        }
+
+        public void setSnapshotDelay(long snapshotDelay) {
+            this.snapshotDelay = snapshotDelay;
+        }
+    }
+
+    public static class SellerRevenue {
+
+        /**
+         * Delay, in milliseconds, between two flushes of the seller earnings.
+         */
+        private long flushDelay = 1000;
+
+        /**
+         * Number of credited purchases that triggers a flush before the delay is over.
+         */
+        private int flushThreshold = 1000;
+
+        /**
+         * Largest number of rows the earnings of a seller are spread over.
+         */
+        private int maxSlots = 16;
+
+        /**
+         * Purchases per second of a seller each of its rows takes before the earnings are spread over one more.
+         */
+        private int purchasesPerSlot = 100;
+
+        /**
+         * Time, in milliseconds, the earnings of a seller read from its rows are cached.
+         */
+        private long readCacheTtl = 1000;
+
+        public long getFlushDelay() {
+            return flushDelay;
+        }
+
+        public void setFlushDelay(long flushDelay) {
+            this.flushDelay = flushDelay;
+        }
+
+        public int getFlushThreshold() {
+            return flushThreshold;
+        }
+
+        public void setFlushThreshold(int flushThreshold) {
+            this.flushThreshold = flushThreshold;
+        }
+
+        public int getMaxSlots() {
+            return maxSlots;
+        }
+
+        public void setMaxSlots(int maxSlots) {
+            this.maxSlots = maxSlots;
+        }
+
+        public int getPurchasesPerSlot() {
+            return purchasesPerSlot;
+        }
+
+        public void setPurchasesPerSlot(int purchasesPerSlot) {
+            this.purchasesPerSlot = purchasesPerSlot;
+        }
+
+        public long getReadCacheTtl() {
+            return readCacheTtl;
+        }
+
+        public void setReadCacheTtl(long readCacheTtl) {
+            this.readCacheTtl = readCacheTtl;
+        }
+    }
+
+    public static class PurchaseHistory {
+
+        /**
+         * Purchases waiting to be written before the committing thread writes them itself.
+         */
+        private int capacity = 8192;
+
+        /**
+         * Largest number of purchases written in one JDBC batch.
+         */
+        private int batchSize = 100;
+
+        /**
+         * Number of months, counting the current one, of which the partitions are kept; {@code 0} keeps them all.
+         */
+        private int retentionMonths = 0;
+
+        /**
+         * Number of months after the current one that have a partition ready.
+         */
+        private int monthsAhead = 3;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getRetentionMonths() {
+            return retentionMonths;
+        }
+
+        public void setRetentionMonths(int retentionMonths) {
+            this.retentionMonths = retentionMonths;
+        }
+
+        public int getMonthsAhead() {
+            return monthsAhead;
+        }
+
+        public void setMonthsAhead(int monthsAhead) {
+            this.monthsAhead = monthsAhead;
+        }
+    }
+
+    public static class FastReject {
+
+        /**
+         * Whether purchases known to fail are rejected before opening a transaction.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Time, in milliseconds, a balance or stock read from the database is trusted. It bounds how long a
+         * deposit or restock made on another node can go unseen.
+         */
+        private long ttl = 1000;
+
+        /**
+         * Largest number of balances, and of products, remembered.
+         */
+        private int maxEntries = 65536;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public static class Reservation {
+
+        private long tick = 100;
+
+        private int levels = 4;
+
+        private long maxHold = 900;
+
+        private int capacity = 100000;
+
+        public long getTick() {
+            return tick;
+        }
+
+        public void setTick(long tick) {
+            this.tick = tick;
+        }
+
+        public int getLevels() {
+            return levels;
+        }
+
+        public void setLevels(int levels) {
+            this.levels = levels;
+        }
+
+        public long getMaxHold() {
+            return maxHold;
+        }
+
+        public void setMaxHold(long maxHold) {
+            this.maxHold = maxHold;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+
+    public static class WaitingRoom {
+
+        private boolean enabled = true;
+
+        private int threshold = 50;
+
+        private long refresh = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        public long getRefresh() {
+            return refresh;
+        }
+
+        public void setRefresh(long refresh) {
+            this.refresh = refresh;
+        }
+    }
+
+    public static class ConcurrencyLimit {
+
+        private boolean enabled = true;
+
+        private List<String> paths = new ArrayList<>(List.of("/api/buy/**", "/api/deposit", "/api/reset"));
+
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 200;
+
+        private double smoothing = 0.2;
+
+        private int longWindow = 600;
+
+        private int retryAfter = 1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        public int getLongWindow() {
+            return longWindow;
+        }
+
+        public void setLongWindow(int longWindow) {
+            this.longWindow = longWindow;
+        }
+
+        public int getRetryAfter() {
+            return retryAfter;
+        }
+
+        public void setRetryAfter(int retryAfter) {
+            this.retryAfter = retryAfter;
+        }
+    }
+
+    public static class RateLimit {
+
+        private boolean enabled = true;
+
+        private int maxBuckets = 100000;
+
+        private List<Rule> rules = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxBuckets() {
+            return maxBuckets;
+        }
+
+        public void setMaxBuckets(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+
+        /**
+         * A token bucket each user with the role gets for the requests matching the methods and the path.
+         */
+        public static class Rule {
+
+            private String role;
+
+            /**
+             * Any method if empty.
+             */
+            private List<String> methods = new ArrayList<>();
+
+            private String path;
+
+            private int capacity = 10;
+
+            private double perSecond = 1;
+
+            public String getRole() {
+                return role;
+            }
+
+            public void setRole(String role) {
+                this.role = role;
+            }
+
+            public List<String> getMethods() {
+                return methods;
+            }
+
+            public void setMethods(List<String> methods) {
+                this.methods = methods;
+            }
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public int getCapacity() {
+                return capacity;
+            }
+
+            public void setCapacity(int capacity) {
+                this.capacity = capacity;
+            }
+
+            public double getPerSecond() {
+                return perSecond;
+            }
+
+            public void setPerSecond(double perSecond) {
+                this.perSecond = perSecond;
+            }
+        }
+    }
+
+    public static class PasswordHashing {
+
+        private int threads = 0;
+
+        private int queueCapacity = 32;
+
+        private long timeout = 5000;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+}
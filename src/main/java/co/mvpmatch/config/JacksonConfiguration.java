@@ -1,5 +1,9 @@
 package co.mvpmatch.config;
 
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.CoinVectorDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -48,4 +52,12 @@ public class JacksonConfiguration {
     public ConstraintViolationProblemModule constraintViolationProblemModule() {
         return new ConstraintViolationProblemModule();
     }
+
+    /*
+     * Reads coin vectors in the coin set of the active currency profile.
+     */
+    @Bean
+    public SimpleModule coinVectorModule(CoinSet coinSet) {
+        return new SimpleModule("CoinVectorModule").addDeserializer(CoinVector.class, new CoinVectorDeserializer(coinSet));
+    }
 }
@@ -1,6 +1,11 @@
 package co.mvpmatch.config;
 
+import co.mvpmatch.domain.CoinSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import liquibase.integration.spring.SpringLiquibase;
 import org.slf4j.Logger;
@@ -34,7 +39,8 @@ public class LiquibaseConfiguration {
         @LiquibaseDataSource ObjectProvider<DataSource> liquibaseDataSource,
         LiquibaseProperties liquibaseProperties,
         ObjectProvider<DataSource> dataSource,
-        DataSourceProperties dataSourceProperties
+        DataSourceProperties dataSourceProperties,
+        CoinSet coinSet
     ) {
         // If you don't want Liquibase to start asynchronously, substitute by this:
         // SpringLiquibase liquibase = SpringLiquibaseUtil.createSpringLiquibase(liquibaseDataSource.getIfAvailable(), liquibaseProperties, dataSource.getIfUnique(), dataSourceProperties);
@@ -55,7 +61,13 @@ public class LiquibaseConfiguration {
         liquibase.setDatabaseChangeLogTable(liquibaseProperties.getDatabaseChangeLogTable());
         liquibase.setDropFirst(liquibaseProperties.isDropFirst());
         liquibase.setLabels(liquibaseProperties.getLabels());
-        liquibase.setChangeLogParameters(liquibaseProperties.getParameters());
+        Map<String, String> parameters = new HashMap<>();
+        if (liquibaseProperties.getParameters() != null) {
+            parameters.putAll(liquibaseProperties.getParameters());
+        }
+        // the coin vectors are laid out by the coins of the active currency profile
+        parameters.put("coinDenominations", Arrays.stream(coinSet.denominations()).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        liquibase.setChangeLogParameters(parameters);
         liquibase.setRollbackFile(liquibaseProperties.getRollbackFile());
         liquibase.setTestRollbackOnUpdate(liquibaseProperties.isTestRollbackOnUpdate());
         if (env.acceptsProfiles(Profiles.of(JHipsterConstants.SPRING_PROFILE_NO_LIQUIBASE))) {
@@ -2,6 +2,7 @@ package co.mvpmatch.config;
 
 import co.mvpmatch.security.*;
 import co.mvpmatch.security.jwt.*;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpMethod;
@@ -13,7 +14,9 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationEntryPoint;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
 import org.springframework.web.filter.CorsFilter;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
@@ -44,8 +47,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        return new BulkheadPasswordEncoder(new BCryptPasswordEncoder(), applicationProperties, meterRegistry);
     }
 
     @Override
@@ -91,11 +94,28 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
             .antMatchers("/management/prometheus").permitAll()
         .and()
             .httpBasic()
+            .authenticationEntryPoint(basicAuthenticationEntryPoint())
         .and()
             .apply(securityConfigurerAdapter());
         // @formatter:on
     }
 
+    /**
+     * Asks for credentials as usual, except when the password could not be checked for lack of hashing threads,
+     * which is answered as an overload.
+     */
+    private AuthenticationEntryPoint basicAuthenticationEntryPoint() {
+        BasicAuthenticationEntryPoint basic = new BasicAuthenticationEntryPoint();
+        basic.setRealmName("Realm");
+        return (request, response, exception) -> {
+            if (exception instanceof PasswordHashingRejectedException) {
+                problemSupport.commence(request, response, exception);
+            } else {
+                basic.commence(request, response, exception);
+            }
+        };
+    }
+
     private JWTConfigurer securityConfigurerAdapter() {
         return new JWTConfigurer(tokenProvider);
     }
@@ -0,0 +1,55 @@
+package co.mvpmatch.config;
+
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.CoinVectorType;
+import co.mvpmatch.service.change.ChangeEngine;
+import java.util.List;
+import org.hibernate.boot.model.TypeContributor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.TypeContributorList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class VendingMachineConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(VendingMachineConfiguration.class);
+
+    /**
+     * The coins of the active currency profile; they decide the layout of the persisted coin vectors.
+     */
+    @Bean
+    public CoinSet coinSet(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Currency currency = applicationProperties.getCurrency();
+        List<Integer> coins = currency.getProfiles().get(currency.getProfile());
+        if (coins == null) {
+            throw new IllegalStateException("Unknown currency profile: " + currency.getProfile());
+        }
+        return new CoinSet(coins.stream().mapToInt(Integer::intValue).sorted().toArray(), applicationProperties.getChange().getExactChangeCap());
+    }
+
+    @Bean
+    public ChangeEngine changeEngine(CoinSet coinSet) {
+        ChangeEngine changeEngine = new ChangeEngine(coinSet);
+        log.info(
+            "Using coins {}, {}",
+            coinSet.denominations(),
+            changeEngine.isCanonical() ? "canonical: change is made greedily" : "not canonical: change is always optimized"
+        );
+        return changeEngine;
+    }
+
+    /**
+     * Registers the {@link CoinVector} mapping of the coin set with Hibernate.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer coinVectorTypeCustomizer(CoinSet coinSet) {
+        TypeContributor contributor = (typeContributions, serviceRegistry) ->
+            typeContributions.contributeType(new CoinVectorType(coinSet), CoinVectorType.NAME, CoinVector.class.getName());
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS, (TypeContributorList) () -> List.of(contributor));
+    }
+}
@@ -1,9 +1,15 @@
 package co.mvpmatch.config;
 
+import co.mvpmatch.web.filter.ConcurrencyLimitFilter;
+import co.mvpmatch.web.filter.RateLimitFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import javax.servlet.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.boot.web.server.*;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
@@ -57,4 +63,36 @@ public class WebConfigurer implements ServletContextInitializer {
         }
         return new CorsFilter(source);
     }
+
+    /**
+     * Runs the {@link ConcurrencyLimitFilter} ahead of Spring Security, so that a request over the limit costs no
+     * authentication.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "application.concurrency-limit.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+            new ConcurrencyLimitFilter(applicationProperties, meterRegistry)
+        );
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+
+    /**
+     * Runs the {@link RateLimitFilter} after Spring Security, which sets the user it keys the buckets on.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "application.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+            new RateLimitFilter(applicationProperties, meterRegistry)
+        );
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 10);
+        return registration;
+    }
 }
@@ -0,0 +1,97 @@
+package co.mvpmatch.config.liquibase;
+
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Converts the JSON {@code user.deposit} column into the binary {@code user.coins} column read by
+ * {@link co.mvpmatch.domain.CoinVectorType}, laid out for the coins of the active currency profile, passed in
+ * the {@code coinDenominations} changelog parameter by {@link co.mvpmatch.config.LiquibaseConfiguration}.
+ */
+public class DepositToCoinVectorChange implements CustomTaskChange {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String denominations;
+
+    private CoinSet coinSet;
+
+    private int converted;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        // only the layout of the vectors matters here, not how much of them can be paid exactly
+        coinSet = new CoinSet(Arrays.stream(denominations.split(",")).map(String::trim).mapToInt(Integer::parseInt).sorted().toArray(), 0);
+        JdbcConnection connection = (JdbcConnection) database.getConnection();
+        String table = database.escapeTableName(null, null, "user");
+        try (
+            Statement select = connection.createStatement();
+            ResultSet rs = select.executeQuery("SELECT id, deposit FROM " + table);
+            PreparedStatement update = connection.prepareStatement("UPDATE " + table + " SET coins = ? WHERE id = ?")
+        ) {
+            while (rs.next()) {
+                update.setBytes(1, toCoinVector(rs.getString(2)).toBytes());
+                update.setLong(2, rs.getLong(1));
+                update.addBatch();
+                converted++;
+            }
+            update.executeBatch();
+        } catch (Exception e) {
+            throw new CustomChangeException("Could not convert user deposits", e);
+        }
+    }
+
+    private CoinVector toCoinVector(String json) throws IOException {
+        CoinVector coins = new CoinVector(coinSet);
+        if (json == null) {
+            return coins;
+        }
+        JsonNode deposit = objectMapper.readTree(json);
+        if (deposit.isTextual()) {
+            // H2 keeps the MySQL-style dummy data as a JSON string with its escapes; deposits only hold numbers,
+            // so unescaping the quotes is safe
+            deposit = objectMapper.readTree(deposit.asText().replace("\\\"", "\""));
+        }
+        for (int slot = 0; slot < coinSet.width(); slot++) {
+            coins.set(slot, deposit.path(String.valueOf(coinSet.denomination(slot))).asInt(0));
+        }
+        return coins;
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Converted " + converted + " user deposits to coin vectors";
+    }
+
+    public void setDenominations(String denominations) {
+        this.denominations = denominations;
+    }
+
+    @Override
+    public void setUp() {}
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {}
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (denominations == null || !denominations.matches("\\d+(\\s*,\\s*\\d+)*")) {
+            errors.addError("The coinDenominations changelog parameter must list the accepted coins, got: " + denominations);
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,119 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The coins accepted by the machine, in ascending order of value; coin vectors hold one slot per coin.
+ * <p>
+ * The set of the active currency profile is a bean, built once from the configuration and handed to whatever
+ * reads or writes coin vectors.
+ */
+public final class CoinSet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Largest number of denominations a set can hold, bounded by the width of the {@code user.coins} column.
+     */
+    public static final int MAX_WIDTH = 16;
+
+    private final int[] denominations;
+
+    private final int unit;
+
+    private final int payableCap;
+
+    /**
+     * @param denominations the coin values, in strictly ascending order.
+     * @param payableCap the largest amount, in cents, {@link CoinVector#canPay(int)} answers for.
+     */
+    public CoinSet(int[] denominations, int payableCap) {
+        if (denominations.length == 0 || denominations.length > MAX_WIDTH) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_WIDTH + " denominations are supported");
+        }
+        int unit = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] <= 0 || (i > 0 && denominations[i] <= denominations[i - 1])) {
+                throw new IllegalArgumentException("Denominations must be positive and strictly ascending");
+            }
+            unit = gcd(unit, denominations[i]);
+        }
+        this.denominations = denominations.clone();
+        this.unit = unit;
+        this.payableCap = payableCap;
+    }
+
+    public int width() {
+        return denominations.length;
+    }
+
+    public int denomination(int slot) {
+        return denominations[slot];
+    }
+
+    public int[] denominations() {
+        return denominations.clone();
+    }
+
+    /**
+     * @return the greatest common divisor of the denominations; every payable amount is a multiple of it.
+     */
+    public int unit() {
+        return unit;
+    }
+
+    /**
+     * @return the largest amount, in cents, {@link CoinVector#canPay(int)} can answer for.
+     */
+    public int payableCap() {
+        return payableCap;
+    }
+
+    /**
+     * @return the slot of the given coin value, or {@code -1} if it is not an accepted coin.
+     */
+    public int slotOf(int coin) {
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] == coin) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object readResolve() {
+        return new CoinSet(denominations, payableCap);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CoinSet)) {
+            return false;
+        }
+        CoinSet other = (CoinSet) o;
+        return payableCap == other.payableCap && Arrays.equals(denominations, other.denominations);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(denominations) + payableCap;
+    }
+
+    @Override
+    public String toString() {
+        return "CoinSet" + Arrays.toString(denominations);
+    }
+}
@@ -0,0 +1,245 @@
+package co.mvpmatch.domain;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A number of coins per denomination, held as a primitive array indexed by slot.
+ * <p>
+ * Slot {@code i} holds coins of {@link CoinSet#denomination(int) denomination(i)} of the vector's coin set, in
+ * ascending order of value. It is persisted by {@link CoinVectorType} as a fixed-width binary and serialized to
+ * JSON as a {@code {"5": 0, "10": 0, ...}} object, as the deposit used to be.
+ * <p>
+ * The vector also answers whether an exact amount can be paid out of its coins, from a bitset of all the
+ * reachable sums up to {@link CoinSet#payableCap()}. The bitset belongs to the vector and is copied with it;
+ * adding coins extends it in place, any other change drops it until it is needed again.
+ */
+public final class CoinVector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Bytes used per slot in the binary form.
+     */
+    static final int SLOT_BYTES = Integer.BYTES;
+
+    private final CoinSet coinSet;
+
+    private final int[] counts;
+
+    /**
+     * Bit {@code i} is set when {@code i * unit} cents can be paid exactly; {@code null} until needed.
+     */
+    private transient long[] payable;
+
+    public CoinVector(CoinSet coinSet) {
+        this(coinSet, new int[coinSet.width()], null);
+    }
+
+    private CoinVector(CoinSet coinSet, int[] counts, long[] payable) {
+        this.coinSet = coinSet;
+        this.counts = counts;
+        this.payable = payable;
+    }
+
+    public static CoinVector of(CoinSet coinSet, int... counts) {
+        CoinVector vector = new CoinVector(coinSet);
+        vector.setAll(counts);
+        return vector;
+    }
+
+    public CoinSet getCoinSet() {
+        return coinSet;
+    }
+
+    public int count(int slot) {
+        return counts[slot];
+    }
+
+    public void set(int slot, int count) {
+        counts[slot] = count;
+        payable = null;
+    }
+
+    public void add(int slot, int count) {
+        counts[slot] += count;
+        if (count > 0 && payable != null) {
+            addCoins(payable, payableBits(), coinSet.denomination(slot) / coinSet.unit(), count);
+        } else if (count != 0) {
+            payable = null;
+        }
+    }
+
+    public void setAll(int[] source) {
+        setAll(source, 0);
+    }
+
+    public void setAll(int[] source, int offset) {
+        System.arraycopy(source, offset, counts, 0, counts.length);
+        payable = null;
+    }
+
+    public void copyTo(int[] target) {
+        copyTo(target, 0);
+    }
+
+    public void copyTo(int[] target, int offset) {
+        System.arraycopy(counts, 0, target, offset, counts.length);
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        payable = null;
+    }
+
+    /**
+     * Tells whether some of these coins add up exactly to {@code amount}.
+     *
+     * @return {@code false} if they do not, or if {@code amount} is above {@link CoinSet#payableCap()}, in which case
+     * the caller has to compute the change to find out.
+     */
+    public boolean canPay(int amount) {
+        int unit = coinSet.unit();
+        if (amount < 0 || amount > coinSet.payableCap() || amount % unit != 0) {
+            return false;
+        }
+        int bit = amount / unit;
+        long[] bits = payable();
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private long[] payable() {
+        if (payable == null) {
+            int bits = payableBits();
+            long[] table = new long[(bits + 63) >>> 6];
+            table[0] = 1L;
+            for (int i = 0; i < counts.length; i++) {
+                addCoins(table, bits, coinSet.denomination(i) / coinSet.unit(), counts[i]);
+            }
+            payable = table;
+        }
+        return payable;
+    }
+
+    /**
+     * @return the bitset of the payable amounts, if it was needed since the last change.
+     */
+    long[] payableTable() {
+        return payable;
+    }
+
+    private int payableBits() {
+        return coinSet.payableCap() / coinSet.unit() + 1;
+    }
+
+    /**
+     * Adds {@code count} coins of {@code step} units to the reachable sums, splitting them in groups of
+     * 1, 2, 4, ... coins so it costs a logarithmic number of shifts.
+     */
+    private static void addCoins(long[] table, int bits, int step, int count) {
+        int remaining = Math.min(count, (bits - 1) / step);
+        for (int group = 1; remaining > 0; group <<= 1) {
+            int take = Math.min(group, remaining);
+            shiftOr(table, bits, take * step);
+            remaining -= take;
+        }
+    }
+
+    private static void shiftOr(long[] table, int bits, int shift) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int i = table.length - 1; i >= wordShift; i--) {
+            int source = i - wordShift;
+            long shifted = table[source] << bitShift;
+            if (bitShift != 0 && source > 0) {
+                shifted |= table[source - 1] >>> (64 - bitShift);
+            }
+            table[i] |= shifted;
+        }
+        int tail = bits & 63;
+        if (tail != 0) {
+            table[table.length - 1] &= (1L << tail) - 1;
+        }
+    }
+
+    /**
+     * @return the value of all the coins, in cents.
+     */
+    public long total() {
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += (long) coinSet.denomination(i) * counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return a vector of the same coins, with its own copy of the bitset if it was built.
+     */
+    public CoinVector copy() {
+        return new CoinVector(coinSet, counts.clone(), payable != null ? payable.clone() : null);
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[counts.length * SLOT_BYTES];
+        for (int i = 0, b = 0; i < counts.length; i++) {
+            int count = counts[i];
+            bytes[b++] = (byte) (count >>> 24);
+            bytes[b++] = (byte) (count >>> 16);
+            bytes[b++] = (byte) (count >>> 8);
+            bytes[b++] = (byte) count;
+        }
+        return bytes;
+    }
+
+    public static CoinVector fromBytes(CoinSet coinSet, byte[] bytes) {
+        CoinVector vector = new CoinVector(coinSet);
+        int slots = Math.min(vector.counts.length, bytes.length / SLOT_BYTES);
+        for (int i = 0, b = 0; i < slots; i++, b += SLOT_BYTES) {
+            vector.counts[i] = (bytes[b] << 24) | ((bytes[b + 1] & 0xff) << 16) | ((bytes[b + 2] & 0xff) << 8) | (bytes[b + 3] & 0xff);
+        }
+        return vector;
+    }
+
+    @JsonValue
+    public Map<Integer, Integer> toMap() {
+        Map<Integer, Integer> map = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            map.put(coinSet.denomination(i), counts[i]);
+        }
+        return map;
+    }
+
+    public static CoinVector fromMap(CoinSet coinSet, Map<Integer, Integer> map) {
+        CoinVector vector = new CoinVector(coinSet);
+        for (int i = 0; i < vector.counts.length; i++) {
+            Integer count = map.get(coinSet.denomination(i));
+            vector.counts[i] = count != null ? count : 0;
+        }
+        return vector;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CoinVector)) {
+            return false;
+        }
+        return Arrays.equals(counts, ((CoinVector) o).counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        return "CoinVector" + Arrays.toString(counts);
+    }
+}
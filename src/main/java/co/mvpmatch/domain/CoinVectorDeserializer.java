@@ -0,0 +1,30 @@
+package co.mvpmatch.domain;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads a {@link CoinVector} of the given coin set from its {@code {"5": 0, "10": 0, ...}} JSON form.
+ */
+public class CoinVectorDeserializer extends StdDeserializer<CoinVector> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final TypeReference<Map<Integer, Integer>> COUNTS = new TypeReference<>() {};
+
+    private final CoinSet coinSet;
+
+    public CoinVectorDeserializer(CoinSet coinSet) {
+        super(CoinVector.class);
+        this.coinSet = coinSet;
+    }
+
+    @Override
+    public CoinVector deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        return CoinVector.fromMap(coinSet, parser.readValueAs(COUNTS));
+    }
+}
@@ -0,0 +1,87 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.usertype.UserType;
+
+/**
+ * Hibernate mapping of a {@link CoinVector} to a single {@code varbinary} column, four bytes per slot.
+ * <p>
+ * The layout depends on the coin set, so the type is registered with it under {@link #NAME} when Hibernate
+ * starts, see {@link co.mvpmatch.config.VendingMachineConfiguration}.
+ */
+public class CoinVectorType implements UserType {
+
+    public static final String NAME = "coins";
+
+    private final CoinSet coinSet;
+
+    public CoinVectorType(CoinSet coinSet) {
+        this.coinSet = coinSet;
+    }
+
+    @Override
+    public int[] sqlTypes() {
+        return new int[] { Types.VARBINARY };
+    }
+
+    @Override
+    public Class<CoinVector> returnedClass() {
+        return CoinVector.class;
+    }
+
+    @Override
+    public boolean equals(Object x, Object y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(Object x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner) throws SQLException {
+        byte[] bytes = rs.getBytes(names[0]);
+        return bytes != null ? CoinVector.fromBytes(coinSet, bytes) : null;
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session) throws SQLException {
+        if (value == null) {
+            st.setNull(index, Types.VARBINARY);
+        } else {
+            st.setBytes(index, ((CoinVector) value).toBytes());
+        }
+    }
+
+    @Override
+    public Object deepCopy(Object value) {
+        return value != null ? ((CoinVector) value).copy() : null;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+
+    @Override
+    public Serializable disassemble(Object value) {
+        return (Serializable) deepCopy(value);
+    }
+
+    @Override
+    public Object assemble(Serializable cached, Object owner) {
+        return deepCopy(cached);
+    }
+
+    @Override
+    public Object replace(Object original, Object target, Object owner) {
+        return deepCopy(original);
+    }
+}
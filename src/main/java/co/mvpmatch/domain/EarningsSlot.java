@@ -0,0 +1,99 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * One of the rows the earnings of a seller are spread over, so that crediting a busy seller does not always
+ * lock the same row. The earnings of a seller are the sum of its slots.
+ */
+@Entity
+@Table(name = "earnings_slot")
+public class EarningsSlot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "seller_id", nullable = false)
+    private Long sellerId;
+
+    @NotNull
+    @Column(name = "slot", nullable = false)
+    private Integer slot;
+
+    @NotNull
+    @Column(name = "amount", nullable = false)
+    private Long amount;
+
+    public EarningsSlot() {}
+
+    public EarningsSlot(Long sellerId, Integer slot, Long amount) {
+        this.sellerId = sellerId;
+        this.slot = slot;
+        this.amount = amount;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSellerId() {
+        return sellerId;
+    }
+
+    public void setSellerId(Long sellerId) {
+        this.sellerId = sellerId;
+    }
+
+    public Integer getSlot() {
+        return slot;
+    }
+
+    public void setSlot(Integer slot) {
+        this.slot = slot;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EarningsSlot)) {
+            return false;
+        }
+        return id != null && id.equals(((EarningsSlot) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "EarningsSlot{" +
+            "id=" + getId() +
+            ", sellerId=" + getSellerId() +
+            ", slot=" + getSlot() +
+            ", amount=" + getAmount() +
+            "}";
+    }
+}
@@ -0,0 +1,107 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * The result of a buyer operation sent with an idempotency key, replayed when the key is sent again.
+ */
+@Entity
+@Table(name = "idempotent_result")
+public class IdempotentResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The user name and the idempotency key.
+     */
+    @Id
+    @Size(max = 128)
+    @Column(name = "id", length = 128)
+    private String id;
+
+    @NotNull
+    @Size(max = 20)
+    @Column(name = "operation", length = 20, nullable = false)
+    private String operation;
+
+    /**
+     * The result as JSON.
+     */
+    @Lob
+    @Column(name = "response")
+    private String response;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate;
+
+    public IdempotentResult() {}
+
+    public IdempotentResult(String id, String operation, String response, Instant createdDate) {
+        this.id = id;
+        this.operation = operation;
+        this.response = response;
+        this.createdDate = createdDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    public void setResponse(String response) {
+        this.response = response;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IdempotentResult)) {
+            return false;
+        }
+        return id != null && id.equals(((IdempotentResult) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "IdempotentResult{" +
+            "id=" + getId() +
+            ", operation=" + getOperation() +
+            ", createdDate=" + getCreatedDate() +
+            "}";
+    }
+}
@@ -0,0 +1,71 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * The number of coins of one denomination held by the machine to pay out change.
+ */
+@Entity
+@Table(name = "machine_coin")
+public class MachineCoin implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "denomination")
+    private Integer denomination;
+
+    @NotNull
+    @Column(name = "amount", nullable = false)
+    private Integer amount;
+
+    public MachineCoin() {}
+
+    public MachineCoin(Integer denomination, Integer amount) {
+        this.denomination = denomination;
+        this.amount = amount;
+    }
+
+    public Integer getDenomination() {
+        return denomination;
+    }
+
+    public void setDenomination(Integer denomination) {
+        this.denomination = denomination;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Integer amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MachineCoin)) {
+            return false;
+        }
+        return denomination != null && denomination.equals(((MachineCoin) o).denomination);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "MachineCoin{" +
+            "denomination=" + getDenomination() +
+            ", amount=" + getAmount() +
+            "}";
+    }
+}
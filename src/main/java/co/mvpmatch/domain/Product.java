@@ -1,5 +1,6 @@
 package co.mvpmatch.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.io.Serializable;
 import javax.persistence.*;
 import javax.validation.constraints.*;
@@ -34,6 +35,11 @@ public class Product implements Serializable {
     @JoinColumn(unique = true)
     private User seller;
 
+    @JsonIgnore
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     // jhipster-needle-entity-add-field - JHipster will add fields here
     public Long getId() {
         return id;
@@ -100,6 +106,14 @@ public class Product implements Serializable {
         this.seller = user;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -0,0 +1,137 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Type;
+
+/**
+ * A completed purchase of a product: what the buyer paid and the change the deposit was left with.
+ * <p>
+ * Written in JDBC batches by {@link co.mvpmatch.service.PurchaseHistoryService}, never through this mapping;
+ * the table is partitioned by month of {@code createdDate}, so queries should be bounded by it.
+ */
+@Entity
+@Immutable
+@Table(name = "purchase")
+public class Purchase implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "buyer_id", nullable = false)
+    private Long buyerId;
+
+    @NotNull
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @NotNull
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    @NotNull
+    @Column(name = "total", nullable = false)
+    private Long total;
+
+    @NotNull
+    @Type(type = CoinVectorType.NAME)
+    @Column(name = "change_coins", length = 64, nullable = false)
+    private CoinVector change;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBuyerId() {
+        return buyerId;
+    }
+
+    public void setBuyerId(Long buyerId) {
+        this.buyerId = buyerId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+
+    public void setTotal(Long total) {
+        this.total = total;
+    }
+
+    public CoinVector getChange() {
+        return change;
+    }
+
+    public void setChange(CoinVector change) {
+        this.change = change;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Purchase)) {
+            return false;
+        }
+        return id != null && id.equals(((Purchase) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "Purchase{" +
+            "id=" + getId() +
+            ", buyerId=" + getBuyerId() +
+            ", productId=" + getProductId() +
+            ", quantity=" + getQuantity() +
+            ", total=" + getTotal() +
+            ", change=" + getChange() +
+            ", createdDate='" + getCreatedDate() + "'" +
+            "}";
+    }
+}
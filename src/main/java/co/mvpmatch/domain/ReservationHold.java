@@ -0,0 +1,117 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * Units of a product taken off its row and held for a buyer by a reservation. The row goes away in the same
+ * transaction that buys the units or gives them back, so it holds exactly the stock still out on a reservation.
+ */
+@Entity
+@Table(name = "reservation_hold")
+public class ReservationHold implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Size(max = 36)
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @NotNull
+    @Size(max = 50)
+    @Column(name = "user_name", length = 50, nullable = false)
+    private String userName;
+
+    @NotNull
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @NotNull
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public ReservationHold() {}
+
+    public ReservationHold(String id, String userName, Long productId, Integer quantity, Instant expiresAt) {
+        this.id = id;
+        this.userName = userName;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReservationHold)) {
+            return false;
+        }
+        return id != null && id.equals(((ReservationHold) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ReservationHold{" +
+            "id='" + getId() + "'" +
+            ", userName='" + getUserName() + "'" +
+            ", productId=" + getProductId() +
+            ", quantity=" + getQuantity() +
+            ", expiresAt='" + getExpiresAt() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,115 @@
+package co.mvpmatch.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * Units of a product taken off its row by a node, which sells them from memory until it gives the rest back.
+ * A lease its node stopped renewing is given back by any other node once it expires.
+ */
+@Entity
+@Table(name = "stock_lease")
+public class StockLease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @NotNull
+    @Size(max = 64)
+    @Column(name = "node", length = 64, nullable = false)
+    private String node;
+
+    @NotNull
+    @Column(name = "remaining", nullable = false)
+    private Long remaining;
+
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public StockLease() {}
+
+    public StockLease(Long productId, String node, Long remaining, Instant expiresAt) {
+        this.productId = productId;
+        this.node = node;
+        this.remaining = remaining;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public void setNode(String node) {
+        this.node = node;
+    }
+
+    public Long getRemaining() {
+        return remaining;
+    }
+
+    public void setRemaining(Long remaining) {
+        this.remaining = remaining;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StockLease)) {
+            return false;
+        }
+        return id != null && id.equals(((StockLease) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "StockLease{" +
+            "id=" + getId() +
+            ", productId=" + getProductId() +
+            ", node='" + getNode() + "'" +
+            ", remaining=" + getRemaining() +
+            ", expiresAt='" + getExpiresAt() + "'" +
+            "}";
+    }
+}
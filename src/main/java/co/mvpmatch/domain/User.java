@@ -1,24 +1,19 @@
 package co.mvpmatch.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.vladmihalcea.hibernate.type.json.JsonType;
 import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
-import java.util.Map;
-
-import static java.util.Map.entry;
 
 /**
  * A user.
  */
 @Entity
 @Table(name = "user")
-@TypeDef(name = "json", typeClass = JsonType.class)
 //@Data
 public class User implements Serializable {
 
@@ -46,15 +41,9 @@ public class User implements Serializable {
     @Column(name = "password", length = 60, nullable = false)
     private String password;
 
-    @Type(type = "json")
-    @Column(columnDefinition = "json")
-    private Map<Integer, Integer> deposit = Map.ofEntries(
-                                                    entry(5, 0),
-                                                    entry(10, 0),
-                                                    entry(20, 0),
-                                                    entry(50, 0),
-                                                    entry(100, 0)
-    );
+    @Type(type = CoinVectorType.NAME)
+    @Column(name = "coins", length = 64, nullable = false)
+    private CoinVector deposit;
 
 //    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
 //    @NotNull
@@ -66,6 +55,11 @@ public class User implements Serializable {
     @Transient
     private boolean rememberMe;
 
+    @JsonIgnore
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     public Long getId() {
         return id;
     }
@@ -90,11 +84,11 @@ public class User implements Serializable {
         this.password = password;
     }
 
-    public Map<Integer, Integer> getDeposit() {
+    public CoinVector getDeposit() {
         return deposit;
     }
 
-    public void setDeposit(Map<Integer, Integer> deposit) {
+    public void setDeposit(CoinVector deposit) {
         this.deposit = deposit;
     }
 
@@ -114,13 +108,17 @@ public class User implements Serializable {
         this.rememberMe = rememberMe;
     }
 
-    public Long getMoney() {
-//        deposit.entrySet().stream().reduce(0, (subtotal, coin) -> subtotal + coin.getKey() *
-        Long result  = 0L;
-        for (Map.Entry<Integer, Integer> coin: deposit.entrySet()) {
-            result += coin.getKey() * coin.getValue();
-        }
-        return result;
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public long getMoney() {
+        // a user only referenced by id, e.g. a product's seller, has no deposit loaded
+        return deposit != null ? deposit.total() : 0L;
     }
 
     @Override
@@ -0,0 +1,24 @@
+package co.mvpmatch.repository;
+
+import co.mvpmatch.domain.EarningsSlot;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the EarningsSlot entity.
+ */
+@Repository
+public interface EarningsSlotRepository extends JpaRepository<EarningsSlot, Long> {
+    /**
+     * @return {@code 1} if the slot was credited, {@code 0} if it does not exist.
+     */
+    @Modifying
+    @Query("update EarningsSlot slot set slot.amount = slot.amount + :amount where slot.sellerId = :sellerId and slot.slot = :slot")
+    int addToSlot(@Param("sellerId") Long sellerId, @Param("slot") Integer slot, @Param("amount") Long amount);
+
+    @Query("select coalesce(sum(slot.amount), 0) from EarningsSlot slot where slot.sellerId = :sellerId")
+    long sumBySellerId(@Param("sellerId") Long sellerId);
+
+    long countBySellerId(Long sellerId);
+}
@@ -0,0 +1,17 @@
+package co.mvpmatch.repository;
+
+import co.mvpmatch.domain.IdempotentResult;
+import java.time.Instant;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the IdempotentResult entity.
+ */
+@Repository
+public interface IdempotentResultRepository extends JpaRepository<IdempotentResult, String> {
+    @Modifying
+    @Query("delete from IdempotentResult result where result.createdDate < :before")
+    int deleteByCreatedDateBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,22 @@
+package co.mvpmatch.repository;
+
+import co.mvpmatch.domain.MachineCoin;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the {@link MachineCoin} entity.
+ */
+@Repository
+public interface MachineCoinRepository extends JpaRepository<MachineCoin, Integer> {
+    /**
+     * Adds {@code delta}, which may be negative, to the coins of a denomination without reading them first, so
+     * nodes flushing their own changes never overwrite each other's.
+     */
+    @Modifying
+    @Query("update MachineCoin machineCoin set machineCoin.amount = machineCoin.amount + :delta where machineCoin.denomination = :denomination")
+    int addAmount(@Param("denomination") Integer denomination, @Param("delta") Integer delta);
+}
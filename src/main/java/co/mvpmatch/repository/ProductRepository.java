@@ -1,7 +1,11 @@
 package co.mvpmatch.repository;
 
 import co.mvpmatch.domain.Product;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -9,4 +13,36 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {}
+public interface ProductRepository extends JpaRepository<Product, Long> {
+    /**
+     * Loads a product with {@code SELECT ... FOR UPDATE NOWAIT}, failing at once if another transaction holds it.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "0"))
+    @Query("select product from Product product where product.id = :id")
+    Optional<Product> findOneForUpdateById(@Param("id") Long id);
+
+    /**
+     * Takes {@code quantity} units off the stock in one statement, only if that many are available.
+     * <p>
+     * Clears the persistence context, as the loaded products no longer match their rows.
+     *
+     * @return {@code 1} if the units were taken, {@code 0} if there were not enough of them.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(
+        "update Product product set product.amountAvailable = product.amountAvailable - :quantity, product.version = product.version + 1 " +
+        "where product.id = :id and product.amountAvailable >= :quantity"
+    )
+    int decrementStock(@Param("id") Long id, @Param("quantity") Long quantity);
+
+    /**
+     * Adds {@code delta}, which may be negative, to the stock of a product without reading it first.
+     */
+    @Modifying
+    @Query(
+        "update Product product set product.amountAvailable = product.amountAvailable + :delta, product.version = product.version + 1 " +
+        "where product.id = :id"
+    )
+    int addStock(@Param("id") Long id, @Param("delta") Long delta);
+}
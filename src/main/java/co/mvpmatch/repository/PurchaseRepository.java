@@ -0,0 +1,18 @@
+package co.mvpmatch.repository;
+
+import co.mvpmatch.domain.Purchase;
+import java.time.Instant;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the Purchase entity.
+ * <p>
+ * Every query is bounded by {@code createdDate}, so that it only reads the partitions of the months it covers.
+ */
+@Repository
+public interface PurchaseRepository extends JpaRepository<Purchase, Long> {
+    Page<Purchase> findByBuyerIdAndCreatedDateGreaterThanEqualOrderByCreatedDateDesc(Long buyerId, Instant from, Pageable pageable);
+}
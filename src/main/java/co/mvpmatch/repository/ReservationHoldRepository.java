@@ -0,0 +1,21 @@
+package co.mvpmatch.repository;
+
+import co.mvpmatch.domain.ReservationHold;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the ReservationHold entity.
+ */
+@Repository
+public interface ReservationHoldRepository extends JpaRepository<ReservationHold, String> {
+    /**
+     * Deletes a hold, so that its units are bought or given back at most once.
+     *
+     * @return {@code 1} if this call deleted it, {@code 0} if it was already gone.
+     */
+    @Modifying
+    @Query("delete from ReservationHold hold where hold.id = :id")
+    int release(@Param("id") String id);
+}
@@ -0,0 +1,52 @@
+package co.mvpmatch.repository;
+
+import co.mvpmatch.domain.StockLease;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data SQL repository for the StockLease entity.
+ */
+@Repository
+public interface StockLeaseRepository extends JpaRepository<StockLease, Long> {
+    /**
+     * Writes back {@code quantity} units sold from a lease, only if that many remain.
+     *
+     * @return {@code 1} if the units were taken off, {@code 0} if the lease is gone or short of them.
+     */
+    @Modifying
+    @Query("update StockLease lease set lease.remaining = lease.remaining - :quantity where lease.id = :id and lease.remaining >= :quantity")
+    int consume(@Param("id") Long id, @Param("quantity") Long quantity);
+
+    /**
+     * Extends the leases of a node.
+     */
+    @Modifying
+    @Query("update StockLease lease set lease.expiresAt = :expiresAt where lease.id in :ids")
+    int renew(@Param("ids") Collection<Long> ids, @Param("expiresAt") Instant expiresAt);
+
+    /**
+     * Loads a lease with {@code SELECT ... FOR UPDATE}, so that no purchase sells from it while it is given back.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select lease from StockLease lease where lease.id = :id")
+    Optional<StockLease> findOneForUpdateById(@Param("id") Long id);
+
+    List<StockLease> findByNode(String node);
+
+    @Query("select lease.id from StockLease lease where lease.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("select lease.id from StockLease lease where lease.expiresAt < :now")
+    List<Long> findIdsByExpiresAtBefore(@Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from StockLease lease where lease.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
@@ -1,13 +1,21 @@
 package co.mvpmatch.repository;
 
+import co.mvpmatch.domain.CoinVector;
 import co.mvpmatch.domain.User;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -32,4 +40,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
 //    Optional<User> findOneWithAuthoritiesByEmailIgnoreCase(String email);
 
     Optional<User> findOneByUsername(String username);
+
+    /**
+     * Loads a user with {@code SELECT ... FOR UPDATE NOWAIT}, failing at once if another transaction holds it.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "0"))
+    @Query("select user from User user where user.username = :username")
+    Optional<User> findOneForUpdateByUsername(@Param("username") String username);
+
+    /**
+     * Replaces the deposit of a user in one statement, only if it still holds {@code expected}.
+     * <p>
+     * Clears the persistence context, as the loaded users no longer match their rows.
+     *
+     * @return {@code 1} if the deposit was replaced, {@code 0} if it had changed in the meantime.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update User user set user.deposit = :deposit, user.version = user.version + 1 where user.id = :id and user.deposit = :expected")
+    int replaceDeposit(@Param("id") Long id, @Param("expected") CoinVector expected, @Param("deposit") CoinVector deposit);
 }
@@ -13,6 +13,7 @@ public final class AuthoritiesConstants {
 
     public static final String BUYER = "BUYER";
     public static final String SELLER = "SELLER";
+    public static final String ADMIN = "ADMIN";
 
     private AuthoritiesConstants() {}
 }
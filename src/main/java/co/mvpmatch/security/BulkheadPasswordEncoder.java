@@ -0,0 +1,121 @@
+package co.mvpmatch.security;
+
+import co.mvpmatch.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Hashes and checks passwords on threads of its own, so that a burst of logins, each costing a BCrypt hash, uses
+ * those threads and not the processors the purchases need.
+ * <p>
+ * The request thread waits for its hash. The hashing threads and their queue are bounded: a hash beyond them, or
+ * one waited for longer than the configured time, fails at once with a {@link PasswordHashingRejectedException},
+ * answered with {@code 503}. A login storm therefore holds at most as many request threads as there are hashing
+ * threads and queue slots, and only logins are turned away.
+ */
+public class BulkheadPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeout;
+
+    private final Timer encodes;
+
+    private final Timer matches;
+
+    private final Counter rejected;
+
+    public BulkheadPasswordEncoder(PasswordEncoder delegate, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.PasswordHashing properties = applicationProperties.getPasswordHashing();
+        int threads = properties.getThreads() > 0 ? properties.getThreads() : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger count = new AtomicInteger();
+        this.delegate = delegate;
+        this.timeout = properties.getTimeout();
+        this.executor =
+            new ThreadPoolExecutor(
+                threads,
+                threads,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                task -> {
+                    Thread thread = new Thread(task, "password-hashing-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+            );
+        Gauge
+            .builder("vmachine.password.queue", executor, pool -> pool.getQueue().size())
+            .description("Password hashes waiting for a thread")
+            .register(meterRegistry);
+        this.encodes = Timer.builder("vmachine.password.hash").tag("operation", "encode").description("Time to hash a password").register(meterRegistry);
+        this.matches = Timer.builder("vmachine.password.hash").tag("operation", "matches").description("Time to hash a password").register(meterRegistry);
+        this.rejected = Counter.builder("vmachine.password.rejected").description("Password hashes turned away").register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return hash(encodes, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return hash(matches, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T hash(Timer timer, Supplier<T> hashing) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.record(hashing));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Too many logins in progress, try again later", e);
+        }
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Too many logins in progress, try again later", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("Interrupted while hashing a password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the hashing threads; called by Spring when the context closes.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
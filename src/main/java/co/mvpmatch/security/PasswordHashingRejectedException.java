@@ -0,0 +1,19 @@
+package co.mvpmatch.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * This exception is thrown when a password cannot be checked because too many checks are waiting already.
+ */
+public class PasswordHashingRejectedException extends AuthenticationServiceException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+
+    public PasswordHashingRejectedException(String message, Throwable t) {
+        super(message, t);
+    }
+}
@@ -1,56 +1,153 @@
 package co.mvpmatch.service;
 
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Product;
 import co.mvpmatch.domain.User;
-import co.mvpmatch.repository.ProductRepository;
 import co.mvpmatch.repository.UserRepository;
+import co.mvpmatch.service.concurrency.ConcurrencyStrategy;
 import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.CartItem;
+import co.mvpmatch.service.dto.CartResponse;
+import co.mvpmatch.service.dto.PurchaseOrder;
+import co.mvpmatch.service.inventory.Inventory;
+import co.mvpmatch.service.ledger.Ledger;
 import co.mvpmatch.web.rest.errors.BadRequestAlertException;
-import org.springframework.stereotype.Service;
-
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
 
 import static java.lang.Math.toIntExact;
-import static java.util.Map.entry;
 
 @Service
 public class BuyerService {
 
+    private final ConcurrencyStrategy concurrencyStrategy;
+
     private final UserRepository userRepository;
 
-    private final ProductRepository productRepository;
+    private final Inventory inventory;
+
+    private final CoinFloatService coinFloatService;
+
+    private final Ledger ledger;
+
+    private final SellerRevenueService sellerRevenueService;
+
+    private final PurchaseHistoryService purchaseHistoryService;
 
-    public BuyerService(UserRepository userRepository, ProductRepository productRepository) {
+    private final FastRejectCache fastRejectCache;
+
+    private final WaitingRoom waitingRoom;
+
+    private final CoinSet coinSet;
+
+    public BuyerService(
+        ConcurrencyStrategy concurrencyStrategy,
+        UserRepository userRepository,
+        Inventory inventory,
+        CoinFloatService coinFloatService,
+        Ledger ledger,
+        SellerRevenueService sellerRevenueService,
+        PurchaseHistoryService purchaseHistoryService,
+        FastRejectCache fastRejectCache,
+        WaitingRoom waitingRoom,
+        CoinSet coinSet
+    ) {
+        this.concurrencyStrategy = concurrencyStrategy;
         this.userRepository = userRepository;
-        this.productRepository = productRepository;
+        this.inventory = inventory;
+        this.coinFloatService = coinFloatService;
+        this.ledger = ledger;
+        this.sellerRevenueService = sellerRevenueService;
+        this.purchaseHistoryService = purchaseHistoryService;
+        this.fastRejectCache = fastRejectCache;
+        this.waitingRoom = waitingRoom;
+        this.coinSet = coinSet;
     }
 
+    /**
+     * Buys units of a product.
+     * <p>
+     * A purchase the {@link FastRejectCache} knows to be doomed is rejected before it opens a transaction, and so
+     * is a purchase of a product in demand the {@link WaitingRoom} has no units left for.
+     */
     public BuyResponse buy(String userName, Long productId, Integer quantity) {
-        final BuyResponse response = new BuyResponse();
-        productRepository.findById(productId).ifPresent(
-            product -> {
-                Long totalCost = quantity * product.getCost();
-                User buyer = userRepository.findOneByUsername(userName).get();
-                if (buyer.getMoney() < totalCost) {
-                    throw new BadRequestAlertException("Not enough money.","","");
-                }
+        requirePositiveQuantity(quantity);
+        fastRejectCache.check(userName, Map.of(productId, quantity));
+        WaitingRoom.Ticket ticket = waitingRoom.enter(productId, quantity);
+        boolean sold = false;
+        try {
+            FastRejectCache.Probe probe = fastRejectCache.probe(userName, List.of(productId));
+            BuyResponse response = concurrencyStrategy.execute(() -> doBuy(userName, productId, quantity, probe));
+            sold = response.getProduct() != null;
+            response.setQueuePosition(ticket.position());
+            return response;
+        } finally {
+            ticket.leave(sold);
+        }
+    }
 
-                if (product.getAmountAvailable() < quantity) {
-                    throw new BadRequestAlertException("Amount unavailable","","");
+    /**
+     * Buys units of a product already taken off its stock and held for the buyer, so the stock is not checked
+     * again.
+     *
+     * @param release releases the hold in the purchase transaction, so that the units are bought only if the hold
+     *                is released and vice versa.
+     */
+    public BuyResponse buyReserved(String userName, Long productId, Integer quantity, Runnable release) {
+        requirePositiveQuantity(quantity);
+        return concurrencyStrategy.execute(
+            () -> {
+                release.run();
+                BuyResponse response = doBuy(userName, productId, quantity, FastRejectCache.Probe.NONE, true);
+                if (response.getProduct() == null) {
+                    throw new BadRequestAlertException("Product " + productId + " not found.","","");
                 }
+                return response;
+            }
+        );
+    }
 
-                List<Integer> coinTypesOrderedDesc = buyer.getDeposit().keySet().stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList());
-                change(coinTypesOrderedDesc, buyer.getDeposit(), coinTypesOrderedDesc.get(0), toIntExact(totalCost));
+    private static void requirePositiveQuantity(Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new BadRequestAlertException("A purchase needs a positive quantity.","","");
+        }
+    }
 
-//                User seller = userRepository.findById(product.getSeller().getId()).get();
-//                addMoney(seller.getDeposit(), totalCost);
+    private BuyResponse doBuy(String userName, Long productId, Integer quantity, FastRejectCache.Probe probe) {
+        return doBuy(userName, productId, quantity, probe, false);
+    }
 
-                product.setAmountAvailable(product.getAmountAvailable() - quantity);
+    private BuyResponse doBuy(String userName, Long productId, Integer quantity, FastRejectCache.Probe probe, boolean reserved) {
+        final BuyResponse response = new BuyResponse();
+        concurrencyStrategy.loadProduct(productId).ifPresent(
+            product -> {
+                long available = inventory.available(productId, product.getAmountAvailable());
+                probe.stock(product, available);
+                Long totalCost = quantity * product.getCost();
+                long[] remaining = new long[1];
+                CoinVector deposit = checkout(
+                    userName,
+                    totalCost,
+                    probe,
+                    () -> remaining[0] = reserved ? available : take(product, quantity),
+                    (buyerId, moved, change) -> {
+                        ledger.append(Ledger.Type.BUY, buyerId, productId, quantity, totalCost, moved);
+                        purchaseHistoryService.record(buyerId, productId, quantity, totalCost, change);
+                    }
+                );
+                sellerRevenueService.credit(sellerIdOf(product), totalCost);
 
-                response.setDeposit(buyer.getDeposit());
+                product.setAmountAvailable(remaining[0]);
+
+                response.setDeposit(deposit);
                 response.setProduct(product);
                 response.setTotalSpent(totalCost);
                 response.setQuantity(quantity);
@@ -59,124 +156,207 @@ public class BuyerService {
         return response;
     }
 
-    public void deposit(String userName, Integer coin, Integer nr) {
-        User buyer = userRepository.findOneByUsername(userName).get();
-        if (!buyer.getDeposit().containsKey(coin)) {
-            throw new BadRequestAlertException("Wrong coin. Please add only coins of 5, 10, 20, 50, 100 cents.","","");
-        }
-        addMoney(buyer.getDeposit(), coin, nr);
+    /**
+     * Runs several purchases, possibly of different buyers, in one transaction.
+     * <p>
+     * The purchases succeed or fail together: the first one failing rolls back all of them. What they read may
+     * have been written by an earlier purchase of the batch, so they teach the {@link FastRejectCache} nothing.
+     */
+    public List<BuyResponse> buyBatch(List<PurchaseOrder> orders) {
+        return concurrencyStrategy.execute(
+            () -> {
+                List<BuyResponse> responses = new ArrayList<>(orders.size());
+                for (PurchaseOrder order : orders) {
+                    responses.add(doBuy(order.getUserName(), order.getProductId(), order.getQuantity(), FastRejectCache.Probe.NONE));
+                }
+                return responses;
+            }
+        );
     }
 
-    public Map<Integer, Integer> resetDeposit(String userName) {
-        User buyer = userRepository.findOneByUsername(userName).get();
-        Map<Integer, Integer> change = buyer.getDeposit();
-        buyer.setDeposit(Map.ofEntries(
-            entry(5, 0),
-            entry(10, 0),
-            entry(20, 0),
-            entry(50, 0),
-            entry(100, 0)
-        ));
-        return change;
+    /**
+     * Buys several products at once, paying for all of them with a single change computation.
+     * <p>
+     * Products are loaded and their stock taken in ascending id order, so concurrent carts lock the rows they
+     * share in the same order and cannot deadlock. Lines of the same product are merged.
+     */
+    public CartResponse buyCart(String userName, List<CartItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new BadRequestAlertException("The cart is empty.","","");
+        }
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (CartItem item : items) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new BadRequestAlertException("Each cart item needs a product and a positive quantity.","","");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        fastRejectCache.check(userName, quantities);
+        FastRejectCache.Probe probe = fastRejectCache.probe(userName, quantities.keySet());
+        return concurrencyStrategy.execute(() -> doBuyCart(userName, quantities, probe));
     }
 
+    private CartResponse doBuyCart(String userName, SortedMap<Long, Integer> quantities, FastRejectCache.Probe probe) {
+        List<Product> products = new ArrayList<>(quantities.size());
+        long totalCost = 0;
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = concurrencyStrategy
+                .loadProduct(line.getKey())
+                .orElseThrow(() -> new BadRequestAlertException("Product " + line.getKey() + " not found.","",""));
+            probe.stock(product, inventory.available(product.getId(), product.getAmountAvailable()));
+            products.add(product);
+            totalCost += line.getValue() * product.getCost();
+        }
 
+        long[] remaining = new long[products.size()];
+        CoinVector deposit = checkout(
+            userName,
+            totalCost,
+            probe,
+            () -> {
+                for (int i = 0; i < remaining.length; i++) {
+                    Product product = products.get(i);
+                    remaining[i] = take(product, quantities.get(product.getId()));
+                }
+            },
+            (buyerId, moved, change) -> {
+                // the deposit changes once for the whole cart, it is journaled with the first line;
+                // every line of the history carries the change of the whole cart
+                for (int i = 0; i < products.size(); i++) {
+                    Product product = products.get(i);
+                    Integer quantity = quantities.get(product.getId());
+                    int[] coins = i == 0 ? moved : new int[moved.length];
+                    ledger.append(Ledger.Type.BUY, buyerId, product.getId(), quantity, quantity * product.getCost(), coins);
+                    purchaseHistoryService.record(buyerId, product.getId(), quantity, quantity * product.getCost(), change);
+                }
+            }
+        );
 
-    public static void change(Map<Integer, Integer> deposit, Integer value) {
-
-        // precondition - value <= total funds
-        List<Integer> coinTypesOrderedDesc = deposit.keySet().stream().sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        CartResponse response = new CartResponse();
+        for (int i = 0; i < remaining.length; i++) {
+            Product product = products.get(i);
+            Integer quantity = quantities.get(product.getId());
+            sellerRevenueService.credit(sellerIdOf(product), quantity * product.getCost());
+            product.setAmountAvailable(remaining[i]);
+            BuyResponse item = new BuyResponse();
+            item.setProduct(product);
+            item.setQuantity(quantity);
+            item.setTotalSpent(quantity * product.getCost());
+            response.getItems().add(item);
+        }
+        response.setTotalSpent(totalCost);
+        response.setDeposit(deposit);
+        return response;
+    }
 
-        change(coinTypesOrderedDesc, deposit, coinTypesOrderedDesc.get(0), value);
+    private static Long sellerIdOf(Product product) {
+        return product.getSeller() != null ? product.getSeller().getId() : null;
     }
 
-    public static void change(List<Integer> coinTypesOrderedDesc, Map<Integer, Integer> deposit, int coin, int value) {
-        int neededCoins = value/coin;
-        int coinsIHave = deposit.get(coin);
-
-        if (coinsIHave > neededCoins) {
-            value -= neededCoins * coin;
-            takeCoins(deposit, coin, neededCoins);
-            int lessValuableCoinsTotal = sumMinorCoins(deposit, coin, coinTypesOrderedDesc);
-            if (lessValuableCoinsTotal < value) {
-                takeCoins(deposit, coin, 1);
-                takeMinorCoins(deposit, coin, coinTypesOrderedDesc);
-                giveBackChange(deposit, coin, coinTypesOrderedDesc, (coin + lessValuableCoinsTotal) - value);
-            } else {
-                change(coinTypesOrderedDesc, deposit, coinTypesOrderedDesc.get(coinTypesOrderedDesc.indexOf(coin) + 1), value);
-            }
-        } else {
-            value -= coinsIHave * coin;
-            takeCoins(deposit, coin, coinsIHave);
-            if (value > 0) {
-                change(coinTypesOrderedDesc, deposit, coinTypesOrderedDesc.get(coinTypesOrderedDesc.indexOf(coin) + 1), value);
-            }
-            // else stop recursive calls and exit
+    private long take(Product product, long quantity) {
+        long remaining = inventory.take(product, quantity);
+        if (remaining == Inventory.UNAVAILABLE) {
+            throw new BadRequestAlertException("Amount unavailable","","");
         }
+        fastRejectCache.stockChanging(product.getId());
+        return remaining;
     }
 
-    private static void takeCoins(Map<Integer, Integer> deposit, int coin, int neededCoins) {
-        if (deposit.get(coin) < neededCoins) {
-            throw new RuntimeException("Not enough coins.");
+    /**
+     * Charges {@code totalCost} to the deposit of the buyer, paying the rest back as change.
+     *
+     * @param probe learns the balance of the buyer if it cannot pay.
+     * @param takeStock takes the stock of what is bought, once the buyer is known to be able to pay for it.
+     * @param journal records the purchase in the {@link Ledger} and the purchase history.
+     * @return the deposit left: the change coins.
+     */
+    private CoinVector checkout(String userName, long totalCost, FastRejectCache.Probe probe, Runnable takeStock, Journal journal) {
+        User buyer = concurrencyStrategy.loadBuyer(userName).get();
+        if (buyer.getMoney() < totalCost) {
+            probe.balance(buyer.getMoney());
+            throw new BadRequestAlertException("Not enough money.","","");
         }
-        int remainedNrOfCoins = deposit.get(coin) - neededCoins;
-        deposit.put(coin, remainedNrOfCoins);
-    }
 
-    private static void giveCoins(Map<Integer, Integer> deposit, int coin, int nr) {
-        int updatedNrOfCoins = deposit.get(coin) + nr;
-        deposit.put(coin, updatedNrOfCoins);
-    }
+        // the inserted coins go into the machine and the rest is paid back out of the machine's coins;
+        // change the deposit can cover by itself needs no look at the machine's coins to be accepted
+        int changeDue = toIntExact(buyer.getMoney() - totalCost);
+        int[] coins = new int[coinSet.width()];
+        buyer.getDeposit().copyTo(coins);
+        if (!fastRejectCache.deposit(userName, buyer.getDeposit()).canPay(changeDue) && !coinFloatService.canSettle(coins, changeDue)) {
+            throw new BadRequestAlertException("Cannot make exact change.","","");
+        }
 
-    public static int sumMinorCoins(Map<Integer, Integer> deposit, int coin, List<Integer> coinTypesOrderedDesc) {
-        int sum = 0;
+        // stock and deposit are written by the inventory and a conditional single-row update rather than by
+        // dirty checking; the deposit update detaches the loaded entities, which from then on only carry the response
+        takeStock.run();
 
-        ListIterator<Integer> index = coinTypesOrderedDesc.listIterator();
-        while (index.hasNext()) {
-            int coinType = index.next();
-            if (coinType == coin) {
-                while (index.hasNext()) {
-                    coinType = index.next();
-                    sum += deposit.get(coinType) * coinType;
-                }
-                break;
-            }
+        int[] change = new int[coinSet.width()];
+        if (!coinFloatService.settle(coins, changeDue, change)) {
+            throw new BadRequestAlertException("Cannot make exact change.","","");
         }
-
-        return sum;
+        CoinVector deposit = buyer.getDeposit().copy();
+        deposit.setAll(change);
+        if (userRepository.replaceDeposit(buyer.getId(), buyer.getDeposit(), deposit) == 0) {
+            throw new OptimisticLockingFailureException("Deposit of " + userName + " changed during the purchase");
+        }
+        fastRejectCache.depositChanging(userName, deposit);
+        for (int i = 0; i < change.length; i++) {
+            change[i] -= coins[i];
+        }
+        journal.record(buyer.getId(), change, deposit);
+        return deposit;
     }
 
-    public static void takeMinorCoins(Map<Integer, Integer> deposit, int coin, List<Integer> coinTypesOrderedDesc) {
-        ListIterator<Integer> index = coinTypesOrderedDesc.listIterator();
-        while (index.hasNext()) {
-            int coinType = index.next();
-            if (coinType == coin) {
-                while(index.hasNext()) {
-                    coinType = index.next();
-                    deposit.put(coinType, 0);
-                }
-                return;
-            }
+    public void deposit(String userName, Integer coin, Integer nr) {
+        int slot = coinSet.slotOf(coin);
+        if (slot < 0) {
+            String accepted = Arrays.stream(coinSet.denominations()).mapToObj(String::valueOf).collect(Collectors.joining(", "));
+            throw new BadRequestAlertException("Wrong coin. Please add only coins of " + accepted + " cents.","","");
         }
+        if (nr == null || nr <= 0) {
+            throw new BadRequestAlertException("Add at least one coin.","","");
+        }
+        concurrencyStrategy.execute(
+            () -> {
+                User buyer = concurrencyStrategy.loadBuyer(userName).get();
+                // extends the bitset of the deposit kept by the cache, rather than building one for the new coins
+                CoinVector deposit = fastRejectCache.deposit(userName, buyer.getDeposit());
+                deposit.add(slot, nr);
+                buyer.setDeposit(deposit);
+                fastRejectCache.depositChanging(userName, deposit);
+                int[] moved = new int[coinSet.width()];
+                moved[slot] = nr;
+                ledger.append(Ledger.Type.DEPOSIT, buyer.getId(), null, 0, (long) coin * nr, moved);
+                return null;
+            }
+        );
     }
 
-    private static void giveBackChange(Map<Integer, Integer> deposit, int coin, List<Integer> coinTypesOrderedDesc, int value) {
-        ListIterator<Integer> index = coinTypesOrderedDesc.listIterator();
-        while (index.hasNext()) {
-            int coinType = index.next();
-            if (coinType == coin) {
-                while((value > 0) && index.hasNext()) {
-                    coinType = index.next();
-                    int neededCoins = value/coinType;
-                    giveCoins(deposit, coinType, neededCoins);
-                    value -= neededCoins * coinType;
+    public CoinVector resetDeposit(String userName) {
+        return concurrencyStrategy.execute(
+            () -> {
+                User buyer = concurrencyStrategy.loadBuyer(userName).get();
+                CoinVector change = buyer.getDeposit().copy();
+                long amount = buyer.getMoney();
+                buyer.getDeposit().clear();
+                fastRejectCache.depositChanging(userName, buyer.getDeposit());
+                int[] moved = new int[coinSet.width()];
+                change.copyTo(moved);
+                for (int i = 0; i < moved.length; i++) {
+                    moved[i] = -moved[i];
                 }
-                return;
+                ledger.append(Ledger.Type.RESET, buyer.getId(), null, 0, amount, moved);
+                return change;
             }
-        }
+        );
     }
 
-    private void addMoney(Map<Integer, Integer> deposit, Integer coin, Integer nr) {
-        deposit.put(coin, deposit.get(coin) + nr);
+    @FunctionalInterface
+    private interface Journal {
+        /**
+         * @param moved the change of the deposit of the buyer, per coin slot.
+         * @param change the deposit the buyer is left with.
+         */
+        void record(Long buyerId, int[] moved, CoinVector change);
     }
 }
@@ -0,0 +1,145 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.service.change.ChangeEngine;
+import co.mvpmatch.service.dto.ChangeRequest;
+import co.mvpmatch.service.dto.ChangeResponse;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service computing change for many deposits at once, to re-settle or audit past purchases.
+ * <p>
+ * Items are laid out in flat primitive arrays and split across the common fork/join pool once a batch
+ * is larger than {@code application.change.batch-threshold}. Each worker reuses the scratch buffers the
+ * {@link ChangeEngine} keeps per thread, so the batch allocates nothing beyond its input and output.
+ */
+@Service
+public class ChangeBatchService {
+
+    private final ChangeEngine changeEngine;
+
+    private final CoinSet coinSet;
+
+    private final int threshold;
+
+    private final int maxAmount;
+
+    private final int maxBatchSize;
+
+    public ChangeBatchService(ChangeEngine changeEngine, CoinSet coinSet, ApplicationProperties applicationProperties) {
+        this.changeEngine = changeEngine;
+        this.coinSet = coinSet;
+        this.threshold = Math.max(1, applicationProperties.getChange().getBatchThreshold());
+        this.maxAmount = applicationProperties.getChange().getMaxAmount();
+        this.maxBatchSize = applicationProperties.getChange().getMaxBatchSize();
+    }
+
+    /**
+     * Computes the change of each item, paid out of its own coins only.
+     *
+     * @param available the coins of each item, {@link CoinSet#width()} entries per item.
+     * @param amounts the amount to pay out for each item.
+     * @param change receives the coins paid for each item, laid out like {@code available}.
+     * @return the number of coins paid for each item, or {@link ChangeEngine#NO_EXACT_CHANGE}.
+     */
+    public int[] makeChange(int[] available, int[] amounts, int[] change) {
+        int width = changeEngine.size();
+        if (available.length != amounts.length * width || change.length != available.length) {
+            throw new IllegalArgumentException("Expected " + width + " coin counts per amount");
+        }
+        int[] coins = new int[amounts.length];
+        if (amounts.length <= threshold) {
+            changeEngine.makeChange(available, amounts, change, coins, 0, amounts.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new Split(available, amounts, change, coins, 0, amounts.length));
+        }
+        return coins;
+    }
+
+    /**
+     * Computes the change of each request, paid out of its own deposit only.
+     * <p>
+     * The work and memory of an item grow with its amount, so batches over {@code application.change.max-batch-size}
+     * items and amounts over {@code application.change.max-amount} are rejected.
+     */
+    public List<ChangeResponse> makeChange(List<ChangeRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new BadRequestAlertException("A change batch holds at most " + maxBatchSize + " items.", "", "");
+        }
+        for (ChangeRequest request : requests) {
+            if (request.getAmount() != null && (request.getAmount() < 0 || request.getAmount() > maxAmount)) {
+                throw new BadRequestAlertException("The amount must be between 0 and " + maxAmount + ".", "", "");
+            }
+        }
+        int width = coinSet.width();
+        int[] available = new int[requests.size() * width];
+        int[] amounts = new int[requests.size()];
+        for (int k = 0; k < amounts.length; k++) {
+            ChangeRequest request = requests.get(k);
+            if (request.getDeposit() != null) {
+                request.getDeposit().copyTo(available, k * width);
+            }
+            amounts[k] = request.getAmount() != null ? request.getAmount() : 0;
+        }
+
+        int[] change = new int[available.length];
+        int[] coins = makeChange(available, amounts, change);
+
+        List<ChangeResponse> responses = new ArrayList<>(amounts.length);
+        for (int k = 0; k < amounts.length; k++) {
+            ChangeResponse response = new ChangeResponse();
+            response.setExact(coins[k] != ChangeEngine.NO_EXACT_CHANGE);
+            if (response.isExact()) {
+                CoinVector paid = new CoinVector(coinSet);
+                paid.setAll(change, k * width);
+                response.setCoins(coins[k]);
+                response.setChange(paid);
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private final class Split extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] available;
+
+        private final int[] amounts;
+
+        private final int[] change;
+
+        private final int[] coins;
+
+        private final int from;
+
+        private final int to;
+
+        Split(int[] available, int[] amounts, int[] change, int[] coins, int from, int to) {
+            this.available = available;
+            this.amounts = amounts;
+            this.change = change;
+            this.coins = coins;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                changeEngine.makeChange(available, amounts, change, coins, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Split(available, amounts, change, coins, from, middle), new Split(available, amounts, change, coins, middle, to));
+        }
+    }
+}
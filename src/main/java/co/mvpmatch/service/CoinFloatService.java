@@ -0,0 +1,328 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.MachineCoin;
+import co.mvpmatch.repository.MachineCoinRepository;
+import co.mvpmatch.service.change.ChangeEngine;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service managing the coins held by the machine itself to pay out change.
+ * <p>
+ * The float lives in memory, one atomic counter per denomination, and is updated with compare-and-set
+ * so concurrent purchases never wait on each other or on a database row. It is persisted write-behind
+ * to the {@code machine_coin} table, by adding the coins each slot gained or lost since the last flush to its row.
+ * <p>
+ * The float is only used with {@code application.coin-float.enabled}. Otherwise the machine is taken to hold
+ * any coin it needs, and change is broken out of the inserted coins as it was before the machine had a float.
+ * An enabled float starts with {@code application.coin-float.initial} and is stocked with {@link #stock(Integer, Integer)}.
+ */
+@Service
+public class CoinFloatService {
+
+    private static final int MAX_SETTLE_ATTEMPTS = 8;
+
+    private final Logger log = LoggerFactory.getLogger(CoinFloatService.class);
+
+    private final MachineCoinRepository machineCoinRepository;
+
+    private final ChangeEngine changeEngine;
+
+    private final CoinSet coinSet;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AtomicIntegerArray coins;
+
+    private final AtomicIntegerArray unflushed;
+
+    private final boolean enabled;
+
+    private final Map<Integer, Integer> initial;
+
+    private final Counter shortfall;
+
+    private volatile boolean loaded;
+
+    public CoinFloatService(
+        MachineCoinRepository machineCoinRepository,
+        ChangeEngine changeEngine,
+        CoinSet coinSet,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.machineCoinRepository = machineCoinRepository;
+        this.changeEngine = changeEngine;
+        this.coinSet = coinSet;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = applicationProperties.getCoinFloat().isEnabled();
+        this.initial = applicationProperties.getCoinFloat().getInitial();
+        this.coins = new AtomicIntegerArray(coinSet.width());
+        this.unflushed = new AtomicIntegerArray(coinSet.width());
+        this.shortfall =
+            Counter
+                .builder("vmachine.coin-float.shortfall")
+                .description("Coins a rolled back purchase could not take back, having been paid out since")
+                .register(meterRegistry);
+    }
+
+    public int count(int slot) {
+        return coins.get(slot);
+    }
+
+    public CoinVector getCoins() {
+        CoinVector vector = new CoinVector(coinSet);
+        for (int i = 0; i < coinSet.width(); i++) {
+            vector.set(i, coins.get(i));
+        }
+        return vector;
+    }
+
+    /**
+     * Puts coins into the float, for the machine to pay change out of.
+     */
+    public void stock(Integer coin, Integer nr) {
+        if (!enabled) {
+            throw new BadRequestAlertException("The machine has no coin float.","","");
+        }
+        int slot = coinSet.slotOf(coin);
+        if (slot < 0) {
+            String accepted = Arrays.stream(coinSet.denominations()).mapToObj(String::valueOf).collect(Collectors.joining(", "));
+            throw new BadRequestAlertException("Wrong coin. Please add only coins of " + accepted + " cents.","","");
+        }
+        if (nr == null || nr <= 0) {
+            throw new BadRequestAlertException("Add at least one coin.","","");
+        }
+        coins.addAndGet(slot, nr);
+        unflushed.addAndGet(slot, nr);
+        log.info("Stocked the float with {} coins of {}", nr, coin);
+    }
+
+    /**
+     * Takes the inserted coins into the machine and pays {@code amount} back out of them and the float.
+     *
+     * @param inserted the coins inserted by the buyer, indexed by {@link CoinVector} slot.
+     * @param amount the change to pay out.
+     * @param change receives the coins paid out.
+     * @return {@code false}, with the float untouched, if the change cannot be paid exactly.
+     */
+    public boolean settle(int[] inserted, int amount, int[] change) {
+        if (!enabled) {
+            return changeEngine.makeChange(withAnyCoin(inserted, amount), amount, change) != ChangeEngine.NO_EXACT_CHANGE;
+        }
+        int width = coinSet.width();
+        int[] pool = new int[width];
+        int[] delta = new int[width];
+        for (int attempt = 0; attempt < MAX_SETTLE_ATTEMPTS; attempt++) {
+            for (int i = 0; i < width; i++) {
+                pool[i] = inserted[i] + coins.get(i);
+            }
+            if (changeEngine.makeChange(pool, amount, change) == ChangeEngine.NO_EXACT_CHANGE) {
+                return false;
+            }
+            for (int i = 0; i < width; i++) {
+                delta[i] = inserted[i] - change[i];
+            }
+            if (tryApply(delta)) {
+                revertOnRollback(delta);
+                return true;
+            }
+            // another purchase took the coins we counted on, look again
+        }
+        log.debug("Could not settle change of {} after {} attempts", amount, MAX_SETTLE_ATTEMPTS);
+        return false;
+    }
+
+    /**
+     * Tells whether {@link #settle(int[], int, int[])} would currently succeed, without touching the float.
+     */
+    public boolean canSettle(int[] inserted, int amount) {
+        int width = coinSet.width();
+        if (!enabled) {
+            return changeEngine.makeChange(withAnyCoin(inserted, amount), amount, new int[width]) != ChangeEngine.NO_EXACT_CHANGE;
+        }
+        int[] pool = new int[width];
+        for (int i = 0; i < width; i++) {
+            pool[i] = inserted[i] + coins.get(i);
+        }
+        return changeEngine.makeChange(pool, amount, new int[width]) != ChangeEngine.NO_EXACT_CHANGE;
+    }
+
+    /**
+     * @return the inserted coins plus as many of every coin as {@code amount} could need, for a machine without a
+     * float.
+     */
+    private int[] withAnyCoin(int[] inserted, int amount) {
+        int[] pool = new int[coinSet.width()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = inserted[i] + amount / coinSet.denomination(i);
+        }
+        return pool;
+    }
+
+    /**
+     * Applies a delta per slot, all or nothing; no counter is ever allowed to go below zero.
+     */
+    boolean tryApply(int[] delta) {
+        int width = delta.length;
+        for (int i = 0; i < width; i++) {
+            if (delta[i] < 0 && !tryTake(i, -delta[i])) {
+                for (int j = 0; j < i; j++) {
+                    if (delta[j] < 0) {
+                        coins.addAndGet(j, -delta[j]);
+                    }
+                }
+                return false;
+            }
+        }
+        for (int i = 0; i < width; i++) {
+            if (delta[i] > 0) {
+                coins.addAndGet(i, delta[i]);
+            }
+            unflushed.addAndGet(i, delta[i]);
+        }
+        return true;
+    }
+
+    private boolean tryTake(int slot, int count) {
+        while (true) {
+            int current = coins.get(slot);
+            if (current < count) {
+                return false;
+            }
+            if (coins.compareAndSet(slot, current, current - count)) {
+                return true;
+            }
+        }
+    }
+
+    private void revertOnRollback(int[] delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        for (int i = 0; i < delta.length; i++) {
+                            revert(i, delta[i]);
+                        }
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * Takes a settled delta back out of a slot. The coins a rolled back purchase put in may already have been
+     * paid out to another buyer, so the counter stops at zero and the coins missing are counted instead.
+     */
+    void revert(int slot, int delta) {
+        while (true) {
+            int current = coins.get(slot);
+            int next = Math.max(0, current - delta);
+            if (coins.compareAndSet(slot, current, next)) {
+                unflushed.addAndGet(slot, next - current);
+                int missing = next - (current - delta);
+                if (missing > 0) {
+                    shortfall.increment(missing);
+                    log.warn("Float short of {} coins of {} after a rollback", missing, coinSet.denomination(slot));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds the persisted float to whatever was settled before the application was ready, first giving each coin
+     * of the set without a row one with its initial count.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        boolean[] persisted = new boolean[coinSet.width()];
+        for (MachineCoin machineCoin : machineCoinRepository.findAll()) {
+            int slot = coinSet.slotOf(machineCoin.getDenomination());
+            if (slot >= 0) {
+                persisted[slot] = true;
+                coins.addAndGet(slot, machineCoin.getAmount());
+            }
+        }
+        List<MachineCoin> missing = new ArrayList<>();
+        for (int i = 0; i < persisted.length; i++) {
+            if (!persisted[i]) {
+                int amount = enabled ? initial.getOrDefault(coinSet.denomination(i), 0) : 0;
+                coins.addAndGet(i, amount);
+                missing.add(new MachineCoin(coinSet.denomination(i), amount));
+            }
+        }
+        if (!missing.isEmpty()) {
+            machineCoinRepository.saveAll(missing);
+        }
+        loaded = true;
+        log.debug("Loaded machine coin float: {}", coins);
+    }
+
+    /**
+     * Adds the coins each slot gained or lost since the last flush to its row, in one transaction of its own; if
+     * that fails they are kept for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${application.coin-float.flush-delay:1000}")
+    public void flush() {
+        if (!loaded) {
+            return;
+        }
+        int[] drained = new int[coinSet.width()];
+        boolean changed = false;
+        for (int i = 0; i < drained.length; i++) {
+            drained[i] = unflushed.getAndSet(i, 0);
+            changed |= drained[i] != 0;
+        }
+        if (!changed) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(
+                status -> {
+                    for (int i = 0; i < drained.length; i++) {
+                        if (drained[i] != 0) {
+                            machineCoinRepository.addAmount(coinSet.denomination(i), drained[i]);
+                        }
+                    }
+                }
+            );
+        } catch (RuntimeException e) {
+            for (int i = 0; i < drained.length; i++) {
+                unflushed.addAndGet(i, drained[i]);
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,329 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers the balances and stock purchases were last rejected for, so that a purchase bound to fail the same
+ * way is rejected before it opens a transaction.
+ * <p>
+ * The cache learns from purchases that fail: what they read is what the database held, as they wrote nothing.
+ * It also keeps the deposit each buyer was left with by a committed deposit or purchase on this node, with the
+ * deposit's exact-change bitset, so a purchase whose change neither the deposit nor the machine's coins can pay
+ * is rejected too. That bitset is extended as coins are deposited and handed to the next transaction of the
+ * buyer, which then has no need to build it again.
+ * <p>
+ * Every change of a balance or stock on this node bumps a generation counter of its key, before the change and
+ * once it is over, and drops what is cached for it; a value read while its key's generation moved is not kept.
+ * Changes made on other nodes are not seen, so a value is only trusted for a configured time.
+ */
+@Service
+public class FastRejectCache {
+
+    private static final int GENERATIONS = 1024;
+
+    private final boolean enabled;
+
+    private final long ttl;
+
+    private final int maxEntries;
+
+    private final ConcurrentMap<String, Entry> balances = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Entry> stocks = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray balanceGenerations = new AtomicLongArray(GENERATIONS);
+
+    private final AtomicLongArray stockGenerations = new AtomicLongArray(GENERATIONS);
+
+    private final Counter poorRejections;
+
+    private final Counter soldOutRejections;
+
+    private final Counter changeRejections;
+
+    private final CoinFloatService coinFloatService;
+
+    public FastRejectCache(ApplicationProperties applicationProperties, CoinFloatService coinFloatService, MeterRegistry meterRegistry) {
+        this.coinFloatService = coinFloatService;
+        ApplicationProperties.FastReject properties = applicationProperties.getFastReject();
+        this.enabled = properties.isEnabled();
+        this.ttl = properties.getTtl();
+        this.maxEntries = properties.getMaxEntries();
+        this.poorRejections =
+            Counter
+                .builder("vmachine.fast-reject")
+                .tag("reason", "money")
+                .description("Purchases rejected without a transaction")
+                .register(meterRegistry);
+        this.soldOutRejections =
+            Counter
+                .builder("vmachine.fast-reject")
+                .tag("reason", "stock")
+                .description("Purchases rejected without a transaction")
+                .register(meterRegistry);
+        this.changeRejections =
+            Counter
+                .builder("vmachine.fast-reject")
+                .tag("reason", "change")
+                .description("Purchases rejected without a transaction")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rejects a purchase the cached balance and stock say will fail.
+     *
+     * @param quantities the units bought, per product id.
+     * @throws BadRequestAlertException with the message the purchase would fail with.
+     */
+    public void check(String userName, Map<Long, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long totalCost = 0;
+        boolean costKnown = true;
+        String soldOut = null;
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Entry stock = fresh(stocks.get(line.getKey()), now);
+            if (stock == null) {
+                costKnown = false;
+                continue;
+            }
+            totalCost += stock.cost * line.getValue();
+            if (stock.value < line.getValue()) {
+                soldOut = "Amount unavailable";
+            }
+        }
+        // in the order the purchase itself checks them
+        Entry balance = fresh(balances.get(userName), now);
+        if (costKnown && balance != null && balance.value < totalCost) {
+            poorRejections.increment();
+            throw new BadRequestAlertException("Not enough money.","","");
+        }
+        if (soldOut != null) {
+            soldOutRejections.increment();
+            throw new BadRequestAlertException(soldOut,"","");
+        }
+        if (costKnown && balance != null && balance.deposit != null && !canChange(balance.deposit, balance.value - totalCost)) {
+            changeRejections.increment();
+            throw new BadRequestAlertException("Cannot make exact change.","","");
+        }
+    }
+
+    private boolean canChange(CoinVector deposit, long changeDue) {
+        if (changeDue > Integer.MAX_VALUE) {
+            return true;
+        }
+        if (deposit.canPay((int) changeDue)) {
+            return true;
+        }
+        int[] coins = new int[deposit.getCoinSet().width()];
+        deposit.copyTo(coins);
+        return coinFloatService.canSettle(coins, (int) changeDue);
+    }
+
+    /**
+     * @return a copy of the deposit kept for the buyer, with its bitset, if it holds the coins just loaded;
+     * otherwise {@code loaded} itself.
+     */
+    public CoinVector deposit(String userName, CoinVector loaded) {
+        Entry balance = enabled ? fresh(balances.get(userName), System.currentTimeMillis()) : null;
+        return balance != null && loaded.equals(balance.deposit) ? balance.deposit.copy() : loaded;
+    }
+
+    /**
+     * {@link #balanceChanged(String)} now and once the current transaction is over, keeping the deposit the buyer
+     * is left with if it commits.
+     */
+    public void depositChanging(String userName, CoinVector deposit) {
+        balanceChanged(userName);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            balanceChanged(userName);
+            learnDeposit(userName, deposit);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    balanceChanged(userName);
+                    if (status == STATUS_COMMITTED) {
+                        learnDeposit(userName, deposit);
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * @return a probe learning what the purchase of these products reads, to be used by a single purchase.
+     */
+    public Probe probe(String userName, Iterable<Long> productIds) {
+        if (!enabled) {
+            return Probe.NONE;
+        }
+        Map<Long, Long> generations = new HashMap<>();
+        for (Long productId : productIds) {
+            generations.put(productId, stockGenerations.get(slot(productId)));
+        }
+        return new Probe(this, userName, balanceGenerations.get(slot(userName)), generations);
+    }
+
+    /**
+     * Forgets the balance of a user, to be called before it changes and again once the change is over.
+     */
+    public void balanceChanged(String userName) {
+        balanceGenerations.incrementAndGet(slot(userName));
+        balances.remove(userName);
+    }
+
+    /**
+     * Forgets the stock and cost of a product, to be called before they change and again once the change is over.
+     */
+    public void stockChanged(Long productId) {
+        stockGenerations.incrementAndGet(slot(productId));
+        stocks.remove(productId);
+    }
+
+    /**
+     * {@link #balanceChanged(String)} now and once the current transaction is over.
+     */
+    public void balanceChanging(String userName) {
+        balanceChanged(userName);
+        afterCompletion(() -> balanceChanged(userName));
+    }
+
+    /**
+     * {@link #stockChanged(Long)} now and once the current transaction is over.
+     */
+    public void stockChanging(Long productId) {
+        stockChanged(productId);
+        afterCompletion(() -> stockChanged(productId));
+    }
+
+    private void learnBalance(String userName, long generation, long money) {
+        if (balances.size() < maxEntries && balanceGenerations.get(slot(userName)) == generation) {
+            balances.put(userName, new Entry(money, 0, null, System.currentTimeMillis() + ttl));
+            if (balanceGenerations.get(slot(userName)) != generation) {
+                // changed while being stored
+                balances.remove(userName);
+            }
+        }
+    }
+
+    private void learnDeposit(String userName, CoinVector deposit) {
+        long generation = balanceGenerations.get(slot(userName));
+        if (enabled && balances.size() < maxEntries) {
+            // the bitset is built before the deposit is shared, it is only read from then on
+            deposit.canPay(0);
+            balances.put(userName, new Entry(deposit.total(), 0, deposit, System.currentTimeMillis() + ttl));
+            if (balanceGenerations.get(slot(userName)) != generation) {
+                balances.remove(userName);
+            }
+        }
+    }
+
+    private void learnStock(Long productId, long generation, long available, long cost) {
+        if (stocks.size() < maxEntries && stockGenerations.get(slot(productId)) == generation) {
+            stocks.put(productId, new Entry(available, cost, null, System.currentTimeMillis() + ttl));
+            if (stockGenerations.get(slot(productId)) != generation) {
+                stocks.remove(productId);
+            }
+        }
+    }
+
+    private static Entry fresh(Entry entry, long now) {
+        return entry != null && entry.expires > now ? entry : null;
+    }
+
+    private static int slot(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (GENERATIONS - 1);
+    }
+
+    private static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    /**
+     * What a purchase read before it failed, kept once its transaction is over if nothing changed it meanwhile.
+     */
+    public static final class Probe {
+
+        /**
+         * A probe that learns nothing, for purchases that may read what their own transaction wrote.
+         */
+        public static final Probe NONE = new Probe(null, null, 0, Map.of());
+
+        private final FastRejectCache cache;
+
+        private final String userName;
+
+        private final long balanceGeneration;
+
+        private final Map<Long, Long> stockGenerations;
+
+        private Probe(FastRejectCache cache, String userName, long balanceGeneration, Map<Long, Long> stockGenerations) {
+            this.cache = cache;
+            this.userName = userName;
+            this.balanceGeneration = balanceGeneration;
+            this.stockGenerations = stockGenerations;
+        }
+
+        public void balance(long money) {
+            if (cache != null) {
+                afterCompletion(() -> cache.learnBalance(userName, balanceGeneration, money));
+            }
+        }
+
+        public void stock(Product product, long available) {
+            Long generation = stockGenerations.get(product.getId());
+            if (cache != null && generation != null) {
+                long cost = product.getCost();
+                afterCompletion(() -> cache.learnStock(product.getId(), generation, available, cost));
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final long value;
+
+        private final long cost;
+
+        private final CoinVector deposit;
+
+        private final long expires;
+
+        private Entry(long value, long cost, CoinVector deposit, long expires) {
+            this.value = value;
+            this.cost = cost;
+            this.deposit = deposit;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.IdempotentResult;
+import co.mvpmatch.repository.IdempotentResultRepository;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service replaying the result of a buyer operation when it is sent again with the same idempotency key.
+ * <p>
+ * The latest results are kept in a bounded in-memory map, so a retry storm costs lookups rather than purchase
+ * transactions; every result is also written to the {@code idempotent_result} table, so a retry is still
+ * recognized after a restart or once the result has left the map. A key sent again while its first request
+ * is still running waits for that request instead of running the operation a second time, and fails with it.
+ * <p>
+ * Failed operations are not recorded: sending the key again runs the operation again.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotentResultRepository idempotentResultRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long ttl;
+
+    private final Map<String, Result> results;
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+
+    private final Counter replays;
+
+    public IdempotencyService(
+        IdempotentResultRepository idempotentResultRepository,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.idempotentResultRepository = idempotentResultRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = applicationProperties.getIdempotency().getTtl();
+        int maxEntries = applicationProperties.getIdempotency().getMaxEntries();
+        this.results =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        this.replays = Counter
+            .builder("vmachine.idempotency.replays")
+            .description("Requests answered with the recorded result of an earlier request")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code command} once per user and key, and returns its recorded result for every later call.
+     *
+     * @param userName the user sending the request.
+     * @param key the idempotency key, {@code null} to simply run the command.
+     * @param operation the name of the operation, a key may not be used for two operations.
+     * @param type the type of the result.
+     * @param command the operation.
+     * @return the result of the command, recorded or not.
+     */
+    public <T> T execute(String userName, String key, String operation, Class<T> type, Supplier<T> command) {
+        if (key == null) {
+            return command.get();
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestAlertException("The idempotency key must have 1 to " + MAX_KEY_LENGTH + " characters.","","");
+        }
+        String id = userName + " " + key;
+        while (true) {
+            Result recorded = lookup(id, operation, type);
+            if (recorded != null) {
+                return replay(recorded, operation, type);
+            }
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            CompletableFuture<Void> other = running.putIfAbsent(id, done);
+            if (other != null) {
+                await(other);
+                continue;
+            }
+            try {
+                // looked up again now that no other request can record this key
+                recorded = lookup(id, operation, type);
+                if (recorded != null) {
+                    return replay(recorded, operation, type);
+                }
+                T value = command.get();
+                record(id, operation, value);
+                return value;
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                throw e;
+            } finally {
+                running.remove(id, done);
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Removes the results older than the configured time to live.
+     */
+    @Scheduled(fixedDelayString = "${application.idempotency.purge-delay:60000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        synchronized (results) {
+            results.values().removeIf(result -> result.expires <= now);
+        }
+        int purged = transactionTemplate.execute(
+            status -> idempotentResultRepository.deleteByCreatedDateBefore(Instant.ofEpochMilli(now - ttl))
+        );
+        log.debug("Purged {} expired idempotent results", purged);
+    }
+
+    private Result lookup(String id, String operation, Class<?> type) {
+        long now = System.currentTimeMillis();
+        synchronized (results) {
+            Result result = results.get(id);
+            if (result != null) {
+                if (result.expires > now) {
+                    return result;
+                }
+                results.remove(id);
+            }
+        }
+        Optional<IdempotentResult> stored = idempotentResultRepository.findById(id);
+        if (stored.isEmpty() || stored.get().getCreatedDate().toEpochMilli() + ttl <= now) {
+            return null;
+        }
+        if (!stored.get().getOperation().equals(operation)) {
+            return new Result(stored.get().getOperation(), null, now);
+        }
+        Object value = read(stored.get().getResponse(), type);
+        Result result = new Result(operation, value, stored.get().getCreatedDate().toEpochMilli() + ttl);
+        synchronized (results) {
+            results.put(id, result);
+        }
+        return result;
+    }
+
+    private void record(String id, String operation, Object value) {
+        long now = System.currentTimeMillis();
+        synchronized (results) {
+            results.put(id, new Result(operation, value, now + ttl));
+        }
+        try {
+            String response = objectMapper.writeValueAsString(value);
+            transactionTemplate.executeWithoutResult(
+                status -> idempotentResultRepository.save(new IdempotentResult(id, operation, response, Instant.ofEpochMilli(now)))
+            );
+        } catch (JsonProcessingException | RuntimeException e) {
+            // the operation has been applied: failing the request now would only invite a retry that applies it again
+            log.warn("Could not store the result of {}, it is only replayed by this node: {}", id, e.getMessage());
+        }
+    }
+
+    private <T> T replay(Result recorded, String operation, Class<T> type) {
+        if (!recorded.operation.equals(operation)) {
+            throw new BadRequestAlertException("The idempotency key was already used for another operation.","","");
+        }
+        replays.increment();
+        return type.cast(recorded.value);
+    }
+
+    private static void await(CompletableFuture<Void> other) {
+        try {
+            other.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Object read(String response, Class<?> type) {
+        try {
+            return objectMapper.readValue(response, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable idempotent result", e);
+        }
+    }
+
+    private static final class Result {
+
+        private final String operation;
+
+        private final Object value;
+
+        private final long expires;
+
+        private Result(String operation, Object value, long expires) {
+            this.operation = operation;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Purchase;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service keeping the history of completed purchases in the {@link Purchase} table.
+ * <p>
+ * A purchase is only queued once its transaction commits; a writer thread drains the queue and inserts what it
+ * finds in one JDBC batch, so the history adds no statement to the purchase itself. The purchase ids are
+ * generated by the database, which keeps Hibernate from batching their inserts, hence the plain JDBC. When the
+ * queue is full the committing thread writes its purchase itself, in a transaction of its own, slowing the buyers
+ * down rather than losing their history.
+ * <p>
+ * On MySQL the table is partitioned by month: the partitions of the coming months are added, and those past the
+ * configured retention dropped, on startup and every day, so the months the changelog created are only a start.
+ */
+@Service
+public class PurchaseHistoryService {
+
+    private static final String INSERT =
+        "insert into purchase (buyer_id, product_id, quantity, total, change_coins, created_date) values (?, ?, ?, ?, ?, ?)";
+
+    private static final DateTimeFormatter PARTITION = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String LAST_PARTITION = "pfuture";
+
+    private static final int ATTEMPTS = 3;
+
+    private final Logger log = LoggerFactory.getLogger(PurchaseHistoryService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<Purchase> purchases;
+
+    private final int batchSize;
+
+    private final int retentionMonths;
+
+    private final int monthsAhead;
+
+    private final Thread writer;
+
+    private final DistributionSummary batches;
+
+    private final Counter lost;
+
+    private volatile boolean stopped;
+
+    public PurchaseHistoryService(
+        JdbcTemplate jdbcTemplate,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.PurchaseHistory properties = applicationProperties.getPurchaseHistory();
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // the committing thread writes from afterCommit, where joining the finished transaction would lose the rows
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.purchases = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.retentionMonths = properties.getRetentionMonths();
+        this.monthsAhead = properties.getMonthsAhead();
+        Gauge
+            .builder("vmachine.purchase.history.queue", purchases, BlockingQueue::size)
+            .description("Purchases waiting to be written to the history")
+            .register(meterRegistry);
+        this.batches =
+            DistributionSummary
+                .builder("vmachine.purchase.history.batch")
+                .description("Purchases written to the history in one batch")
+                .register(meterRegistry);
+        this.lost = Counter.builder("vmachine.purchase.history.lost").description("Purchases that could not be written").register(meterRegistry);
+        this.writer = new Thread(this::work, "purchase-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records a purchase once the current transaction commits.
+     *
+     * @param change the deposit the buyer was left with.
+     */
+    public void record(Long buyerId, Long productId, int quantity, long total, CoinVector change) {
+        Purchase purchase = new Purchase();
+        purchase.setBuyerId(buyerId);
+        purchase.setProductId(productId);
+        purchase.setQuantity(quantity);
+        purchase.setTotal(total);
+        purchase.setChange(change.copy());
+        purchase.setCreatedDate(Instant.now());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(purchase);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(purchase);
+                }
+            }
+        );
+    }
+
+    /**
+     * Adds the partitions of the coming months and drops those past the retention, on MySQL.
+     */
+    @Scheduled(cron = "${application.purchase-history.maintenance-cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (database == null || !(database.contains("MySQL") || database.contains("MariaDB"))) {
+            return;
+        }
+        List<String> partitions = jdbcTemplate.queryForList(
+            "select partition_name from information_schema.partitions " +
+            "where table_schema = database() and table_name = 'purchase' and partition_name is not null",
+            String.class
+        );
+        for (String statement : maintenanceStatements(partitions, YearMonth.now(), monthsAhead, retentionMonths)) {
+            log.info("Maintaining the purchase partitions: {}", statement);
+            jdbcTemplate.execute(statement);
+        }
+    }
+
+    /**
+     * Brings the partitions up to date as soon as the application is ready, rather than at the next scheduled
+     * run; a failure is left for that run to retry.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainPartitionsOnStartup() {
+        try {
+            maintainPartitions();
+        } catch (DataAccessException e) {
+            log.warn("Could not maintain the purchase partitions on startup: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopped = true;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        List<Purchase> rest = new ArrayList<>();
+        purchases.drainTo(rest);
+        if (!rest.isEmpty()) {
+            write(rest);
+        }
+    }
+
+    /**
+     * @return the statements adding a partition for every month up to {@code monthsAhead} after {@code now} that
+     * has none yet, and dropping the partitions of the months before the last {@code retentionMonths}.
+     */
+    static List<String> maintenanceStatements(Collection<String> partitions, YearMonth now, int monthsAhead, int retentionMonths) {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        for (String partition : partitions) {
+            if (!LAST_PARTITION.equals(partition)) {
+                months.add(YearMonth.parse(partition, PARTITION));
+            }
+        }
+        if (months.isEmpty() || !partitions.contains(LAST_PARTITION)) {
+            // not partitioned by this service's layout
+            return Collections.emptyList();
+        }
+        List<String> statements = new ArrayList<>();
+        YearMonth until = now.plusMonths(monthsAhead);
+        if (months.last().isBefore(until)) {
+            StringBuilder added = new StringBuilder();
+            for (YearMonth month = months.last().plusMonths(1); !month.isAfter(until); month = month.plusMonths(1)) {
+                added
+                    .append("partition ")
+                    .append(month.format(PARTITION))
+                    .append(" values less than (to_days('")
+                    .append(month.plusMonths(1).atDay(1))
+                    .append("')), ");
+            }
+            statements.add(
+                "alter table purchase reorganize partition " +
+                LAST_PARTITION +
+                " into (" +
+                added +
+                "partition " +
+                LAST_PARTITION +
+                " values less than maxvalue)"
+            );
+        }
+        if (retentionMonths > 0) {
+            YearMonth oldest = now.minusMonths(retentionMonths - 1L);
+            for (YearMonth month : months.headSet(oldest)) {
+                statements.add("alter table purchase drop partition " + month.format(PARTITION));
+            }
+        }
+        return statements;
+    }
+
+    private void enqueue(Purchase purchase) {
+        if (stopped || !purchases.offer(purchase)) {
+            write(Collections.singletonList(purchase));
+        }
+    }
+
+    private void work() {
+        while (!stopped) {
+            List<Purchase> batch = new ArrayList<>(batchSize);
+            try {
+                Purchase first = purchases.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            purchases.drainTo(batch, batchSize - 1);
+            write(batch);
+        }
+    }
+
+    private void write(List<Purchase> batch) {
+        for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(
+                    status ->
+                        jdbcTemplate.batchUpdate(
+                            INSERT,
+                            batch,
+                            batch.size(),
+                            (statement, purchase) -> {
+                                statement.setLong(1, purchase.getBuyerId());
+                                statement.setLong(2, purchase.getProductId());
+                                statement.setInt(3, purchase.getQuantity());
+                                statement.setLong(4, purchase.getTotal());
+                                statement.setBytes(5, purchase.getChange().toBytes());
+                                statement.setTimestamp(6, Timestamp.from(purchase.getCreatedDate()));
+                            }
+                        )
+                );
+                batches.record(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Could not write {} purchases to the history, attempt {}: {}", batch.size(), attempt, e.getMessage());
+            }
+        }
+        log.error("Gave up writing {} purchases to the history: {}", batch.size(), batch);
+        lost.increment(batch.size());
+    }
+}
@@ -0,0 +1,284 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.EarningsSlot;
+import co.mvpmatch.repository.EarningsSlotRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Service crediting the sellers with the money their products earn.
+ * <p>
+ * A purchase only adds to an in-memory counter of the seller once it commits, so the buyers of a popular seller
+ * never wait on the seller's row. The counters are written in one transaction every configured delay, as soon as
+ * a configured number of purchases has been credited, and on shutdown, after the web server has finished the
+ * requests in flight.
+ * <p>
+ * The earnings of a seller are spread over {@link EarningsSlot} rows, each flush crediting a random one, so the
+ * nodes of a busy seller rarely wait on each other's row lock. A seller starts with one row and gets one more
+ * for every configured number of purchases per second it is seen to take, up to a maximum; reading the
+ * earnings sums the rows, and caches the sum for a short while.
+ * <p>
+ * Each counter only grows: a flush writes what it gained since the previous successful flush, so the purchases
+ * credited during a flush, or before a failed one, are written by the next.
+ */
+@Service
+public class SellerRevenueService {
+
+    private final Logger log = LoggerFactory.getLogger(SellerRevenueService.class);
+
+    private final EarningsSlotRepository earningsSlotRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int flushThreshold;
+
+    private final int maxSlots;
+
+    private final int purchasesPerSlot;
+
+    private final long readCacheTtl;
+
+    private final ConcurrentMap<Long, Revenue> revenues = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Long, Earnings> earnings = new ConcurrentHashMap<>();
+
+    private final AtomicLong unflushed = new AtomicLong();
+
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "seller-revenue-flush");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
+    private long lastFlush = System.nanoTime();
+
+    public SellerRevenueService(
+        EarningsSlotRepository earningsSlotRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.SellerRevenue properties = applicationProperties.getSellerRevenue();
+        this.earningsSlotRepository = earningsSlotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushThreshold = properties.getFlushThreshold();
+        this.maxSlots = Math.max(1, properties.getMaxSlots());
+        this.purchasesPerSlot = Math.max(1, properties.getPurchasesPerSlot());
+        this.readCacheTtl = properties.getReadCacheTtl();
+        Gauge
+            .builder("vmachine.seller.revenue.unflushed", unflushed, AtomicLong::get)
+            .description("Purchases credited to the sellers since the last flush")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Credits a seller with {@code amount} once the current transaction commits.
+     */
+    public void credit(Long sellerId, long amount) {
+        if (sellerId == null || amount == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(sellerId, amount);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(sellerId, amount);
+                }
+            }
+        );
+    }
+
+    /**
+     * @return the money, in cents, a seller has earned: what its rows held a moment ago, and what this node has
+     * not written to them yet.
+     */
+    public long earnings(Long sellerId) {
+        long now = System.currentTimeMillis();
+        Earnings cached = earnings.get(sellerId);
+        if (cached == null || cached.expires <= now) {
+            cached = new Earnings(earningsSlotRepository.sumBySellerId(sellerId), now + readCacheTtl);
+            earnings.put(sellerId, cached);
+        }
+        return cached.amount + unflushed(sellerId);
+    }
+
+    /**
+     * @return the earnings of the seller not yet written to its rows.
+     */
+    public synchronized long unflushed(Long sellerId) {
+        Revenue revenue = revenues.get(sellerId);
+        return revenue != null ? revenue.credited.sum() - revenue.flushed : 0;
+    }
+
+    /**
+     * @return the number of rows the earnings of the seller are spread over, as far as this node knows.
+     */
+    public synchronized int slots(Long sellerId) {
+        Revenue revenue = revenues.get(sellerId);
+        return revenue != null ? revenue.slots : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${application.seller-revenue.flush-delay:1000}")
+    public synchronized void flush() {
+        // purchases credited while this flush runs stay counted for the next one
+        long purchasesFlushed = unflushed.get();
+        long now = System.nanoTime();
+        // over at least a second, so that a burst right before a flush is not taken for a steady rate
+        double seconds = Math.max(1, (now - lastFlush) / (double) TimeUnit.SECONDS.toNanos(1));
+        lastFlush = now;
+        // in id order, so that the flushes of several nodes lock the seller rows in the same order
+        SortedMap<Long, Long> due = new TreeMap<>();
+        for (Map.Entry<Long, Revenue> entry : revenues.entrySet()) {
+            Revenue revenue = entry.getValue();
+            long purchases = revenue.purchases.sumThenReset();
+            long amount = revenue.credited.sum() - revenue.flushed;
+            if (amount != 0) {
+                spread(entry.getKey(), revenue, purchases / seconds);
+                due.put(entry.getKey(), amount);
+            }
+        }
+        if (due.isEmpty()) {
+            unflushed.addAndGet(-purchasesFlushed);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(
+                status ->
+                    due.forEach(
+                        (sellerId, amount) -> {
+                            int slot = ThreadLocalRandom.current().nextInt(revenues.get(sellerId).slots);
+                            if (earningsSlotRepository.addToSlot(sellerId, slot, amount) == 0) {
+                                earningsSlotRepository.save(new EarningsSlot(sellerId, slot, amount));
+                            }
+                        }
+                    )
+            );
+        } catch (RuntimeException e) {
+            log.warn("Could not credit {} sellers, retrying with the next flush: {}", due.size(), e.getMessage());
+            return;
+        }
+        unflushed.addAndGet(-purchasesFlushed);
+        due.forEach(
+            (sellerId, amount) -> {
+                revenues.get(sellerId).flushed += amount;
+                earnings.remove(sellerId);
+            }
+        );
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * Spreads the earnings of a seller over more rows if it takes more purchases than its rows are meant for.
+     */
+    private void spread(Long sellerId, Revenue revenue, double purchasesPerSecond) {
+        if (revenue.slots == 0) {
+            revenue.slots = (int) Math.max(1, Math.min(maxSlots, earningsSlotRepository.countBySellerId(sellerId)));
+        }
+        int wanted = (int) Math.min(maxSlots, Math.ceil(purchasesPerSecond / purchasesPerSlot));
+        if (wanted <= revenue.slots) {
+            return;
+        }
+        int from = revenue.slots;
+        try {
+            transactionTemplate.executeWithoutResult(
+                status -> {
+                    for (int slot = from; slot < wanted; slot++) {
+                        earningsSlotRepository.save(new EarningsSlot(sellerId, slot, 0L));
+                    }
+                }
+            );
+        } catch (DataIntegrityViolationException e) {
+            // another node added them first
+        } catch (RuntimeException e) {
+            log.warn("Could not spread the earnings of seller {}: {}", sellerId, e.getMessage());
+            return;
+        }
+        revenue.slots = wanted;
+        log.info("Spreading the earnings of seller {} over {} rows", sellerId, wanted);
+    }
+
+    private void add(Long sellerId, long amount) {
+        Revenue revenue = revenues.computeIfAbsent(sellerId, id -> new Revenue());
+        revenue.credited.add(amount);
+        revenue.purchases.increment();
+        if (unflushed.incrementAndGet() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            try {
+                flusher.execute(
+                    () -> {
+                        flushQueued.set(false);
+                        flush();
+                    }
+                );
+            } catch (RejectedExecutionException e) {
+                // shutting down, the last flush writes it
+                flushQueued.set(false);
+            }
+        }
+    }
+
+    private static final class Revenue {
+
+        private final LongAdder credited = new LongAdder();
+
+        private final LongAdder purchases = new LongAdder();
+
+        /**
+         * Part of {@link #credited} written to the rows, guarded by the service.
+         */
+        private long flushed;
+
+        /**
+         * Number of rows of the seller, {@code 0} until first flushed; guarded by the service.
+         */
+        private int slots;
+    }
+
+    private static final class Earnings {
+
+        private final long amount;
+
+        private final long expires;
+
+        private Earnings(long amount, long expires) {
+            this.amount = amount;
+            this.expires = expires;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package co.mvpmatch.service;
 
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
 import co.mvpmatch.domain.User;
 import co.mvpmatch.repository.UserRepository;
 import co.mvpmatch.web.rest.errors.BadRequestAlertException;
@@ -26,14 +28,25 @@ public class UserService {
 
     private final PasswordEncoder passwordEncoder;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    private final FastRejectCache fastRejectCache;
+
+    private final CoinSet coinSet;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, FastRejectCache fastRejectCache, CoinSet coinSet) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.fastRejectCache = fastRejectCache;
+        this.coinSet = coinSet;
     }
 
     public User createUser(User user) {
         user.setRole(user.getRole().toUpperCase());
+        if (user.getDeposit() == null) {
+            user.setDeposit(new CoinVector(coinSet));
+        }
         user.setPassword(passwordEncoder.encode(user.getPassword()));
+        // a user of the same name may have been deleted
+        fastRejectCache.balanceChanging(user.getUsername());
         userRepository.save(user);
         log.debug("Created Information for User: {}", user);
         return user;
@@ -56,7 +69,9 @@ public class UserService {
                     if (user.getRole() != null && !existingUser.getRole().equalsIgnoreCase(user.getRole())) {
                         throw new BadRequestAlertException("Update role not allowed", "userManagement", "");
                     }
+                    fastRejectCache.balanceChanging(existingUser.getUsername());
                     if (StringUtils.isNotBlank(user.getUsername())) existingUser.setUsername(user.getUsername());
+                    fastRejectCache.balanceChanging(existingUser.getUsername());
                     if (StringUtils.isNotBlank(user.getPassword())) existingUser.setPassword(passwordEncoder.encode(user.getPassword()));
                     if (user.getDeposit() != null) existingUser.setDeposit(user.getDeposit());
                     log.debug("Changed Information for User: {}", existingUser);
@@ -70,6 +85,7 @@ public class UserService {
             .findById(id)
             .ifPresent(
                 user -> {
+                    fastRejectCache.balanceChanging(user.getUsername());
                     userRepository.delete(user);
                     log.debug("Deleted User: {}", user);
                 }
@@ -0,0 +1,283 @@
+package co.mvpmatch.service;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.service.inventory.Inventory;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Queues the buyers of a product in demand, so that a flash sale runs about as many purchase transactions as
+ * there are units to sell instead of one per buyer.
+ * <p>
+ * The purchases of each product are counted over one second windows. Once a window counts as many as the
+ * configured threshold, the product gets a room: it reads the stock once, and from then on hands each buyer a
+ * position in arrival order, admitting the buyer to the purchase while the units not promised to an earlier
+ * buyer cover the quantity, and answering the others at once that the amount is unavailable. A purchase that
+ * fails gives its units back to the room, and a purchase that succeeds has taken them off the stock. The room
+ * reads the stock again every configured interval, or when a seller changes it, and closes once a window counts
+ * fewer purchases than the threshold.
+ * <p>
+ * One buyer at a time reads the stock of a room, without holding it: meanwhile the other buyers are admitted
+ * against the units of the previous read, or go on to the purchase without a ticket while the room is opening.
+ * <p>
+ * Only the purchases of this node go through its rooms: with several nodes, a room may admit buyers for units
+ * another node sold meanwhile, whose purchases then fail on the stock as they would without it.
+ */
+@Service
+public class WaitingRoom {
+
+    private static final long WINDOW = 1000;
+
+    private final ProductRepository productRepository;
+
+    private final Inventory inventory;
+
+    private final boolean enabled;
+
+    private final int threshold;
+
+    private final long refresh;
+
+    private final Map<Long, Room> rooms = new ConcurrentHashMap<>();
+
+    private final Counter admitted;
+
+    private final Counter soldOut;
+
+    public WaitingRoom(
+        ProductRepository productRepository,
+        Inventory inventory,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.WaitingRoom properties = applicationProperties.getWaitingRoom();
+        this.productRepository = productRepository;
+        this.inventory = inventory;
+        this.enabled = properties.isEnabled();
+        this.threshold = Math.max(1, properties.getThreshold());
+        this.refresh = properties.getRefresh();
+        Gauge
+            .builder("vmachine.waiting-room.open", rooms, open -> open.values().stream().filter(Room::isOpen).count())
+            .description("Products whose buyers are queued")
+            .register(meterRegistry);
+        this.admitted = Counter.builder("vmachine.waiting-room.admitted").description("Buyers admitted from a queue").register(meterRegistry);
+        this.soldOut =
+            Counter.builder("vmachine.waiting-room.sold-out").description("Buyers turned away from a queue").register(meterRegistry);
+    }
+
+    /**
+     * Counts a purchase of a product and, if the product has a room, queues the buyer in it.
+     *
+     * @return the ticket to hand back with {@link Ticket#leave(boolean)} once the purchase is over.
+     * @throws BadRequestAlertException if the quantity is below one, or the units left in the room do not cover it.
+     */
+    public Ticket enter(Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new BadRequestAlertException("A purchase needs a positive quantity.","","");
+        }
+        if (!enabled) {
+            return Ticket.NONE;
+        }
+        Room room = rooms.computeIfAbsent(productId, id -> new Room());
+        long now = System.currentTimeMillis();
+        synchronized (room) {
+            room.lastUsed = now;
+            if (now - room.windowStart >= WINDOW) {
+                // so did the windows after it, if they counted nothing
+                if (room.count < threshold || now - room.windowStart >= 2 * WINDOW) {
+                    room.close();
+                }
+                room.windowStart = now;
+                room.count = 0;
+            }
+            room.count++;
+            if (!room.isOpen() && room.count < threshold) {
+                return Ticket.NONE;
+            }
+            boolean due = !room.isOpen() || room.stale || now - room.read >= refresh;
+            if (!due || room.reading) {
+                // another buyer is reading the stock, and until then the room serves the units of the last read
+                return room.isOpen() ? admit(room, quantity) : Ticket.NONE;
+            }
+            room.reading = true;
+            // a change arriving while the stock is read makes it stale again
+            room.stale = false;
+        }
+        long stock;
+        try {
+            stock = stockOf(productId);
+        } catch (RuntimeException e) {
+            synchronized (room) {
+                room.reading = false;
+                room.stale = true;
+            }
+            throw e;
+        }
+        synchronized (room) {
+            room.reading = false;
+            room.open(stock, now);
+            return admit(room, quantity);
+        }
+    }
+
+    /**
+     * Hands the buyer the next position if the units left cover the quantity; called holding the room.
+     */
+    private Ticket admit(Room room, int quantity) {
+        long position = ++room.issued;
+        if (room.units < quantity) {
+            soldOut.increment();
+            throw new BadRequestAlertException("Amount unavailable","","");
+        }
+        room.units -= quantity;
+        room.promised += quantity;
+        admitted.increment();
+        return new Ticket(room, position, quantity);
+    }
+
+    /**
+     * Makes the room of a product read its stock again, now and once the current transaction completes.
+     */
+    public void stockChanging(Long productId) {
+        stockChanged(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        stockChanged(productId);
+                    }
+                }
+            );
+        }
+    }
+
+    private void stockChanged(Long productId) {
+        Room room = rooms.get(productId);
+        if (room != null) {
+            synchronized (room) {
+                room.stale = true;
+            }
+        }
+    }
+
+    /**
+     * Forgets the products no purchase was counted for in the last windows.
+     */
+    @Scheduled(fixedDelay = 10 * WINDOW)
+    public void sweep() {
+        long idle = System.currentTimeMillis() - 2 * WINDOW;
+        rooms.values().removeIf(room -> room.lastUsed < idle);
+    }
+
+    /**
+     * @return the stock of a product, {@code 0} if it is gone.
+     */
+    private long stockOf(Long productId) {
+        return productRepository.findById(productId).map(product -> inventory.available(productId, product.getAmountAvailable())).orElse(0L);
+    }
+
+    /**
+     * The place of a buyer in the queue of a product.
+     */
+    public static final class Ticket {
+
+        /**
+         * The ticket of a purchase of a product without a room.
+         */
+        public static final Ticket NONE = new Ticket(null, 0, 0);
+
+        private final Room room;
+
+        private final long position;
+
+        private final int quantity;
+
+        private Ticket(Room room, long position, int quantity) {
+            this.room = room;
+            this.position = position;
+            this.quantity = quantity;
+        }
+
+        /**
+         * @return the position of the buyer in the queue, counted from the opening of the room, or {@code null}.
+         */
+        public Long position() {
+            return room != null ? position : null;
+        }
+
+        /**
+         * Leaves the room once the purchase is over.
+         *
+         * @param sold whether the purchase took the units off the stock; if not, they go back to the room.
+         */
+        public void leave(boolean sold) {
+            if (room == null) {
+                return;
+            }
+            synchronized (room) {
+                room.promised -= quantity;
+                if (!sold) {
+                    room.units += quantity;
+                }
+            }
+        }
+    }
+
+    /**
+     * The purchases counted for a product and, while it is open, its queue. Guarded by itself.
+     */
+    private static final class Room {
+
+        private long windowStart = System.currentTimeMillis();
+
+        private int count;
+
+        private long lastUsed;
+
+        /**
+         * When the stock was read, {@code 0} while the room is closed.
+         */
+        private long read;
+
+        private boolean stale;
+
+        /**
+         * Whether a buyer is reading the stock for the room.
+         */
+        private boolean reading;
+
+        private long units;
+
+        /**
+         * Units admitted buyers are still buying, which the stock read may still include.
+         */
+        private long promised;
+
+        private long issued;
+
+        private boolean isOpen() {
+            return read != 0;
+        }
+
+        private void open(long stock, long now) {
+            units = Math.max(0, stock - promised);
+            read = now;
+        }
+
+        private void close() {
+            read = 0;
+            units = 0;
+            issued = 0;
+        }
+    }
+}
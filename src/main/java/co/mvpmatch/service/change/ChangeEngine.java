@@ -0,0 +1,297 @@
+package co.mvpmatch.service.change;
+
+import co.mvpmatch.domain.CoinSet;
+import java.util.Arrays;
+
+/**
+ * Minimum-coin change maker for a fixed set of denominations with bounded coin counts.
+ * <p>
+ * Coin counts are passed as primitive arrays indexed like {@link #denominations()}. The amount is solved
+ * as a bounded knapsack over the grid of the greatest common divisor of the denominations (5 cents for
+ * the default coin set), one layer per denomination, using a sliding-window minimum so each layer costs
+ * a single pass over the grid. Scratch buffers are kept per thread and only grow, up to
+ * {@link #MAX_KEPT_SCRATCH} cells, so a warmed-up engine does not allocate; a larger amount gets buffers of its
+ * own, dropped once it is solved.
+ * <p>
+ * When the coin set is canonical, that is when the greedy choice is optimal for every amount given enough
+ * coins, the engine first tries the greedy pass. Its result is optimal whenever no denomination ran out
+ * along the way; only otherwise is the amount handed to the knapsack.
+ */
+public final class ChangeEngine {
+
+    /**
+     * Returned by {@link #makeChange(int[], int, int[])} when the amount cannot be paid exactly.
+     */
+    public static final int NO_EXACT_CHANGE = -1;
+
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    /**
+     * Largest number of table cells the scratch buffers of a thread keep between calls.
+     */
+    static final int MAX_KEPT_SCRATCH = 1 << 18;
+
+    private final int[] denominations;
+
+    private final int[] steps;
+
+    private final int unit;
+
+    private final boolean canonical;
+
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public ChangeEngine(CoinSet coinSet) {
+        this(coinSet.denominations());
+    }
+
+    /**
+     * @param denominations the coin values, in strictly ascending order.
+     */
+    public ChangeEngine(int... denominations) {
+        if (denominations.length == 0) {
+            throw new IllegalArgumentException("At least one denomination is required");
+        }
+        int gcd = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] <= 0 || (i > 0 && denominations[i] <= denominations[i - 1])) {
+                throw new IllegalArgumentException("Denominations must be positive and strictly ascending");
+            }
+            gcd = gcd(gcd, denominations[i]);
+        }
+        this.denominations = denominations.clone();
+        this.unit = gcd;
+        this.steps = new int[denominations.length];
+        for (int i = 0; i < denominations.length; i++) {
+            steps[i] = denominations[i] / gcd;
+        }
+        this.canonical = isCanonical(steps);
+    }
+
+    public int[] denominations() {
+        return denominations.clone();
+    }
+
+    public int size() {
+        return denominations.length;
+    }
+
+    public int denomination(int index) {
+        return denominations[index];
+    }
+
+    /**
+     * @return {@code true} if the greedy choice gives the fewest coins for every amount, coins permitting.
+     */
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * @return the index of the given coin value, or {@code -1} if it is not one of the denominations.
+     */
+    public int indexOf(int coin) {
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] == coin) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the minimum number of coins, taken from {@code available}, that add up exactly to {@code amount}.
+     *
+     * @param available the number of coins of each denomination that may be used; not modified.
+     * @param amount the amount to pay out.
+     * @param change receives the number of coins of each denomination; zeroed if there is no exact change.
+     * @return the number of coins in {@code change}, or {@link #NO_EXACT_CHANGE}.
+     */
+    public int makeChange(int[] available, int amount, int[] change) {
+        return makeChange(available, 0, amount, change, 0);
+    }
+
+    /**
+     * Computes the change for a batch of amounts, each paid from its own coins.
+     * <p>
+     * Coin counts are laid out flat, {@link #size()} entries per item: item {@code k} takes its coins from
+     * {@code available[k * size()]} on and writes them to {@code change[k * size()]} on.
+     *
+     * @param from the first item to compute, inclusive.
+     * @param to the last item to compute, exclusive.
+     * @param coins receives, per item, the number of coins paid or {@link #NO_EXACT_CHANGE}.
+     */
+    public void makeChange(int[] available, int[] amounts, int[] change, int[] coins, int from, int to) {
+        int n = denominations.length;
+        for (int k = from; k < to; k++) {
+            coins[k] = makeChange(available, k * n, amounts[k], change, k * n);
+        }
+    }
+
+    private int makeChange(int[] available, int in, int amount, int[] change, int out) {
+        int n = denominations.length;
+        Arrays.fill(change, out, out + n, 0);
+        if (amount < 0 || amount % unit != 0) {
+            return NO_EXACT_CHANGE;
+        }
+        if (amount == 0) {
+            return 0;
+        }
+        if (canonical) {
+            int coins = greedy(available, in, amount / unit, change, out);
+            if (coins != NO_EXACT_CHANGE) {
+                return coins;
+            }
+            Arrays.fill(change, out, out + n, 0);
+        }
+
+        int cells = amount / unit + 1;
+        if ((long) (n + 1) * cells > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Cannot compute change of " + amount + ": too large");
+        }
+        Scratch s = scratch.get();
+        int[] dp = s.table((n + 1) * cells);
+        int[] window = s.window(cells);
+
+        dp[0] = 0;
+        Arrays.fill(dp, 1, cells, INF);
+        for (int i = 0; i < n; i++) {
+            int step = steps[i];
+            int limit = Math.min(available[in + i], (cells - 1) / step);
+            int prev = i * cells;
+            int cur = prev + cells;
+            for (int r = 0; r < step && r < cells; r++) {
+                int head = 0;
+                int tail = 0;
+                for (int j = 0, v = r; v < cells; j++, v += step) {
+                    int value = dp[prev + v];
+                    if (value < INF) {
+                        int key = value - j;
+                        while (tail > head && dp[prev + r + window[tail - 1] * step] - window[tail - 1] >= key) {
+                            tail--;
+                        }
+                        window[tail++] = j;
+                    }
+                    while (tail > head && window[head] < j - limit) {
+                        head++;
+                    }
+                    dp[cur + v] = tail > head ? dp[prev + r + window[head] * step] - window[head] + j : INF;
+                }
+            }
+        }
+
+        int last = cells - 1;
+        int coins = dp[n * cells + last];
+        if (coins >= INF) {
+            return NO_EXACT_CHANGE;
+        }
+
+        // walk the layers back, preferring the largest usable count of each coin so the result is deterministic
+        int v = last;
+        for (int i = n - 1; i >= 0; i--) {
+            int step = steps[i];
+            int target = dp[(i + 1) * cells + v];
+            int prev = i * cells;
+            for (int k = Math.min(available[in + i], v / step); k >= 0; k--) {
+                int before = dp[prev + v - k * step];
+                if (before < INF && before + k == target) {
+                    change[out + i] = k;
+                    v -= k * step;
+                    break;
+                }
+            }
+        }
+        return coins;
+    }
+
+    /**
+     * Greedy pass over the denominations, largest first, without a data-dependent branch in the loop.
+     *
+     * @return the number of coins, or {@link #NO_EXACT_CHANGE} if some denomination ran short, in which case
+     * the greedy result is not known to be optimal and {@code change} holds garbage.
+     */
+    private int greedy(int[] available, int in, int remaining, int[] change, int out) {
+        int coins = 0;
+        int ranShort = 0;
+        for (int i = steps.length - 1; i >= 0; i--) {
+            int wanted = remaining / steps[i];
+            int taken = Math.min(wanted, available[in + i]);
+            ranShort |= wanted - taken;
+            change[out + i] = taken;
+            coins += taken;
+            remaining -= taken * steps[i];
+        }
+        return (ranShort | remaining) == 0 ? coins : NO_EXACT_CHANGE;
+    }
+
+    /**
+     * Tells whether greedy change is optimal for the given coin steps, with unlimited coins of each.
+     * <p>
+     * The smallest coin has to be one grid step, or greedy can get stuck where change exists. Beyond that,
+     * by Kozen and Zaks, a non-canonical set has a counterexample below the sum of its two largest coins, so
+     * greedy is compared with the optimal count for every amount up to there.
+     */
+    static boolean isCanonical(int[] steps) {
+        int n = steps.length;
+        if (steps[0] != 1) {
+            return false;
+        }
+        if (n < 3) {
+            return true;
+        }
+        int limit = steps[n - 1] + steps[n - 2];
+        int[] optimal = new int[limit];
+        for (int v = 1; v < limit; v++) {
+            int best = INF;
+            for (int i = 0; i < n && steps[i] <= v; i++) {
+                best = Math.min(best, optimal[v - steps[i]] + 1);
+            }
+            optimal[v] = best;
+            int greedy = 0;
+            for (int i = n - 1, rest = v; i >= 0; i--) {
+                greedy += rest / steps[i];
+                rest %= steps[i];
+            }
+            if (greedy != optimal[v]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static final class Scratch {
+
+        private int[] table = new int[0];
+
+        private int[] window = new int[0];
+
+        int[] table(int size) {
+            if (table.length < size) {
+                if (size > MAX_KEPT_SCRATCH) {
+                    return new int[size];
+                }
+                table = new int[size];
+            }
+            return table;
+        }
+
+        int[] window(int size) {
+            if (window.length < size) {
+                if (size > MAX_KEPT_SCRATCH) {
+                    return new int[size];
+                }
+                window = new int[size];
+            }
+            return window;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Coin change computation.
+ */
+package co.mvpmatch.service.change;
@@ -0,0 +1,13 @@
+package co.mvpmatch.service.command;
+
+/**
+ * Thrown when a buyer command cannot be taken on, for instance because too many are waiting; nothing was done.
+ */
+public class CommandRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CommandRejectedException(String message) {
+        super(message);
+    }
+}
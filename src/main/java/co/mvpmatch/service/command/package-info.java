@@ -0,0 +1,4 @@
+/**
+ * Rejection of buyer commands the machine cannot take on.
+ */
+package co.mvpmatch.service.command;
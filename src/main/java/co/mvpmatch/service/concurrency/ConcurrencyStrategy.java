@@ -0,0 +1,30 @@
+package co.mvpmatch.service.concurrency;
+
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.User;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * How a buyer operation guards the product and user rows it reads and writes back.
+ * <p>
+ * The implementation is chosen with {@code application.purchase.concurrency}.
+ */
+public interface ConcurrencyStrategy {
+    /**
+     * Runs {@code work} in a transaction of its own and commits it.
+     *
+     * @throws org.springframework.dao.ConcurrencyFailureException if a concurrent transaction won.
+     */
+    <T> T execute(Supplier<T> work);
+
+    /**
+     * Loads a product that the current transaction is going to update.
+     */
+    Optional<Product> loadProduct(Long id);
+
+    /**
+     * Loads a buyer that the current transaction is going to update.
+     */
+    Optional<User> loadBuyer(String username);
+}
@@ -0,0 +1,117 @@
+package co.mvpmatch.service.concurrency;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.User;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reads rows without locking them and lets their {@code @Version} reject a conflicting commit, then runs the
+ * whole transaction again after a random pause that doubles with each attempt.
+ * <p>
+ * Suits most products, where two buyers rarely meet on the same row.
+ */
+@Component
+@ConditionalOnProperty(name = "application.purchase.concurrency", havingValue = "optimistic", matchIfMissing = true)
+public class OptimisticConcurrencyStrategy implements ConcurrencyStrategy {
+
+    private final Logger log = LoggerFactory.getLogger(OptimisticConcurrencyStrategy.class);
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ProductRepository productRepository;
+
+    private final UserRepository userRepository;
+
+    private final ApplicationProperties.Purchase properties;
+
+    private final Counter retries;
+
+    private final Counter conflicts;
+
+    public OptimisticConcurrencyStrategy(
+        PlatformTransactionManager transactionManager,
+        ProductRepository productRepository,
+        UserRepository userRepository,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.productRepository = productRepository;
+        this.userRepository = userRepository;
+        this.properties = applicationProperties.getPurchase();
+        this.retries = Counter
+            .builder("vmachine.purchase.retries")
+            .description("Transactions run again after losing an optimistic lock")
+            .register(meterRegistry);
+        this.conflicts = Counter
+            .builder("vmachine.purchase.conflicts")
+            .description("Transactions given up after losing their last optimistic lock attempt")
+            .tag("strategy", "optimistic")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public <T> T execute(Supplier<T> work) {
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+        for (int attempt = 1;; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    conflicts.increment();
+                    throw e;
+                }
+                retries.increment();
+                log.debug("Optimistic lock lost on attempt {}, retrying", attempt);
+                if (!pause(attempt)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sleeps a random time up to the backoff of this attempt ("full jitter"), so the losers do not collide again.
+     *
+     * @return {@code false} if the thread was interrupted.
+     */
+    private boolean pause(int attempt) {
+        long ceiling = Math.min(properties.getMaxBackoff(), properties.getBackoff() << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<Product> loadProduct(Long id) {
+        return productRepository.findById(id);
+    }
+
+    @Override
+    public Optional<User> loadBuyer(String username) {
+        return userRepository.findOneByUsername(username);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Concurrency control of the purchase transaction.
+ */
+package co.mvpmatch.service.concurrency;
@@ -1,19 +1,20 @@
 package co.mvpmatch.service.dto;
 
+import co.mvpmatch.domain.CoinVector;
 import co.mvpmatch.domain.Product;
 
-import java.util.Map;
-
 public class BuyResponse {
 
     private Long totalSpent;
 
     private Product product;
 
-    private Map<Integer, Integer> deposit;
+    private CoinVector deposit;
 
     private Integer quantity;
 
+    private Long queuePosition;
+
     public Long getTotalSpent() {
         return totalSpent;
     }
@@ -30,11 +31,11 @@ public class BuyResponse {
         this.product = product;
     }
 
-    public Map<Integer, Integer> getDeposit() {
+    public CoinVector getDeposit() {
         return deposit;
     }
 
-    public void setDeposit(Map<Integer, Integer> deposit) {
+    public void setDeposit(CoinVector deposit) {
         this.deposit = deposit;
     }
 
@@ -45,4 +46,16 @@ public class BuyResponse {
     public void setQuantity(Integer quantity) {
         this.quantity = quantity;
     }
+
+    /**
+     * @return the position of the buyer in the queue of the {@link co.mvpmatch.service.WaitingRoom}, if the
+     * product had one.
+     */
+    public Long getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Long queuePosition) {
+        this.queuePosition = queuePosition;
+    }
 }
@@ -0,0 +1,38 @@
+package co.mvpmatch.service.dto;
+
+import co.mvpmatch.domain.CoinVector;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CartResponse {
+
+    private Long totalSpent;
+
+    private List<BuyResponse> items = new ArrayList<>();
+
+    private CoinVector deposit;
+
+    public Long getTotalSpent() {
+        return totalSpent;
+    }
+
+    public void setTotalSpent(Long totalSpent) {
+        this.totalSpent = totalSpent;
+    }
+
+    public List<BuyResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BuyResponse> items) {
+        this.items = items;
+    }
+
+    public CoinVector getDeposit() {
+        return deposit;
+    }
+
+    public void setDeposit(CoinVector deposit) {
+        this.deposit = deposit;
+    }
+}
@@ -0,0 +1,33 @@
+package co.mvpmatch.service.dto;
+
+import co.mvpmatch.domain.CoinVector;
+
+public class ChangeRequest {
+
+    private CoinVector deposit;
+
+    private Integer amount;
+
+    public ChangeRequest() {}
+
+    public ChangeRequest(CoinVector deposit, Integer amount) {
+        this.deposit = deposit;
+        this.amount = amount;
+    }
+
+    public CoinVector getDeposit() {
+        return deposit;
+    }
+
+    public void setDeposit(CoinVector deposit) {
+        this.deposit = deposit;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Integer amount) {
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,36 @@
+package co.mvpmatch.service.dto;
+
+import co.mvpmatch.domain.CoinVector;
+
+public class ChangeResponse {
+
+    private boolean exact;
+
+    private Integer coins;
+
+    private CoinVector change;
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+
+    public Integer getCoins() {
+        return coins;
+    }
+
+    public void setCoins(Integer coins) {
+        this.coins = coins;
+    }
+
+    public CoinVector getChange() {
+        return change;
+    }
+
+    public void setChange(CoinVector change) {
+        this.change = change;
+    }
+}
@@ -0,0 +1,42 @@
+package co.mvpmatch.service.dto;
+
+public class PurchaseOrder {
+
+    private String userName;
+
+    private Long productId;
+
+    private Integer quantity;
+
+    public PurchaseOrder() {}
+
+    public PurchaseOrder(String userName, Long productId, Integer quantity) {
+        this.userName = userName;
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
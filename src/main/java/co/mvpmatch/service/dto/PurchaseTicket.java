@@ -0,0 +1,59 @@
+package co.mvpmatch.service.dto;
+
+public class PurchaseTicket {
+
+    public enum Status {
+        PENDING,
+        COMPLETED,
+        FAILED,
+    }
+
+    private String id;
+
+    private Status status;
+
+    private BuyResponse result;
+
+    private String error;
+
+    public PurchaseTicket() {}
+
+    public PurchaseTicket(String id, Status status, BuyResponse result, String error) {
+        this.id = id;
+        this.status = status;
+        this.result = result;
+        this.error = error;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public BuyResponse getResult() {
+        return result;
+    }
+
+    public void setResult(BuyResponse result) {
+        this.result = result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
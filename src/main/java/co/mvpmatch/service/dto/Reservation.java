@@ -0,0 +1,55 @@
+package co.mvpmatch.service.dto;
+
+import java.time.Instant;
+
+public class Reservation {
+
+    private String id;
+
+    private Long productId;
+
+    private Integer quantity;
+
+    private Instant expiresAt;
+
+    public Reservation() {}
+
+    public Reservation(String id, Long productId, Integer quantity, Instant expiresAt) {
+        this.id = id;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Instant expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,53 @@
+package co.mvpmatch.service.inventory;
+
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.repository.ProductRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the stock in the product rows only, taking it with a conditional update.
+ */
+@Component
+@ConditionalOnProperty(
+    name = { "application.inventory.enabled", "application.inventory.lease.enabled" },
+    havingValue = "false",
+    matchIfMissing = true
+)
+public class DatabaseInventory implements Inventory {
+
+    private final ProductRepository productRepository;
+
+    public DatabaseInventory(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @Override
+    public long take(Product product, long quantity) {
+        if (productRepository.decrementStock(product.getId(), quantity) == 0) {
+            return UNAVAILABLE;
+        }
+        return product.getAmountAvailable() - quantity;
+    }
+
+    @Override
+    public void giveBack(Long productId, long quantity) {
+        productRepository.addStock(productId, quantity);
+    }
+
+    @Override
+    public long set(Product product, long amount) {
+        return amount;
+    }
+
+    @Override
+    public void created(Product product) {}
+
+    @Override
+    public void removed(Long productId) {}
+
+    @Override
+    public long available(Long productId, long stored) {
+        return stored;
+    }
+}
@@ -0,0 +1,281 @@
+package co.mvpmatch.service.inventory;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.repository.ProductRepository;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the stock of every product in memory, so a purchase checks and takes it without touching the product row.
+ * <p>
+ * Each product's counter is guarded by one of a fixed set of locks picked from its id, so purchases of different
+ * products rarely contend.
+ * <p>
+ * The {@code product} table is written behind: a purchase only changes the counter, and once its transaction
+ * commits adds the units it took to the product's unflushed delta. A scheduled flush drains the deltas of a batch
+ * of products and adds them to their rows in one transaction; if that transaction fails, the deltas are put back
+ * for the next flush, so a change is written once or not at all. The stock is rebuilt from the product rows on
+ * startup and the deltas are flushed on shutdown. A crash loses the deltas not yet flushed, at most those of one
+ * flush delay, and their units show as available again.
+ * <p>
+ * The counters are local to this instance, so the engine is only meant for a machine served by a single node.
+ */
+@Component
+@ConditionalOnProperty(name = "application.inventory.enabled", havingValue = "true")
+public class InMemoryInventory implements Inventory {
+
+    private final Logger log = LoggerFactory.getLogger(InMemoryInventory.class);
+
+    private final ProductRepository productRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int flushBatchSize;
+
+    private final Object[] stripes;
+
+    private final Map<Long, Stock> stock = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    public InMemoryInventory(
+        ProductRepository productRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties
+    ) {
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        ApplicationProperties.Inventory properties = applicationProperties.getInventory();
+        this.flushBatchSize = Math.max(1, properties.getFlushBatchSize());
+        this.stripes = new Object[Integer.highestOneBit(Math.max(1, properties.getStripes() * 2 - 1))];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public long take(Product product, long quantity) {
+        ensureLoaded();
+        Long id = product.getId();
+        long remaining;
+        synchronized (stripe(id)) {
+            Stock s = stock.get(id);
+            if (s == null || s.available < quantity) {
+                return UNAVAILABLE;
+            }
+            remaining = s.available -= quantity;
+        }
+        onCompletion(id, -quantity);
+        return remaining;
+    }
+
+    /**
+     * Only counts the units given back as available once the transaction commits.
+     */
+    @Override
+    public void giveBack(Long productId, long quantity) {
+        ensureLoaded();
+        afterCommit(() -> add(productId, quantity, quantity));
+    }
+
+    @Override
+    public long set(Product product, long amount) {
+        ensureLoaded();
+        Long id = product.getId();
+        long delta;
+        synchronized (stripe(id)) {
+            Stock s = stock.computeIfAbsent(id, key -> new Stock());
+            delta = amount - s.available;
+            s.available = amount;
+        }
+        if (delta != 0) {
+            onCompletion(id, delta);
+        }
+        // the row only moves through the flush, or the unflushed deltas would be applied on top of the new stock
+        return product.getAmountAvailable();
+    }
+
+    @Override
+    public void created(Product product) {
+        Long id = product.getId();
+        long amount = product.getAmountAvailable();
+        afterCommit(
+            () -> {
+                synchronized (stripe(id)) {
+                    stock.computeIfAbsent(id, key -> new Stock()).available = amount;
+                }
+            }
+        );
+    }
+
+    @Override
+    public void removed(Long productId) {
+        afterCommit(
+            () -> {
+                synchronized (stripe(productId)) {
+                    stock.remove(productId);
+                }
+            }
+        );
+    }
+
+    @Override
+    public long available(Long productId, long stored) {
+        ensureLoaded();
+        synchronized (stripe(productId)) {
+            Stock s = stock.get(productId);
+            return s != null ? s.available : stored;
+        }
+    }
+
+    private Object stripe(Long productId) {
+        int h = Long.hashCode(productId) * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private void add(Long productId, long available, long unflushed) {
+        synchronized (stripe(productId)) {
+            Stock s = stock.get(productId);
+            if (s != null) {
+                s.available += available;
+                s.unflushed += unflushed;
+            }
+        }
+    }
+
+    /**
+     * Queues a change already made to the counter for the next flush once the transaction commits, or undoes it
+     * if the transaction rolls back.
+     */
+    private void onCompletion(Long productId, long delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(productId, 0, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        add(productId, 0, delta);
+                    } else {
+                        add(productId, -delta, 0);
+                    }
+                }
+            }
+        );
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        ensureLoaded();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                transactionTemplate.executeWithoutResult(status -> rebuild());
+                loaded = true;
+            }
+        }
+    }
+
+    private void rebuild() {
+        for (Product product : productRepository.findAll()) {
+            Stock s = new Stock();
+            s.available = product.getAmountAvailable();
+            stock.put(product.getId(), s);
+        }
+        log.debug("Loaded the stock of {} products", stock.size());
+    }
+
+    /**
+     * Adds the unflushed deltas to the product table, one batch of products per transaction.
+     */
+    @Scheduled(fixedDelayString = "${application.inventory.flush-delay:1000}")
+    public void flush() {
+        if (!loaded) {
+            return;
+        }
+        Map<Long, Long> batch;
+        do {
+            batch = drain();
+            if (!batch.isEmpty()) {
+                flushBatch(batch);
+            }
+        } while (batch.size() == flushBatchSize);
+    }
+
+    private Map<Long, Long> drain() {
+        Map<Long, Long> batch = new HashMap<>();
+        for (Map.Entry<Long, Stock> entry : stock.entrySet()) {
+            if (batch.size() == flushBatchSize) {
+                break;
+            }
+            synchronized (stripe(entry.getKey())) {
+                Stock s = entry.getValue();
+                if (s.unflushed != 0) {
+                    batch.put(entry.getKey(), s.unflushed);
+                    s.unflushed = 0;
+                }
+            }
+        }
+        return batch;
+    }
+
+    private void flushBatch(Map<Long, Long> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach(productRepository::addStock));
+        } catch (RuntimeException e) {
+            batch.forEach((productId, delta) -> add(productId, 0, delta));
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static final class Stock {
+
+        private long available;
+
+        /**
+         * Committed change of the stock not yet added to the product row.
+         */
+        private long unflushed;
+    }
+}
@@ -0,0 +1,55 @@
+package co.mvpmatch.service.inventory;
+
+import co.mvpmatch.domain.Product;
+
+/**
+ * Where the stock of the products is checked and taken.
+ * <p>
+ * The implementation is chosen with {@code application.inventory.enabled} and
+ * {@code application.inventory.lease.enabled}: the database by default, an in-memory copy of every product's
+ * stock, or blocks of stock leased by each node.
+ */
+public interface Inventory {
+    /**
+     * Returned by {@link #take(Product, long)} when there are not enough units.
+     */
+    long UNAVAILABLE = -1;
+
+    /**
+     * Takes units of a product as part of the current transaction, giving them back if it rolls back.
+     *
+     * @return the units left, or {@link #UNAVAILABLE}.
+     */
+    long take(Product product, long quantity);
+
+    /**
+     * Puts back units taken earlier by {@link #take(Product, long)} and held since, as part of the current
+     * transaction.
+     */
+    void giveBack(Long productId, long quantity);
+
+    /**
+     * Sets the stock of a stored product, as its seller asks.
+     *
+     * @param product the stored product, before the change.
+     * @param amount the new stock.
+     * @return the stock to write to the product row.
+     */
+    long set(Product product, long amount);
+
+    /**
+     * Registers a product just created with its initial stock.
+     */
+    void created(Product product);
+
+    /**
+     * Forgets a product being deleted.
+     */
+    void removed(Long productId);
+
+    /**
+     * @param stored the stock held in the product row.
+     * @return the stock to show for the product.
+     */
+    long available(Long productId, long stored);
+}
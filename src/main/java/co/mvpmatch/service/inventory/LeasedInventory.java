@@ -0,0 +1,488 @@
+package co.mvpmatch.service.inventory;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.StockLease;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.repository.StockLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Lets several nodes sell the same products without all of them writing the product rows: a node takes a block
+ * of units off a product row with one conditional update, records it as a {@link StockLease}, and sells from it
+ * in memory, so the row is written once per block instead of once per purchase.
+ * <p>
+ * Purchases take their units off the lease in memory too. What they sold is written back to the lease row, one
+ * update per lease, when the node renews its leases and when it gives a lease back, so the row is not written per
+ * purchase either. A node renews its leases while it runs and gives back the rest of a lease once nothing was
+ * sold from it for a while, when it leases a new block of the same product, and on shutdown. A node stops selling
+ * from a lease past its expiry, and the leases of a node that stopped renewing them are only given back by another
+ * node once they have been expired for a grace period longer than the renewal delay: a node that is late rather
+ * than gone writes back what it sold before then, so those units are not offered again. A seller setting the
+ * stock of a product revokes every lease of it; the other nodes find out at their next renewal, when the row is
+ * gone.
+ * <p>
+ * A node given a fixed name takes its unexpired leases back from their rows on startup. The rows only hold what
+ * was written back, so after a crash the units sold since the last renewal are offered again; a shorter renewal
+ * delay narrows that window.
+ * <p>
+ * The units leased by one node cannot be sold by another, so a product may show as unavailable on one node while
+ * another still holds some of it; small blocks keep the difference small.
+ */
+@Component
+@ConditionalOnProperty(name = "application.inventory.lease.enabled", havingValue = "true")
+public class LeasedInventory implements Inventory {
+
+    private final Logger log = LoggerFactory.getLogger(LeasedInventory.class);
+
+    private final ProductRepository productRepository;
+
+    private final StockLeaseRepository stockLeaseRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final String node;
+
+    private final long blockSize;
+
+    private final long duration;
+
+    private final long grace;
+
+    private final long idle;
+
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+
+    private final Queue<Lease> retired = new ConcurrentLinkedQueue<>();
+
+    private final Counter blocks;
+
+    public LeasedInventory(
+        ProductRepository productRepository,
+        StockLeaseRepository stockLeaseRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.Inventory.Lease properties = applicationProperties.getInventory().getLease();
+        this.productRepository = productRepository;
+        this.stockLeaseRepository = stockLeaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.node =
+            StringUtils.left(StringUtils.defaultIfBlank(properties.getNode(), "node-" + UUID.randomUUID().toString().substring(0, 8)), 64);
+        this.blockSize = Math.max(1, properties.getBlockSize());
+        this.duration = properties.getDuration();
+        this.grace = Math.max(properties.getGrace(), 2 * properties.getRenewDelay());
+        this.idle = properties.getIdle();
+        this.blocks = Counter.builder("vmachine.inventory.lease.blocks").description("Blocks of stock leased from the product rows").register(meterRegistry);
+        Gauge
+            .builder("vmachine.inventory.lease.units", leases, held -> held.values().stream().mapToLong(Lease::available).sum())
+            .description("Units leased by this node and not sold yet")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public long take(Product product, long quantity) {
+        Long productId = product.getId();
+        Lease lease = leases.get(productId);
+        if (lease != null) {
+            long now = System.currentTimeMillis();
+            if (lease.reserve(quantity, now)) {
+                settleOnCompletion(lease, quantity);
+                return product.getAmountAvailable() + lease.available();
+            }
+            if (lease.expired(now) && leases.remove(productId, lease)) {
+                // not renewed in time, so another node may be giving it back
+                lease.close();
+                retired.add(lease);
+            }
+        }
+        return leaseAndTake(product, quantity);
+    }
+
+    /**
+     * Leases a new block of the product, from which the purchase takes its units first. The block is part of the
+     * purchase transaction: a rollback puts it back on the product row, and only a commit lets other purchases
+     * sell from it.
+     */
+    private long leaseAndTake(Product product, long quantity) {
+        Long productId = product.getId();
+        long stored = product.getAmountAvailable();
+        long granted = Math.max(quantity, Math.min(blockSize, stored));
+        if (productRepository.decrementStock(productId, granted) == 0) {
+            // the row had less than it was read with
+            if (granted == quantity || productRepository.decrementStock(productId, quantity) == 0) {
+                return UNAVAILABLE;
+            }
+            granted = quantity;
+        }
+        blocks.increment();
+        long left = granted - quantity;
+        if (left > 0) {
+            Instant expiresAt = Instant.now().plusMillis(duration);
+            StockLease row = stockLeaseRepository.save(new StockLease(productId, node, left, expiresAt));
+            afterCommit(() -> install(productId, new Lease(row.getId(), productId, left, expiresAt.toEpochMilli())));
+        }
+        return stored - quantity;
+    }
+
+    /**
+     * Puts the units back on the product row, where any node may lease them.
+     */
+    @Override
+    public void giveBack(Long productId, long quantity) {
+        productRepository.addStock(productId, quantity);
+    }
+
+    @Override
+    public long set(Product product, long amount) {
+        revoke(product.getId());
+        return amount;
+    }
+
+    @Override
+    public void created(Product product) {}
+
+    @Override
+    public void removed(Long productId) {
+        revoke(productId);
+    }
+
+    @Override
+    public long available(Long productId, long stored) {
+        Lease lease = leases.get(productId);
+        return stored + (lease != null ? lease.available() : 0);
+    }
+
+    /**
+     * @return the name of this node in its leases.
+     */
+    public String node() {
+        return node;
+    }
+
+    /**
+     * Takes back the unexpired leases this node held before it was restarted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        long now = System.currentTimeMillis();
+        List<StockLease> rows = transactionTemplate.execute(status -> stockLeaseRepository.findByNode(node));
+        if (rows == null) {
+            return;
+        }
+        for (StockLease row : rows) {
+            long expiresAt = row.getExpiresAt().toEpochMilli();
+            if (expiresAt > now) {
+                log.info("Taking back the stock lease {} of {} units of product {}", row.getId(), row.getRemaining(), row.getProductId());
+                install(row.getProductId(), new Lease(row.getId(), row.getProductId(), row.getRemaining(), expiresAt));
+            }
+        }
+    }
+
+    /**
+     * Gives back the leases that are idle or were replaced, writes back what was sold from the others and renews
+     * them, and gives back the leases of every node expired for longer than the grace period.
+     */
+    @Scheduled(fixedDelayString = "${application.inventory.lease.renew-delay:5000}")
+    public void maintain() {
+        long now = System.currentTimeMillis();
+        leases.forEach(
+            (productId, lease) -> {
+                if (lease.lastSold() + idle <= now && leases.remove(productId, lease)) {
+                    lease.close();
+                    retired.add(lease);
+                }
+            }
+        );
+        giveBackRetired();
+        renew(now);
+        Set<Long> own = new HashSet<>();
+        leases.values().forEach(lease -> own.add(lease.id));
+        retired.forEach(lease -> own.add(lease.id));
+        List<Long> expired = transactionTemplate.execute(
+            status -> stockLeaseRepository.findIdsByExpiresAtBefore(Instant.ofEpochMilli(now - grace))
+        );
+        if (expired != null) {
+            for (Long id : expired) {
+                // this node's own leases carry sales not written back yet, and are given back once retired
+                if (!own.contains(id)) {
+                    log.info("Giving back the expired stock lease {}", id);
+                    returnLease(id, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes back the units sold from the leases of this node and extends them, in one transaction. A lease whose
+     * row is gone was revoked or given back, and is not sold from any more.
+     */
+    private void renew(long now) {
+        List<Lease> held = new ArrayList<>(leases.values());
+        if (held.isEmpty()) {
+            return;
+        }
+        Map<Lease, Long> sold = new HashMap<>();
+        List<Long> ids = new ArrayList<>(held.size());
+        for (Lease lease : held) {
+            ids.add(lease.id);
+            long units = lease.drainSold();
+            if (units > 0) {
+                sold.put(lease, units);
+            }
+        }
+        Instant expiresAt = Instant.ofEpochMilli(now).plusMillis(duration);
+        Set<Lease> revoked = new HashSet<>();
+        try {
+            transactionTemplate.executeWithoutResult(
+                status -> {
+                    revoked.clear();
+                    sold.forEach(
+                        (lease, units) -> {
+                            if (stockLeaseRepository.consume(lease.id, units) == 0) {
+                                revoked.add(lease);
+                            }
+                        }
+                    );
+                    if (stockLeaseRepository.renew(ids, expiresAt) < ids.size()) {
+                        Set<Long> existing = new HashSet<>(stockLeaseRepository.findExistingIds(ids));
+                        held.stream().filter(lease -> !existing.contains(lease.id)).forEach(revoked::add);
+                    }
+                }
+            );
+        } catch (RuntimeException e) {
+            sold.forEach(Lease::unwrite);
+            log.warn("Could not renew the stock leases of {}, retrying later: {}", node, e.getMessage());
+            return;
+        }
+        held.forEach(lease -> lease.renewed(expiresAt.toEpochMilli()));
+        for (Lease lease : revoked) {
+            lease.close();
+            leases.remove(lease.productId, lease);
+        }
+    }
+
+    @PreDestroy
+    public void giveBackAll() {
+        leases.forEach(
+            (productId, lease) -> {
+                if (leases.remove(productId, lease)) {
+                    lease.close();
+                    retired.add(lease);
+                }
+            }
+        );
+        giveBackRetired();
+    }
+
+    private void giveBackRetired() {
+        List<Lease> pending = new ArrayList<>();
+        for (Lease lease = retired.poll(); lease != null; lease = retired.poll()) {
+            if (!lease.settled()) {
+                // purchases taken from it have not completed yet
+                pending.add(lease);
+                continue;
+            }
+            long sold = lease.drainSold();
+            try {
+                returnLease(lease.id, sold);
+            } catch (RuntimeException e) {
+                lease.unwrite(sold);
+                log.warn("Could not give back the stock lease {}, retrying later: {}", lease.id, e.getMessage());
+                pending.add(lease);
+            }
+        }
+        retired.addAll(pending);
+    }
+
+    /**
+     * Puts the units left in a lease, less the {@code sold} ones not written back to it, back on its product row
+     * and deletes it, holding it so that no other node gives it back meanwhile.
+     */
+    private void returnLease(Long id, long sold) {
+        transactionTemplate.executeWithoutResult(
+            status ->
+                stockLeaseRepository
+                    .findOneForUpdateById(id)
+                    .ifPresent(
+                        lease -> {
+                            long left = lease.getRemaining() - sold;
+                            if (left > 0) {
+                                productRepository.addStock(lease.getProductId(), left);
+                            }
+                            stockLeaseRepository.delete(lease);
+                        }
+                    )
+        );
+    }
+
+    private void revoke(Long productId) {
+        stockLeaseRepository.deleteByProductId(productId);
+        afterCommit(
+            () -> {
+                Lease lease = leases.remove(productId);
+                if (lease != null) {
+                    lease.close();
+                }
+            }
+        );
+    }
+
+    private void install(Long productId, Lease lease) {
+        Lease previous = leases.put(productId, lease);
+        if (previous != null) {
+            previous.close();
+            retired.add(previous);
+        }
+    }
+
+    /**
+     * Counts the units as sold once the purchase commits, and puts them back in the lease if it rolls back.
+     */
+    private static void settleOnCompletion(Lease lease, long units) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            lease.settle(units, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lease.settle(units, status == STATUS_COMMITTED);
+                }
+            }
+        );
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    /**
+     * What this node knows of one of its leases: the units it has not handed to a purchase yet, those handed to
+     * purchases still running, and those sold but not written back to the lease row.
+     */
+    private static final class Lease {
+
+        private final long id;
+
+        private final long productId;
+
+        private long available;
+
+        private long inFlight;
+
+        private long sold;
+
+        private long expiresAt;
+
+        private long lastSold = System.currentTimeMillis();
+
+        private boolean closed;
+
+        private Lease(long id, long productId, long available, long expiresAt) {
+            this.id = id;
+            this.productId = productId;
+            this.available = available;
+            this.expiresAt = expiresAt;
+        }
+
+        private synchronized boolean reserve(long units, long now) {
+            if (closed || now >= expiresAt || available < units) {
+                return false;
+            }
+            available -= units;
+            inFlight += units;
+            lastSold = now;
+            return true;
+        }
+
+        private synchronized void settle(long units, boolean committed) {
+            inFlight -= units;
+            if (committed) {
+                sold += units;
+            } else if (!closed) {
+                available += units;
+            }
+        }
+
+        /**
+         * @return the units sold since the last call, now taken as written back.
+         */
+        private synchronized long drainSold() {
+            long units = sold;
+            sold = 0;
+            return units;
+        }
+
+        /**
+         * Counts units drained by {@link #drainSold()} as not written back after all.
+         */
+        private synchronized void unwrite(long units) {
+            sold += units;
+        }
+
+        private synchronized void renewed(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private synchronized boolean expired(long now) {
+            return now >= expiresAt;
+        }
+
+        private synchronized boolean settled() {
+            return inFlight == 0;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            available = 0;
+        }
+
+        private synchronized long available() {
+            return available;
+        }
+
+        private synchronized long lastSold() {
+            return lastSold;
+        }
+    }
+}
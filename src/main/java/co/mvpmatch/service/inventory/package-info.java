@@ -0,0 +1,4 @@
+/**
+ * Product stock bookkeeping.
+ */
+package co.mvpmatch.service.inventory;
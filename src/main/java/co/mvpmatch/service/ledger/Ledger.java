@@ -0,0 +1,27 @@
+package co.mvpmatch.service.ledger;
+
+/**
+ * History of the deposits, purchases and deposit resets of the buyers.
+ * <p>
+ * The implementation is chosen with {@code application.ledger.enabled}: nothing is recorded by default, or every
+ * movement is appended to a memory-mapped journal.
+ */
+public interface Ledger {
+    enum Type {
+        DEPOSIT,
+        BUY,
+        RESET,
+    }
+
+    /**
+     * Records a movement of the current transaction, once it commits.
+     *
+     * @param type what happened.
+     * @param userId the buyer.
+     * @param productId the product bought, {@code null} unless buying.
+     * @param quantity the units bought.
+     * @param amount the money, in cents, deposited, spent or paid back.
+     * @param coins the change of the buyer's deposit, indexed by {@link co.mvpmatch.domain.CoinVector} slot.
+     */
+    void append(Type type, Long userId, Long productId, long quantity, long amount, int[] coins);
+}
@@ -0,0 +1,407 @@
+package co.mvpmatch.service.ledger;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Appends every movement, once its transaction commits, as a fixed-size binary record to a memory-mapped journal
+ * split in segment files, {@code journal-<first sequence>.dat}. Appending is a copy into the page cache; the
+ * segments are forced to disk with every snapshot and on shutdown.
+ * <p>
+ * The ledger folds the records into the deposit of every buyer and the stock change of every product, and
+ * periodically writes them to {@code snapshot-<next sequence>.dat}. On startup it loads the latest snapshot and
+ * replays the records appended after it, up to the first one that is torn or out of sequence, where appending
+ * resumes. The segments are never deleted: they are the audit trail.
+ * <p>
+ * The balances only cover what was journaled: the deposits made before the ledger was enabled, and the stock
+ * changes of sellers, are not in it. A movement is only appended once it has committed, so a record that cannot
+ * be written is logged and counted in {@code vmachine.ledger.failures}, never reported to the client whose
+ * movement it was.
+ */
+@Component
+@ConditionalOnProperty(name = "application.ledger.enabled", havingValue = "true")
+public class MappedFileLedger implements Ledger {
+
+    static final int RECORD_SIZE = 128;
+
+    private static final int COINS_OFFSET = 56;
+
+    private static final int CHECKSUM_OFFSET = RECORD_SIZE - 4;
+
+    private static final int SNAPSHOT_MAGIC = 0x564d4c53;
+
+    private final Logger log = LoggerFactory.getLogger(MappedFileLedger.class);
+
+    private final Path directory;
+
+    private final CoinSet coinSet;
+
+    private final int segmentRecords;
+
+    private final Map<Long, int[]> deposits = new HashMap<>();
+
+    private final Map<Long, Long> stockChanges = new HashMap<>();
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+    private final CRC32 checksum = new CRC32();
+
+    private final Counter failures;
+
+    /**
+     * Sequence number of the next record.
+     */
+    private long sequence = 1;
+
+    private long snapshotSequence;
+
+    private FileChannel channel;
+
+    private MappedByteBuffer segment;
+
+    public MappedFileLedger(ApplicationProperties applicationProperties, CoinSet coinSet, MeterRegistry meterRegistry) {
+        ApplicationProperties.Ledger properties = applicationProperties.getLedger();
+        this.directory = Paths.get(properties.getDirectory());
+        this.coinSet = coinSet;
+        this.segmentRecords = (int) Math.min(Integer.MAX_VALUE / RECORD_SIZE, properties.getSegmentSize() / RECORD_SIZE);
+        if (segmentRecords < 1) {
+            throw new IllegalStateException("A ledger segment must hold at least one record of " + RECORD_SIZE + " bytes");
+        }
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the ledger in " + directory.toAbsolutePath(), e);
+        }
+        Gauge.builder("vmachine.ledger.sequence", this, MappedFileLedger::sequence).description("Next ledger record").register(meterRegistry);
+        this.failures =
+            Counter.builder("vmachine.ledger.failures").description("Committed movements that could not be journaled").register(meterRegistry);
+    }
+
+    @Override
+    public void append(Type type, Long userId, Long productId, long quantity, long amount, int[] coins) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            writeCommitted(type, userId, productId, quantity, amount, coins);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writeCommitted(type, userId, productId, quantity, amount, coins);
+                }
+            }
+        );
+    }
+
+    private void writeCommitted(Type type, Long userId, Long productId, long quantity, long amount, int[] coins) {
+        try {
+            write(type, userId, productId, quantity, amount, coins);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.error(
+                "Could not journal the {} of user {}, product {}, quantity {}, amount {}, coins {}",
+                type,
+                userId,
+                productId,
+                quantity,
+                amount,
+                Arrays.toString(coins),
+                e
+            );
+        }
+    }
+
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the deposit of the buyer, as journaled, indexed by {@link CoinVector} slot.
+     */
+    public synchronized int[] deposit(Long userId) {
+        int[] coins = deposits.get(userId);
+        return coins != null ? Arrays.copyOf(coins, coinSet.width()) : new int[coinSet.width()];
+    }
+
+    /**
+     * @return the change of the stock of the product, as journaled.
+     */
+    public synchronized long stockChange(Long productId) {
+        return stockChanges.getOrDefault(productId, 0L);
+    }
+
+    /**
+     * Forces the journal to disk and writes the balances it leads to.
+     */
+    @Scheduled(fixedDelayString = "${application.ledger.snapshot-delay:60000}")
+    public void snapshot() {
+        long at;
+        Map<Long, int[]> depositsAt = new HashMap<>();
+        Map<Long, Long> stockChangesAt;
+        synchronized (this) {
+            if (sequence == snapshotSequence) {
+                return;
+            }
+            if (segment != null) {
+                segment.force();
+            }
+            at = sequence;
+            deposits.forEach((userId, coins) -> depositsAt.put(userId, coins.clone()));
+            stockChangesAt = new HashMap<>(stockChanges);
+            snapshotSequence = at;
+        }
+        try {
+            writeSnapshot(at, depositsAt, stockChangesAt);
+        } catch (IOException e) {
+            log.warn("Could not write the ledger snapshot at {}: {}", at, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        snapshot();
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+                segment = null;
+            }
+        }
+    }
+
+    private synchronized void write(Type type, Long userId, Long productId, long quantity, long amount, int[] coins) {
+        if (segment == null || !segment.hasRemaining()) {
+            roll();
+        }
+        record.clear();
+        record.putLong(sequence);
+        record.putLong(System.currentTimeMillis());
+        record.putInt(type.ordinal());
+        record.putInt(coins.length);
+        record.putLong(userId != null ? userId : 0);
+        record.putLong(productId != null ? productId : 0);
+        record.putLong(quantity);
+        record.putLong(amount);
+        for (int i = 0; i < CoinSet.MAX_WIDTH; i++) {
+            record.putInt(i < coins.length ? coins[i] : 0);
+        }
+        record.putInt(0);
+        checksum.reset();
+        checksum.update(record.array(), 0, CHECKSUM_OFFSET);
+        record.putInt((int) checksum.getValue());
+        segment.put(record.array());
+        sequence++;
+        apply(record, 0);
+    }
+
+    /**
+     * Folds the record at {@code start} into the balances.
+     */
+    private void apply(ByteBuffer buffer, int start) {
+        Type type = Type.values()[buffer.getInt(start + 16)];
+        int width = Math.min(buffer.getInt(start + 20), CoinSet.MAX_WIDTH);
+        long userId = buffer.getLong(start + 24);
+        long productId = buffer.getLong(start + 32);
+        long quantity = buffer.getLong(start + 40);
+        int[] deposit = deposits.computeIfAbsent(userId, id -> new int[CoinSet.MAX_WIDTH]);
+        for (int i = 0; i < width; i++) {
+            deposit[i] += buffer.getInt(start + COINS_OFFSET + 4 * i);
+        }
+        if (type == Type.BUY) {
+            stockChanges.merge(productId, -quantity, Long::sum);
+        }
+    }
+
+    private void roll() {
+        try {
+            if (channel != null) {
+                segment.force();
+                channel.close();
+            }
+            Path file = directory.resolve(String.format("journal-%020d.dat", sequence));
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open a new ledger segment", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        loadSnapshot();
+        long next = 0;
+        List<Path> segments = files("journal-");
+        for (int s = 0; s < segments.size(); s++) {
+            Path file = segments.get(s);
+            if (next == 0) {
+                next = firstSequenceOf(file);
+            }
+            FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer mapped = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+            int valid = 0;
+            while (valid < segmentRecords && isValid(mapped, valid * RECORD_SIZE, next)) {
+                if (next >= snapshotSequence) {
+                    apply(mapped, valid * RECORD_SIZE);
+                }
+                valid++;
+                next++;
+            }
+            boolean last = valid < segmentRecords || s == segments.size() - 1;
+            if (!last) {
+                fileChannel.close();
+                continue;
+            }
+            // appending resumes after the last valid record; anything after it was never acknowledged
+            for (Path later : segments.subList(s + 1, segments.size())) {
+                log.warn("Ledger segment {} follows a torn record, setting it aside", later);
+                Files.move(later, later.resolveSibling(later.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (next < snapshotSequence) {
+                log.warn("Ledger journal ends at {} before its snapshot at {}", next, snapshotSequence);
+                fileChannel.close();
+                break;
+            }
+            mapped.position(valid * RECORD_SIZE);
+            channel = fileChannel;
+            segment = mapped;
+            break;
+        }
+        sequence = Math.max(Math.max(next, snapshotSequence), 1);
+        log.info("Ledger opened in {} at record {}", directory.toAbsolutePath(), sequence);
+    }
+
+    private boolean isValid(ByteBuffer buffer, int offset, long expected) {
+        if (buffer.getLong(offset) != expected) {
+            return false;
+        }
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(offset).limit(offset + CHECKSUM_OFFSET);
+        checksum.reset();
+        checksum.update(bytes);
+        return (int) checksum.getValue() == buffer.getInt(offset + CHECKSUM_OFFSET) && buffer.getInt(offset + 16) < Type.values().length;
+    }
+
+    private void loadSnapshot() throws IOException {
+        List<Path> snapshots = files("snapshot-");
+        for (int s = snapshots.size() - 1; s >= 0; s--) {
+            try (
+                CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(snapshots.get(s))), new CRC32());
+                DataInputStream in = new DataInputStream(checked)
+            ) {
+                if (in.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("not a ledger snapshot");
+                }
+                long at = in.readLong();
+                Map<Long, int[]> depositsAt = new HashMap<>();
+                for (int users = in.readInt(); users > 0; users--) {
+                    long userId = in.readLong();
+                    int[] coins = new int[CoinSet.MAX_WIDTH];
+                    for (int i = 0; i < coins.length; i++) {
+                        coins[i] = in.readInt();
+                    }
+                    depositsAt.put(userId, coins);
+                }
+                Map<Long, Long> stockChangesAt = new HashMap<>();
+                for (int products = in.readInt(); products > 0; products--) {
+                    stockChangesAt.put(in.readLong(), in.readLong());
+                }
+                long computed = checked.getChecksum().getValue();
+                if (in.readLong() != computed) {
+                    throw new IOException("checksum mismatch");
+                }
+                deposits.putAll(depositsAt);
+                stockChanges.putAll(stockChangesAt);
+                snapshotSequence = at;
+                return;
+            } catch (IOException e) {
+                log.warn("Skipping ledger snapshot {}: {}", snapshots.get(s), e.getMessage());
+            }
+        }
+    }
+
+    private void writeSnapshot(long at, Map<Long, int[]> depositsAt, Map<Long, Long> stockChangesAt) throws IOException {
+        Path target = directory.resolve(String.format("snapshot-%020d.dat", at));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked)
+        ) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(at);
+            out.writeInt(depositsAt.size());
+            for (Map.Entry<Long, int[]> deposit : depositsAt.entrySet()) {
+                out.writeLong(deposit.getKey());
+                for (int count : deposit.getValue()) {
+                    out.writeInt(count);
+                }
+            }
+            out.writeInt(stockChangesAt.size());
+            for (Map.Entry<Long, Long> stockChange : stockChangesAt.entrySet()) {
+                out.writeLong(stockChange.getKey());
+                out.writeLong(stockChange.getValue());
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the previous snapshot is kept in case this one turns out unreadable
+        List<Path> snapshots = files("snapshot-");
+        for (Path old : snapshots.subList(0, Math.max(0, snapshots.size() - 2))) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> file.getFileName().toString().startsWith(prefix) && file.getFileName().toString().endsWith(".dat"))
+                .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("journal-".length(), name.length() - ".dat".length()));
+    }
+}
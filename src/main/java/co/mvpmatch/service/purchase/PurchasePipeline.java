@@ -0,0 +1,247 @@
+package co.mvpmatch.service.purchase;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.service.BuyerService;
+import co.mvpmatch.service.command.CommandRejectedException;
+import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.PurchaseOrder;
+import co.mvpmatch.service.dto.PurchaseTicket;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs purchases off the request thread. A purchase is queued and answered with a ticket; worker threads drain
+ * the queue in micro-batches and run each batch in a single transaction, so the database work of a busy
+ * machine is spread over fewer, larger transactions.
+ * <p>
+ * A batch in which a purchase fails is rolled back as a whole and its purchases are run again one by one, so a
+ * failing purchase only fails itself. The outcome of a purchase is kept for its ticket for a configured time.
+ * <p>
+ * The workers start once the application is ready. On shutdown they finish the purchases already queued, and a
+ * purchase still queued once they are gone fails with its ticket rather than staying pending.
+ */
+@Service
+@ConditionalOnProperty(name = "application.async-purchase.enabled", havingValue = "true")
+public class PurchasePipeline {
+
+    private final Logger log = LoggerFactory.getLogger(PurchasePipeline.class);
+
+    private final BuyerService buyerService;
+
+    private final BlockingQueue<Order> orders;
+
+    private final ConcurrentMap<String, Order> tickets = new ConcurrentHashMap<>();
+
+    private final int batchSize;
+
+    private final int workerCount;
+
+    private final long ticketTtl;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final DistributionSummary batches;
+
+    private volatile boolean stopped;
+
+    public PurchasePipeline(BuyerService buyerService, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.AsyncPurchase properties = applicationProperties.getAsyncPurchase();
+        this.buyerService = buyerService;
+        this.orders = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.batchSize = properties.getBatchSize();
+        this.workerCount = properties.getWorkers();
+        this.ticketTtl = properties.getTicketTtl();
+        Gauge.builder("vmachine.purchase.queue", orders, BlockingQueue::size).description("Purchases waiting for a worker").register(meterRegistry);
+        this.batches =
+            DistributionSummary.builder("vmachine.purchase.batch").description("Purchases run in one transaction").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (stopped || !workers.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "purchase-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Queues a purchase.
+     *
+     * @return the ticket the outcome of the purchase can be fetched with.
+     * @throws CommandRejectedException if too many purchases are waiting.
+     */
+    public PurchaseTicket submit(String userName, Long productId, Integer quantity) {
+        if (productId == null || quantity == null || quantity <= 0) {
+            throw new BadRequestAlertException("A purchase needs a product and a positive quantity.","","");
+        }
+        if (stopped) {
+            throw new CommandRejectedException("Shutting down");
+        }
+        Order order = new Order(UUID.randomUUID().toString(), new PurchaseOrder(userName, productId, quantity));
+        tickets.put(order.ticket, order);
+        if (!orders.offer(order)) {
+            tickets.remove(order.ticket);
+            throw new CommandRejectedException("Too many purchases waiting, try again later");
+        }
+        // stopped between the check and the offer: either shutdown already failed the order, or it is taken back
+        if (stopped && orders.remove(order)) {
+            tickets.remove(order.ticket);
+            throw new CommandRejectedException("Shutting down");
+        }
+        return order.toTicket();
+    }
+
+    /**
+     * @return the state of the purchase of the ticket, if it belongs to the user and has not expired.
+     */
+    public Optional<PurchaseTicket> find(String userName, String ticket) {
+        return Optional.ofNullable(tickets.get(ticket)).filter(order -> order.purchase.getUserName().equals(userName)).map(Order::toTicket);
+    }
+
+    /**
+     * @return a future completed with the outcome of the purchase of the ticket, if it belongs to the user and
+     * has not expired.
+     */
+    public Optional<CompletableFuture<PurchaseTicket>> completion(String userName, String ticket) {
+        return Optional
+            .ofNullable(tickets.get(ticket))
+            .filter(order -> order.purchase.getUserName().equals(userName))
+            .map(order -> order.result.handle((response, error) -> order.toTicket()));
+    }
+
+    /**
+     * Forgets the outcomes older than the configured time to live.
+     */
+    @Scheduled(fixedDelayString = "${application.async-purchase.ticket-ttl:60000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        tickets.values().removeIf(order -> order.completed != 0 && order.completed + ticketTtl <= now);
+    }
+
+    private void work() {
+        List<Order> batch = new ArrayList<>(batchSize);
+        while (!stopped || !orders.isEmpty()) {
+            try {
+                Order first = orders.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            orders.drainTo(batch, batchSize - 1);
+            run(batch);
+            batch.clear();
+        }
+        log.debug("Purchase worker {} stopped", Thread.currentThread().getName());
+    }
+
+    private void run(List<Order> batch) {
+        batches.record(batch.size());
+        if (batch.size() > 1) {
+            try {
+                List<BuyResponse> responses = buyerService.buyBatch(batch.stream().map(order -> order.purchase).collect(Collectors.toList()));
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).complete(responses.get(i));
+                }
+                return;
+            } catch (RuntimeException e) {
+                log.debug("Batch of {} purchases failed, running them one by one: {}", batch.size(), e.getMessage());
+            }
+        }
+        for (Order order : batch) {
+            try {
+                order.complete(buyerService.buy(order.purchase.getUserName(), order.purchase.getProductId(), order.purchase.getQuantity()));
+            } catch (RuntimeException e) {
+                order.fail(e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        List<Thread> started;
+        synchronized (this) {
+            stopped = true;
+            started = new ArrayList<>(workers);
+        }
+        for (Thread worker : started) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        Order order;
+        while ((order = orders.poll()) != null) {
+            order.fail(new CommandRejectedException("Shutting down"));
+        }
+    }
+
+    private final class Order {
+
+        private final String ticket;
+
+        private final PurchaseOrder purchase;
+
+        private final CompletableFuture<BuyResponse> result = new CompletableFuture<>();
+
+        private volatile long completed;
+
+        Order(String ticket, PurchaseOrder purchase) {
+            this.ticket = ticket;
+            this.purchase = purchase;
+        }
+
+        void complete(BuyResponse response) {
+            completed = System.currentTimeMillis();
+            result.complete(response);
+        }
+
+        void fail(RuntimeException e) {
+            if (!(e instanceof BadRequestAlertException) && !(e instanceof CommandRejectedException)) {
+                log.warn("Purchase {} failed", ticket, e);
+            }
+            completed = System.currentTimeMillis();
+            result.completeExceptionally(e);
+        }
+
+        PurchaseTicket toTicket() {
+            if (!result.isDone()) {
+                return new PurchaseTicket(ticket, PurchaseTicket.Status.PENDING, null, null);
+            }
+            try {
+                return new PurchaseTicket(ticket, PurchaseTicket.Status.COMPLETED, result.join(), null);
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                String error = cause instanceof BadRequestAlertException || cause instanceof CommandRejectedException
+                    ? cause.getMessage()
+                    : "The purchase failed, try again";
+                return new PurchaseTicket(ticket, PurchaseTicket.Status.FAILED, null, error);
+            }
+        }
+    }
+}
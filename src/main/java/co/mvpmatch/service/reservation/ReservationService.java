@@ -0,0 +1,355 @@
+package co.mvpmatch.service.reservation;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.ReservationHold;
+import co.mvpmatch.repository.ReservationHoldRepository;
+import co.mvpmatch.service.BuyerService;
+import co.mvpmatch.service.FastRejectCache;
+import co.mvpmatch.service.command.CommandRejectedException;
+import co.mvpmatch.service.concurrency.ConcurrencyStrategy;
+import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.Reservation;
+import co.mvpmatch.service.inventory.Inventory;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Holds units of a product for a buyer for a while, so that a machine keeps an item while its buyer is still
+ * inserting coins.
+ * <p>
+ * A reservation takes its units off the stock right away, through the {@link Inventory}, and records them in a
+ * {@link ReservationHold} row in the same transaction. A {@link TimingWheel} expires it, so a hold costs no task of
+ * its own, and the units of all the holds expiring in one tick are given back together, in a single transaction.
+ * Checking a reservation out buys its units without checking the stock again; a checkout that fails leaves them
+ * held.
+ * <p>
+ * The row of a hold is deleted in the transaction that buys or gives back its units, and only the transaction
+ * that deletes it does so, so the units of a hold are bought or given back once however many nodes know of it.
+ * The holds are given back when a node shuts down; on startup a node takes every hold left in the table into its
+ * wheel and gives back those already expired, so the holds of a node that stopped without shutting down are not
+ * lost. The {@link Inventory} kept in memory is the exception: a crash loses the stock taken by holds not flushed
+ * yet, and giving those holds back on startup counts their units twice.
+ */
+@Service
+public class ReservationService {
+
+    private final Logger log = LoggerFactory.getLogger(ReservationService.class);
+
+    private final BuyerService buyerService;
+
+    private final ConcurrencyStrategy concurrencyStrategy;
+
+    private final Inventory inventory;
+
+    private final FastRejectCache fastRejectCache;
+
+    private final ReservationHoldRepository reservationHoldRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final long maxHold;
+
+    private final int capacity;
+
+    /**
+     * Guards itself and the scheduling of the holds.
+     */
+    private final TimingWheel<Hold> wheel;
+
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+
+    /**
+     * Expired or cancelled holds whose units are not given back yet.
+     */
+    private final List<Hold> unreturned = new ArrayList<>();
+
+    private final Counter expired;
+
+    public ReservationService(
+        BuyerService buyerService,
+        ConcurrencyStrategy concurrencyStrategy,
+        Inventory inventory,
+        FastRejectCache fastRejectCache,
+        ReservationHoldRepository reservationHoldRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        ApplicationProperties.Reservation properties = applicationProperties.getReservation();
+        this.buyerService = buyerService;
+        this.concurrencyStrategy = concurrencyStrategy;
+        this.inventory = inventory;
+        this.fastRejectCache = fastRejectCache;
+        this.reservationHoldRepository = reservationHoldRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxHold = properties.getMaxHold();
+        this.capacity = properties.getCapacity();
+        this.wheel = new TimingWheel<>(properties.getTick(), properties.getLevels(), System.currentTimeMillis());
+        Gauge.builder("vmachine.reservation.holds", holds, Map::size).description("Reservations holding stock").register(meterRegistry);
+        this.expired = Counter.builder("vmachine.reservation.expired").description("Reservations expired unbought").register(meterRegistry);
+    }
+
+    /**
+     * Takes units of a product off its stock and holds them for the buyer.
+     *
+     * @param seconds how long to hold the units.
+     * @throws CommandRejectedException if too many reservations are held.
+     */
+    public Reservation reserve(String userName, Long productId, Integer quantity, Long seconds) {
+        if (productId == null || quantity == null || quantity <= 0) {
+            throw new BadRequestAlertException("A reservation needs a product and a positive quantity.","","");
+        }
+        if (seconds == null || seconds <= 0 || seconds > maxHold) {
+            throw new BadRequestAlertException("A reservation holds its units for 1 to " + maxHold + " seconds.","","");
+        }
+        if (holds.size() >= capacity) {
+            throw new CommandRejectedException("Too many reservations held, try again later");
+        }
+        Hold hold = new Hold(UUID.randomUUID().toString(), userName, productId, quantity, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds));
+        concurrencyStrategy.execute(
+            () -> {
+                Product product = concurrencyStrategy
+                    .loadProduct(productId)
+                    .orElseThrow(() -> new BadRequestAlertException("Product " + productId + " not found.","",""));
+                if (inventory.take(product, quantity) == Inventory.UNAVAILABLE) {
+                    throw new BadRequestAlertException("Amount unavailable","","");
+                }
+                fastRejectCache.stockChanging(productId);
+                reservationHoldRepository.save(hold.toRow());
+                return null;
+            }
+        );
+        hold(hold);
+        return hold.toReservation();
+    }
+
+    /**
+     * @return the reservation, if it belongs to the user and still holds its units.
+     */
+    public Optional<Reservation> find(String userName, String id) {
+        return Optional.ofNullable(holds.get(id)).filter(hold -> hold.userName.equals(userName)).map(Hold::toReservation);
+    }
+
+    /**
+     * Buys the units held by a reservation. If the purchase fails, they stay held until the reservation expires.
+     */
+    public BuyResponse checkout(String userName, String id) {
+        Hold hold = claim(userName, id);
+        try {
+            return buyerService.buyReserved(userName, hold.productId, hold.quantity, () -> release(hold));
+        } catch (RuntimeException e) {
+            hold(hold);
+            throw e;
+        }
+    }
+
+    /**
+     * Gives back the units held by a reservation.
+     */
+    public void cancel(String userName, String id) {
+        Hold hold = claim(userName, id);
+        synchronized (unreturned) {
+            unreturned.add(hold);
+        }
+        giveBack();
+    }
+
+    /**
+     * Advances the timing wheel and gives back the units of the reservations that expired.
+     */
+    @Scheduled(fixedDelayString = "${application.reservation.tick:100}")
+    public void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    void expire(long now) {
+        List<Hold> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(
+                now,
+                hold -> {
+                    holds.remove(hold.id);
+                    due.add(hold);
+                }
+            );
+        }
+        if (!due.isEmpty()) {
+            expired.increment(due.size());
+            synchronized (unreturned) {
+                unreturned.addAll(due);
+            }
+        }
+        giveBack();
+    }
+
+    @PreDestroy
+    public void giveBackAll() {
+        synchronized (wheel) {
+            synchronized (unreturned) {
+                holds
+                    .values()
+                    .forEach(
+                        hold -> {
+                            wheel.cancel(hold.timeout);
+                            unreturned.add(hold);
+                        }
+                    );
+            }
+            holds.clear();
+        }
+        giveBack();
+    }
+
+    /**
+     * Takes the holds left in the table, by this node before a restart or by a node that stopped, into the wheel,
+     * and gives back those already expired.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        long now = System.currentTimeMillis();
+        List<ReservationHold> rows = transactionTemplate.execute(status -> reservationHoldRepository.findAll());
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        log.info("Taking back {} reservations", rows.size());
+        for (ReservationHold row : rows) {
+            Hold hold = new Hold(row.getId(), row.getUserName(), row.getProductId(), row.getQuantity(), row.getExpiresAt().toEpochMilli());
+            if (holds.containsKey(hold.id)) {
+                continue;
+            }
+            if (hold.deadline > now) {
+                hold(hold);
+            } else {
+                synchronized (unreturned) {
+                    unreturned.add(hold);
+                }
+            }
+        }
+        giveBack();
+    }
+
+    private void hold(Hold hold) {
+        synchronized (wheel) {
+            holds.put(hold.id, hold);
+            hold.timeout = wheel.schedule(hold, hold.deadline);
+        }
+    }
+
+    /**
+     * Takes a reservation off the wheel, so that it neither expires nor is checked out twice meanwhile.
+     */
+    private Hold claim(String userName, String id) {
+        synchronized (wheel) {
+            Hold hold = holds.get(id);
+            if (hold == null || !hold.userName.equals(userName) || !wheel.cancel(hold.timeout)) {
+                throw new BadRequestAlertException("Reservation " + id + " not found or expired.","","");
+            }
+            holds.remove(id);
+            return hold;
+        }
+    }
+
+    /**
+     * Deletes the row of a hold being checked out, in the purchase transaction.
+     */
+    private void release(Hold hold) {
+        if (reservationHoldRepository.release(hold.id) == 0) {
+            throw new BadRequestAlertException("Reservation " + hold.id + " not found or expired.","","");
+        }
+    }
+
+    /**
+     * Gives back the units of the holds not given back yet in one transaction, skipping those whose row is already
+     * gone and taking the product rows in ascending id order; if it fails, they are given back with those of the
+     * next tick.
+     */
+    private void giveBack() {
+        List<Hold> due;
+        synchronized (unreturned) {
+            if (unreturned.isEmpty()) {
+                return;
+            }
+            due = new ArrayList<>(unreturned);
+            unreturned.clear();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(
+                status -> {
+                    SortedMap<Long, Long> units = new TreeMap<>();
+                    for (Hold hold : due) {
+                        if (reservationHoldRepository.release(hold.id) > 0) {
+                            units.merge(hold.productId, (long) hold.quantity, Long::sum);
+                        }
+                    }
+                    units.forEach(
+                        (productId, quantity) -> {
+                            inventory.giveBack(productId, quantity);
+                            fastRejectCache.stockChanging(productId);
+                        }
+                    );
+                }
+            );
+        } catch (RuntimeException e) {
+            log.warn("Could not give back the units of {} reservations, retrying: {}", due.size(), e.getMessage());
+            synchronized (unreturned) {
+                unreturned.addAll(due);
+            }
+        }
+    }
+
+    /**
+     * A reservation, in the wheel while it holds its units.
+     */
+    private static final class Hold {
+
+        private final String id;
+
+        private final String userName;
+
+        private final Long productId;
+
+        private final int quantity;
+
+        private final long deadline;
+
+        private TimingWheel.Timeout<Hold> timeout;
+
+        private Hold(String id, String userName, Long productId, int quantity, long deadline) {
+            this.id = id;
+            this.userName = userName;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.deadline = deadline;
+        }
+
+        private ReservationHold toRow() {
+            return new ReservationHold(id, userName, productId, quantity, Instant.ofEpochMilli(deadline));
+        }
+
+        private Reservation toReservation() {
+            return new Reservation(id, productId, quantity, Instant.ofEpochMilli(deadline));
+        }
+    }
+}
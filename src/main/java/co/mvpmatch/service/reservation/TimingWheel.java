@@ -0,0 +1,212 @@
+package co.mvpmatch.service.reservation;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel: schedules items to expire at a deadline, with a constant-time schedule and
+ * cancel however many items are pending, and an advance whose cost grows with the time passed and the items
+ * expiring rather than with the items pending.
+ * <p>
+ * Time is cut in ticks. Each level is a wheel of {@value #SLOTS} slots, a slot of a level spanning a whole turn
+ * of the level below; an item goes in the lowest level able to hold its deadline, and moves down a level each
+ * time the wheel reaches its slot, until it expires from the lowest one. Deadlines beyond the highest level wait
+ * in an overflow list until the highest level turns.
+ * <p>
+ * Not thread-safe: callers guard a wheel with a lock of their own.
+ */
+public final class TimingWheel<T> {
+
+    static final int SLOTS = 64;
+
+    private static final int BITS = Integer.numberOfTrailingZeros(SLOTS);
+
+    private static final int MASK = SLOTS - 1;
+
+    private final long start;
+
+    private final long tickMillis;
+
+    private final Node<T>[][] wheels;
+
+    private final Node<T> overflow = new Node<>(null, 0);
+
+    /**
+     * The last tick expired.
+     */
+    private long current;
+
+    private int size;
+
+    /**
+     * @param tickMillis the resolution of the deadlines.
+     * @param levels how many levels of {@value #SLOTS} slots to keep.
+     * @param startMillis the time of the first tick.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int levels, long startMillis) {
+        if (tickMillis <= 0 || levels <= 0 || levels * BITS >= Long.SIZE - 1) {
+            throw new IllegalArgumentException("Invalid timing wheel of " + levels + " levels of " + tickMillis + " ms ticks");
+        }
+        this.start = startMillis;
+        this.tickMillis = tickMillis;
+        this.wheels = new Node[levels][SLOTS];
+        for (Node<T>[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                wheel[i] = new Node<>(null, 0);
+            }
+        }
+    }
+
+    /**
+     * Schedules an item to expire at the first tick at or after {@code deadlineMillis}, or at the next tick if
+     * that has already passed.
+     *
+     * @return the handle the item can be cancelled with.
+     */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        long tick = Math.max(current + 1, ceilDiv(deadlineMillis - start, tickMillis));
+        Node<T> node = new Node<>(item, tick);
+        place(node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Cancels an item, unless it has already expired or been cancelled.
+     *
+     * @return whether the item was pending.
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        Node<T> node = (Node<T>) timeout;
+        if (node.prev == null) {
+            return false;
+        }
+        node.unlink();
+        size--;
+        return true;
+    }
+
+    /**
+     * Expires every tick up to {@code nowMillis}, handing each item whose deadline passed to {@code expired}.
+     */
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long target = Math.floorDiv(nowMillis - start, tickMillis);
+        while (current < target) {
+            if (size == 0) {
+                current = target;
+                return;
+            }
+            tick(++current, expired);
+        }
+    }
+
+    /**
+     * @return the items pending.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void tick(long tick, Consumer<T> expired) {
+        // every level whose lower digits all turned to zero hands the items of its current slot down
+        for (int level = 1; level <= wheels.length; level++) {
+            if ((tick & ((1L << (BITS * level)) - 1)) != 0) {
+                break;
+            }
+            cascade(level < wheels.length ? wheels[level][digit(tick, level)] : overflow, tick, expired);
+        }
+        Node<T> slot = wheels[0][(int) (tick & MASK)];
+        for (Node<T> node = slot.next; node != slot; node = slot.next) {
+            node.unlink();
+            size--;
+            expired.accept(node.item);
+        }
+    }
+
+    private void cascade(Node<T> slot, long tick, Consumer<T> expired) {
+        if (slot.next == slot) {
+            return;
+        }
+        // detached first: items still beyond the highest level go back to the overflow list
+        Node<T> node = slot.next;
+        slot.prev.next = null;
+        slot.prev = slot.next = slot;
+        for (Node<T> next; node != null; node = next) {
+            next = node.next;
+            node.prev = node.next = null;
+            if (node.tick <= tick) {
+                size--;
+                expired.accept(node.item);
+            } else {
+                place(node);
+            }
+        }
+    }
+
+    /**
+     * Links a node in the lowest level whose higher digits its tick shares with the current tick; its digit in
+     * that level is then ahead of the current one, so the wheel reaches its slot before turning.
+     */
+    private void place(Node<T> node) {
+        int level = 0;
+        while (level < wheels.length && (node.tick >>> (BITS * (level + 1))) != (current >>> (BITS * (level + 1)))) {
+            level++;
+        }
+        node.linkBefore(level < wheels.length ? wheels[level][digit(node.tick, level)] : overflow);
+    }
+
+    private static int digit(long tick, int level) {
+        return (int) ((tick >>> (BITS * level)) & MASK);
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    /**
+     * A scheduled item.
+     */
+    public interface Timeout<T> {
+        T item();
+    }
+
+    /**
+     * An item in the circular list of a slot, or the head of that list.
+     */
+    private static final class Node<T> implements Timeout<T> {
+
+        private final T item;
+
+        private final long tick;
+
+        private Node<T> prev;
+
+        private Node<T> next;
+
+        private Node(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+            if (item == null) {
+                prev = next = this;
+            }
+        }
+
+        @Override
+        public T item() {
+            return item;
+        }
+
+        private void linkBefore(Node<T> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package co.mvpmatch.web.filter;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.web.rest.errors.ErrorConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Bounds the requests in flight on the routes that write to the database, so that a slow database holds at
+ * most that many server threads and every other endpoint keeps answering.
+ * <p>
+ * The bound is a {@link GradientLimit}, which shrinks as the latency of the requests grows and grows back as it
+ * recovers. A request beyond it is answered at once with {@code 503 Service Unavailable} and a
+ * {@code Retry-After} header, before it is authenticated or reaches a controller.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String BODY =
+        "{\"type\":\"" +
+        ErrorConstants.DEFAULT_TYPE +
+        "\",\"title\":\"Service Unavailable\",\"status\":503,\"detail\":\"Too many requests in flight, try again later\",\"message\":\"" +
+        ErrorConstants.ERR_OVERLOADED +
+        "\"}";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<String> paths;
+
+    private final String retryAfter;
+
+    private final GradientLimit limit;
+
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.ConcurrencyLimit properties = applicationProperties.getConcurrencyLimit();
+        this.paths = List.copyOf(properties.getPaths());
+        this.retryAfter = String.valueOf(properties.getRetryAfter());
+        this.limit =
+            new GradientLimit(
+                properties.getInitialLimit(),
+                properties.getMinLimit(),
+                properties.getMaxLimit(),
+                properties.getSmoothing(),
+                properties.getLongWindow()
+            );
+        Gauge.builder("vmachine.concurrency.limit", limit, GradientLimit::getLimit).description("Requests let in flight at once").register(meterRegistry);
+        Gauge.builder("vmachine.concurrency.in-flight", limit, GradientLimit::getInFlight).description("Requests in flight").register(meterRegistry);
+        this.rejected =
+            Counter.builder("vmachine.concurrency.rejected").description("Requests turned away over the limit").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (!limit.tryAcquire()) {
+            rejected.increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.setContentType("application/problem+json");
+            response.getWriter().write(BODY);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            limit.release(System.nanoTime() - start);
+        }
+    }
+
+    GradientLimit getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,99 @@
+package co.mvpmatch.web.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A limit on the requests in flight that follows their latency, after the gradient algorithm of Netflix's
+ * concurrency-limits library.
+ * <p>
+ * The latency of the requests is averaged twice: over the last few requests, and over a long window standing
+ * for the latency of a healthy backend. While the recent latency stays within {@value #TOLERANCE} times the
+ * long-term one, the limit grows by about the square root of itself, so that a few requests queue; once it goes
+ * beyond, the limit is cut in proportion, down to half. Each new estimate is only blended into the limit in part,
+ * and the limit does not grow while fewer than half of it are in flight, since such requests tell nothing of
+ * how far it could go.
+ */
+final class GradientLimit {
+
+    private static final double TOLERANCE = 1.5;
+
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double smoothing;
+
+    private final double longAlpha;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    private double shortRtt;
+
+    private double longRtt;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, int longWindow) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.smoothing = smoothing;
+        this.longAlpha = 2.0 / (Math.max(1, longWindow) + 1);
+        this.limit = clamp(initialLimit);
+    }
+
+    /**
+     * Lets a request in, unless as many as the limit are in flight already.
+     */
+    boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Lets out a request let in by {@link #tryAcquire()}, learning from its latency.
+     */
+    void release(long rttNanos) {
+        int current = inFlight.getAndDecrement();
+        update(Math.max(1, rttNanos), current);
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(double rtt, int inFlight) {
+        if (longRtt == 0) {
+            shortRtt = longRtt = rtt;
+            return;
+        }
+        shortRtt += SHORT_ALPHA * (rtt - shortRtt);
+        longRtt += longAlpha * (rtt - longRtt);
+        // once the backend recovered, the long-term latency still remembers the slow requests: drop it faster
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        limit = clamp(limit * (1 - smoothing) + estimate * smoothing);
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
@@ -0,0 +1,197 @@
+package co.mvpmatch.web.filter;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.web.rest.errors.ErrorConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Rate limits the requests of each user, so that a single client cannot use up the database capacity every
+ * user shares.
+ * <p>
+ * Each configured rule gives every user with its role a token bucket for the requests matching its methods and
+ * path; the first rule matching a request applies. A bucket is a single {@link AtomicLong} holding the time at
+ * which it will be full again, taken from with a compare-and-set, after the generic cell rate algorithm: a
+ * request is let through if the bucket would still hold a token, and moves that time one token later. A bucket
+ * that is full again is the same as a new one, so buckets are dropped once full, and the buckets of a rule are
+ * bounded: beyond the bound, new users are not limited.
+ * <p>
+ * A request over the limit is answered with {@code 429 Too Many Requests} and a {@code Retry-After} header. The
+ * filter runs after Spring Security, which sets the user.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String BODY =
+        "{\"type\":\"" +
+        ErrorConstants.DEFAULT_TYPE +
+        "\",\"title\":\"Too Many Requests\",\"status\":429,\"detail\":\"Too many requests, try again later\",\"message\":\"" +
+        ErrorConstants.ERR_RATE_LIMITED +
+        "\"}";
+
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<Limit> limits = new ArrayList<>();
+
+    private final int maxBuckets;
+
+    private final Counter rejected;
+
+    private final Counter untracked;
+
+    public RateLimitFilter(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.RateLimit properties = applicationProperties.getRateLimit();
+        this.maxBuckets = properties.getMaxBuckets();
+        for (ApplicationProperties.RateLimit.Rule rule : properties.getRules()) {
+            limits.add(new Limit(rule));
+        }
+        Gauge
+            .builder("vmachine.rate-limit.buckets", limits, all -> all.stream().mapToInt(limit -> limit.buckets.size()).sum())
+            .description("Users being rate limited")
+            .register(meterRegistry);
+        this.rejected = Counter.builder("vmachine.rate-limit.rejected").description("Requests over the rate of their user").register(meterRegistry);
+        this.untracked =
+            Counter.builder("vmachine.rate-limit.untracked").description("Requests let through without a bucket").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return limits.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()) {
+            Limit limit = find(authentication, request.getMethod(), request.getRequestURI().substring(request.getContextPath().length()));
+            long wait = limit != null ? limit.take(authentication.getName(), System.nanoTime()) : 0;
+            if (wait > 0) {
+                rejected.increment();
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, -Math.floorDiv(-wait, TimeUnit.SECONDS.toNanos(1)))));
+                response.setContentType("application/problem+json");
+                response.getWriter().write(BODY);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Limit find(Authentication authentication, String method, String path) {
+        for (Limit limit : limits) {
+            if (
+                (limit.methods.isEmpty() || limit.methods.contains(method)) &&
+                pathMatcher.match(limit.path, path) &&
+                hasRole(authentication, limit.role)
+            ) {
+                return limit;
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasRole(Authentication authentication, String role) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (role.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A rule and the buckets of its users, keyed by user name.
+     */
+    private final class Limit {
+
+        private final String role;
+
+        private final Set<String> methods;
+
+        private final String path;
+
+        /**
+         * Nanoseconds a token takes to come back.
+         */
+        private final long interval;
+
+        /**
+         * How far ahead of now the bucket may be full again while it still holds a token.
+         */
+        private final long tolerance;
+
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        private volatile long lastSweep = System.nanoTime();
+
+        private Limit(ApplicationProperties.RateLimit.Rule rule) {
+            this.role = rule.getRole();
+            this.methods = rule.getMethods().stream().map(String::toUpperCase).collect(Collectors.toUnmodifiableSet());
+            this.path = rule.getPath();
+            this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rule.getPerSecond()));
+            this.tolerance = (Math.max(1, rule.getCapacity()) - 1) * interval;
+        }
+
+        /**
+         * Takes a token from the bucket of a user.
+         *
+         * @return {@code 0} if there was one, else the nanoseconds until there is one.
+         */
+        private long take(String userName, long now) {
+            AtomicLong bucket = buckets.get(userName);
+            if (bucket == null) {
+                bucket = newBucket(userName, now);
+                if (bucket == null) {
+                    untracked.increment();
+                    return 0;
+                }
+            }
+            for (;;) {
+                long full = bucket.get();
+                long from = full - now > 0 ? full : now;
+                long ahead = from - now;
+                if (ahead > tolerance) {
+                    return ahead - tolerance;
+                }
+                if (bucket.compareAndSet(full, from + interval)) {
+                    return 0;
+                }
+            }
+        }
+
+        private AtomicLong newBucket(String userName, long now) {
+            if (buckets.size() >= maxBuckets || now - lastSweep > SWEEP_INTERVAL) {
+                lastSweep = now;
+                // a full bucket is the same as a new one; a request racing with its removal takes from it once more
+                buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+                if (buckets.size() >= maxBuckets) {
+                    return null;
+                }
+            }
+            return buckets.computeIfAbsent(userName, key -> new AtomicLong(now));
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Servlet filters.
+ */
+package co.mvpmatch.web.filter;
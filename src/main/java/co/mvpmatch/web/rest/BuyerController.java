@@ -1,44 +1,155 @@
 package co.mvpmatch.web.rest;
 
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinVector;
 import co.mvpmatch.service.BuyerService;
+import co.mvpmatch.service.IdempotencyService;
 import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.CartItem;
+import co.mvpmatch.service.dto.CartResponse;
+import co.mvpmatch.service.dto.PurchaseTicket;
+import co.mvpmatch.service.purchase.PurchasePipeline;
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.Map;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tech.jhipster.web.util.ResponseUtil;
 
 import static co.mvpmatch.security.AuthoritiesConstants.BUYER;
 
 /**
- * REST controller for managing Vending Machine specific operations
+ * REST controller for managing Vending Machine specific operations.
+ * <p>
+ * Not transactional: each operation runs its own transaction through the configured {@link co.mvpmatch.service.concurrency.ConcurrencyStrategy}, which may run it again
+ * after a conflict. When the {@link PurchasePipeline} is enabled, a purchase is only queued: it is answered with
+ * {@code 202 Accepted} and a ticket, and its outcome is fetched with {@code GET /api/buy/{ticket}}.
  */
 
 @RestController
 @RequestMapping("/api")
-@Transactional
 public class BuyerController {
 
+    /**
+     * Header a client may send with a unique value so that a retry of the request is answered with the result
+     * of the first one instead of running again.
+     */
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final BuyerService buyerService;
 
-    public BuyerController(BuyerService buyerService) {
+    private final IdempotencyService idempotencyService;
+
+    private final Optional<PurchasePipeline> purchasePipeline;
+
+    private final ApplicationProperties applicationProperties;
+
+    public BuyerController(
+        BuyerService buyerService,
+        IdempotencyService idempotencyService,
+        Optional<PurchasePipeline> purchasePipeline,
+        ApplicationProperties applicationProperties
+    ) {
         this.buyerService = buyerService;
+        this.idempotencyService = idempotencyService;
+        this.purchasePipeline = purchasePipeline;
+        this.applicationProperties = applicationProperties;
     }
 
     @PostMapping("/buy")
     @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
-    public ResponseEntity<BuyResponse> buy(
+    public ResponseEntity<?> buy(
         @RequestParam Long productId,
         @RequestParam Integer quantity,
+        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+        Authentication authentication) {
+        String userName = authentication.getName();
+
+        if (purchasePipeline.isPresent()) {
+            PurchaseTicket ticket = idempotencyService.execute(
+                userName,
+                idempotencyKey,
+                "buy-async",
+                PurchaseTicket.class,
+                () -> purchasePipeline.get().submit(userName, productId, quantity)
+            );
+            return ResponseEntity.accepted().location(URI.create("/api/buy/" + ticket.getId())).body(ticket);
+        }
+        return ResponseEntity.ok(
+            idempotencyService.execute(
+                userName,
+                idempotencyKey,
+                "buy",
+                BuyResponse.class,
+                () -> buyerService.buy(userName, productId, quantity)
+            )
+        );
+    }
+
+    @GetMapping("/buy/{ticket}")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<PurchaseTicket> getPurchase(@PathVariable String ticket, Authentication authentication) {
+        return ResponseUtil.wrapOrNotFound(purchasePipeline.flatMap(pipeline -> pipeline.find(authentication.getName(), ticket)));
+    }
+
+    /**
+     * Streams a single {@code purchase} event, the outcome of the purchase of the ticket, once it is known.
+     */
+    @GetMapping(path = "/buy/{ticket}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<SseEmitter> streamPurchase(@PathVariable String ticket, Authentication authentication) {
+        Optional<CompletableFuture<PurchaseTicket>> completion = purchasePipeline.flatMap(
+            pipeline -> pipeline.completion(authentication.getName(), ticket)
+        );
+        if (completion.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emitter = new SseEmitter(applicationProperties.getAsyncPurchase().getStreamTimeout());
+        completion
+            .get()
+            .thenAccept(
+                outcome -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("purchase").data(outcome, MediaType.APPLICATION_JSON));
+                        emitter.complete();
+                    } catch (IOException | IllegalStateException e) {
+                        emitter.completeWithError(e);
+                    }
+                }
+            );
+        return ResponseEntity.ok(emitter);
+    }
+
+    @PostMapping("/buy/cart")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<CartResponse> buyCart(
+        @RequestBody List<CartItem> items,
+        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
         Authentication authentication) {
         String userName = authentication.getName();
 
-        return ResponseEntity.ok(buyerService.buy(userName, productId, quantity));
+        return ResponseEntity.ok(
+            idempotencyService.execute(
+                userName,
+                idempotencyKey,
+                "buy-cart",
+                CartResponse.class,
+                () -> buyerService.buyCart(userName, items)
+            )
+        );
     }
 
     @PostMapping("/deposit")
@@ -46,19 +157,39 @@ public class BuyerController {
     public ResponseEntity deposit(
         @RequestParam Integer coin,
         @RequestParam Integer nr,
+        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
         Authentication authentication) {
 
         String userName = authentication.getName();
-        buyerService.deposit(userName, coin, nr);
+        idempotencyService.execute(
+            userName,
+            idempotencyKey,
+            "deposit",
+            Void.class,
+            () -> {
+                buyerService.deposit(userName, coin, nr);
+                return null;
+            }
+        );
         return ResponseEntity.ok().build();
     }
 
     @PostMapping("/reset")
     @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
-    public ResponseEntity<Map<Integer, Integer>> reset(Authentication authentication) {
+    public ResponseEntity<CoinVector> reset(
+        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+        Authentication authentication) {
 
         String userName = authentication.getName();
-        return ResponseEntity.ok(buyerService.resetDeposit(userName));
+        return ResponseEntity.ok(
+            idempotencyService.execute(
+                userName,
+                idempotencyKey,
+                "reset",
+                CoinVector.class,
+                () -> buyerService.resetDeposit(userName)
+            )
+        );
     }
 
 }
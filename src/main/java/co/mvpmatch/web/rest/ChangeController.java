@@ -0,0 +1,34 @@
+package co.mvpmatch.web.rest;
+
+import co.mvpmatch.service.ChangeBatchService;
+import co.mvpmatch.service.dto.ChangeRequest;
+import co.mvpmatch.service.dto.ChangeResponse;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static co.mvpmatch.security.AuthoritiesConstants.ADMIN;
+
+/**
+ * REST controller computing change in bulk, for the reconciliation of past purchases.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class ChangeController {
+
+    private final ChangeBatchService changeBatchService;
+
+    public ChangeController(ChangeBatchService changeBatchService) {
+        this.changeBatchService = changeBatchService;
+    }
+
+    @PostMapping("/change")
+    @PreAuthorize("hasAuthority(\"" + ADMIN + "\")")
+    public ResponseEntity<List<ChangeResponse>> change(@RequestBody List<ChangeRequest> requests) {
+        return ResponseEntity.ok(changeBatchService.makeChange(requests));
+    }
+}
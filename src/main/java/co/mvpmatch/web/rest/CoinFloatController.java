@@ -0,0 +1,40 @@
+package co.mvpmatch.web.rest;
+
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.service.CoinFloatService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static co.mvpmatch.security.AuthoritiesConstants.ADMIN;
+
+/**
+ * REST controller for stocking the coins the machine pays change out of.
+ */
+@RestController
+@RequestMapping("/api")
+public class CoinFloatController {
+
+    private final CoinFloatService coinFloatService;
+
+    public CoinFloatController(CoinFloatService coinFloatService) {
+        this.coinFloatService = coinFloatService;
+    }
+
+    @GetMapping("/coin-float")
+    @PreAuthorize("hasAuthority(\"" + ADMIN + "\")")
+    public ResponseEntity<CoinVector> getCoinFloat() {
+        return ResponseEntity.ok(coinFloatService.getCoins());
+    }
+
+    @PostMapping("/coin-float")
+    @PreAuthorize("hasAuthority(\"" + ADMIN + "\")")
+    public ResponseEntity<CoinVector> stock(@RequestParam Integer coin, @RequestParam Integer nr) {
+        coinFloatService.stock(coin, nr);
+        return ResponseEntity.ok(coinFloatService.getCoins());
+    }
+}
@@ -1,11 +1,15 @@
 package co.mvpmatch.web.rest;
 
+import co.mvpmatch.domain.CoinSet;
 import co.mvpmatch.domain.Product;
 import co.mvpmatch.domain.User;
 import co.mvpmatch.repository.ProductRepository;
 import co.mvpmatch.repository.UserRepository;
+import co.mvpmatch.service.FastRejectCache;
+import co.mvpmatch.service.WaitingRoom;
 import co.mvpmatch.service.dto.ProductDTO;
 import co.mvpmatch.service.dto.ProductMapper;
+import co.mvpmatch.service.inventory.Inventory;
 import co.mvpmatch.web.rest.errors.BadRequestAlertException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,10 +52,30 @@ public class ProductResource {
 
     private final ProductMapper productMapper;
 
-    public ProductResource(ProductRepository productRepository, UserRepository userRepository, ProductMapper productMapper) {
+    private final Inventory inventory;
+
+    private final FastRejectCache fastRejectCache;
+
+    private final WaitingRoom waitingRoom;
+
+    private final CoinSet coinSet;
+
+    public ProductResource(
+        ProductRepository productRepository,
+        UserRepository userRepository,
+        ProductMapper productMapper,
+        Inventory inventory,
+        FastRejectCache fastRejectCache,
+        WaitingRoom waitingRoom,
+        CoinSet coinSet
+    ) {
         this.productRepository = productRepository;
         this.userRepository = userRepository;
         this.productMapper = productMapper;
+        this.inventory = inventory;
+        this.fastRejectCache = fastRejectCache;
+        this.waitingRoom = waitingRoom;
+        this.coinSet = coinSet;
     }
 
     /**
@@ -67,8 +91,8 @@ public class ProductResource {
         log.debug("REST request to save Product : {}", product);
         if (product.getId() != null) {
             throw new BadRequestAlertException("A new product cannot already have an ID", ENTITY_NAME, "idexists");
-        } else if (product.getCost() % 5 != 0) {
-            throw new BadRequestAlertException("Wrong value for the cost. In order to give change the cost must be a multiple of 5.", ENTITY_NAME, "");
+        } else if (product.getCost() % coinSet.unit() != 0) {
+            throw new BadRequestAlertException("Wrong value for the cost. In order to give change the cost must be a multiple of " + coinSet.unit() + ".", ENTITY_NAME, "");
         }
 
         String loggedUserName = authentication.getName();
@@ -76,6 +100,7 @@ public class ProductResource {
         product.setSeller(loggedUser);
 
         Product result = productRepository.save(product);
+        inventory.created(result);
         return ResponseEntity
             .created(new URI("/api/products/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
@@ -107,14 +132,20 @@ public class ProductResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!productRepository.existsById(id)) {
+        Optional<Product> existingProduct = productRepository.findById(id);
+        if (existingProduct.isEmpty()) {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        if (product.getCost() % 5 != 0) {
-            throw new BadRequestAlertException("Wrong value for the cost. In order to give change the cost must be a multiple of 5.", ENTITY_NAME, "");
+        if (product.getCost() % coinSet.unit() != 0) {
+            throw new BadRequestAlertException("Wrong value for the cost. In order to give change the cost must be a multiple of " + coinSet.unit() + ".", ENTITY_NAME, "");
         }
 
+        // the request body carries no version; a full update overwrites whatever version is current
+        product.setVersion(existingProduct.get().getVersion());
+        fastRejectCache.stockChanging(product.getId());
+        waitingRoom.stockChanging(product.getId());
+        product.setAmountAvailable(inventory.set(existingProduct.get(), product.getAmountAvailable()));
         Product result = productRepository.save(product);
         return ResponseEntity
             .ok()
@@ -151,6 +182,8 @@ public class ProductResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
+        fastRejectCache.stockChanging(id);
+        waitingRoom.stockChanging(id);
         Optional<Product> result = productRepository
             .findById(product.getId())
             .map(
@@ -159,7 +192,7 @@ public class ProductResource {
                         existingProduct.setName(product.getName());
                     }
                     if (product.getAmountAvailable() != null) {
-                        existingProduct.setAmountAvailable(product.getAmountAvailable());
+                        existingProduct.setAmountAvailable(inventory.set(existingProduct, product.getAmountAvailable()));
                     }
                     if (product.getCost() != null) {
                         existingProduct.setCost(product.getCost());
@@ -184,7 +217,9 @@ public class ProductResource {
     @GetMapping("/products")
     public List<ProductDTO> getAllProducts() {
         log.debug("REST request to get all Products");
-        return productMapper.productsToProductDTOs(productRepository.findAll());
+        List<ProductDTO> products = productMapper.productsToProductDTOs(productRepository.findAll());
+        products.forEach(this::showAvailable);
+        return products;
     }
 
     /**
@@ -202,10 +237,15 @@ public class ProductResource {
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .map(p -> productMapper.productToProductDTO(p));
+        productDTO.ifPresent(this::showAvailable);
 
         return ResponseUtil.wrapOrNotFound(productDTO);
     }
 
+    private void showAvailable(ProductDTO productDTO) {
+        productDTO.setAmountAvailable(inventory.available(productDTO.getId(), productDTO.getAmountAvailable()));
+    }
+
     /**
      * {@code DELETE  /products/:id} : delete the "id" product.
      *
@@ -223,7 +263,10 @@ public class ProductResource {
         if (!loggedUser.equals(seller)) {
             throw new BadRequestAlertException("Forbidden. Only the SELLER of this product can delete it", ENTITY_NAME, "");
         }
+        fastRejectCache.stockChanging(id);
+        waitingRoom.stockChanging(id);
         productRepository.deleteById(id);
+        inventory.removed(id);
         return ResponseEntity
             .noContent()
             .headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id.toString()))
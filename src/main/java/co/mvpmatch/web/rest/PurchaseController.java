@@ -0,0 +1,67 @@
+package co.mvpmatch.web.rest;
+
+import co.mvpmatch.domain.Purchase;
+import co.mvpmatch.domain.User;
+import co.mvpmatch.repository.PurchaseRepository;
+import co.mvpmatch.repository.UserRepository;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static co.mvpmatch.security.AuthoritiesConstants.BUYER;
+
+/**
+ * REST controller for the purchase history of the buyers.
+ * <p>
+ * Purchases are written to the history shortly after they commit, so the latest ones may be missing for a moment.
+ */
+@RestController
+@RequestMapping("/api")
+public class PurchaseController {
+
+    private static final int MAX_DAYS = 366;
+
+    private static final int MAX_SIZE = 1000;
+
+    private final UserRepository userRepository;
+
+    private final PurchaseRepository purchaseRepository;
+
+    public PurchaseController(UserRepository userRepository, PurchaseRepository purchaseRepository) {
+        this.userRepository = userRepository;
+        this.purchaseRepository = purchaseRepository;
+    }
+
+    /**
+     * {@code GET /purchases} : the latest purchases of the logged-in buyer, newest first.
+     *
+     * @param days how far back to look; bounding the query keeps it to the partitions of the recent months.
+     * @param size the largest number of purchases returned.
+     */
+    @GetMapping("/purchases")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<List<Purchase>> getPurchases(
+        @RequestParam(defaultValue = "30") int days,
+        @RequestParam(defaultValue = "100") int size,
+        Authentication authentication) {
+        if (days <= 0 || days > MAX_DAYS || size <= 0 || size > MAX_SIZE) {
+            throw new BadRequestAlertException("Days must be between 1 and " + MAX_DAYS + ", size between 1 and " + MAX_SIZE + ".","","");
+        }
+        User buyer = userRepository.findOneByUsername(authentication.getName()).get();
+        Instant from = Instant.now().minus(days, ChronoUnit.DAYS);
+        return ResponseEntity.ok(
+            purchaseRepository
+                .findByBuyerIdAndCreatedDateGreaterThanEqualOrderByCreatedDateDesc(buyer.getId(), from, PageRequest.of(0, size))
+                .getContent()
+        );
+    }
+}
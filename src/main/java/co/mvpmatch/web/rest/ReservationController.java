@@ -0,0 +1,104 @@
+package co.mvpmatch.web.rest;
+
+import co.mvpmatch.service.IdempotencyService;
+import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.Reservation;
+import co.mvpmatch.service.reservation.ReservationService;
+import java.net.URI;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import tech.jhipster.web.util.ResponseUtil;
+
+import static co.mvpmatch.security.AuthoritiesConstants.BUYER;
+import static co.mvpmatch.web.rest.BuyerController.IDEMPOTENCY_KEY;
+
+/**
+ * REST controller for the reservations, which hold units of a product while a buyer inserts coins.
+ * <p>
+ * A reservation is created with {@code POST /api/reservations} and bought with
+ * {@code POST /api/reservations/{id}/checkout}; unless it is bought or cancelled, its units go back to the stock
+ * once it expires.
+ */
+@RestController
+@RequestMapping("/api")
+public class ReservationController {
+
+    private final ReservationService reservationService;
+
+    private final IdempotencyService idempotencyService;
+
+    public ReservationController(ReservationService reservationService, IdempotencyService idempotencyService) {
+        this.reservationService = reservationService;
+        this.idempotencyService = idempotencyService;
+    }
+
+    /**
+     * {@code POST /reservations} : holds {@code quantity} units of a product for {@code seconds} seconds.
+     */
+    @PostMapping("/reservations")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<Reservation> reserve(
+        @RequestParam Long productId,
+        @RequestParam Integer quantity,
+        @RequestParam Long seconds,
+        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+        Authentication authentication) {
+        String userName = authentication.getName();
+
+        Reservation reservation = idempotencyService.execute(
+            userName,
+            idempotencyKey,
+            "reserve",
+            Reservation.class,
+            () -> reservationService.reserve(userName, productId, quantity, seconds)
+        );
+        return ResponseEntity.created(URI.create("/api/reservations/" + reservation.getId())).body(reservation);
+    }
+
+    @GetMapping("/reservations/{id}")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<Reservation> getReservation(@PathVariable String id, Authentication authentication) {
+        return ResponseUtil.wrapOrNotFound(reservationService.find(authentication.getName(), id));
+    }
+
+    /**
+     * {@code POST /reservations/{id}/checkout} : buys the units held by the reservation.
+     */
+    @PostMapping("/reservations/{id}/checkout")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<BuyResponse> checkout(
+        @PathVariable String id,
+        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+        Authentication authentication) {
+        String userName = authentication.getName();
+
+        return ResponseEntity.ok(
+            idempotencyService.execute(
+                userName,
+                idempotencyKey,
+                "reservation-checkout",
+                BuyResponse.class,
+                () -> reservationService.checkout(userName, id)
+            )
+        );
+    }
+
+    /**
+     * {@code DELETE /reservations/{id}} : gives back the units held by the reservation.
+     */
+    @DeleteMapping("/reservations/{id}")
+    @PreAuthorize("hasAuthority(\"" + BUYER + "\")")
+    public ResponseEntity<Void> cancel(@PathVariable String id, Authentication authentication) {
+        reservationService.cancel(authentication.getName(), id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,40 @@
+package co.mvpmatch.web.rest;
+
+import co.mvpmatch.domain.User;
+import co.mvpmatch.repository.UserRepository;
+import co.mvpmatch.service.SellerRevenueService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static co.mvpmatch.security.AuthoritiesConstants.SELLER;
+
+/**
+ * REST controller for the sellers' own account.
+ */
+@RestController
+@RequestMapping("/api")
+public class SellerController {
+
+    private final UserRepository userRepository;
+
+    private final SellerRevenueService sellerRevenueService;
+
+    public SellerController(UserRepository userRepository, SellerRevenueService sellerRevenueService) {
+        this.userRepository = userRepository;
+        this.sellerRevenueService = sellerRevenueService;
+    }
+
+    /**
+     * {@code GET /earnings} : the money, in cents, the products of the logged-in seller have earned.
+     */
+    @GetMapping("/earnings")
+    @PreAuthorize("hasAuthority(\"" + SELLER + "\")")
+    public ResponseEntity<Long> getEarnings(Authentication authentication) {
+        User seller = userRepository.findOneByUsername(authentication.getName()).get();
+        return ResponseEntity.ok(sellerRevenueService.earnings(seller.getId()));
+    }
+}
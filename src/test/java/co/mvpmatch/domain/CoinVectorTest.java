@@ -0,0 +1,142 @@
+package co.mvpmatch.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.jupiter.api.Test;
+
+class CoinVectorTest {
+
+    private final CoinSet coinSet = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    @Test
+    void testTotal() {
+        assertThat(CoinVector.of(coinSet, 1, 2, 3, 4, 5).total()).isEqualTo(5 + 20 + 60 + 200 + 500);
+    }
+
+    @Test
+    void testBinaryRoundTrip() {
+        CoinVector coins = CoinVector.of(coinSet, 0, 1, 255, 65536, Integer.MAX_VALUE);
+
+        byte[] bytes = coins.toBytes();
+
+        assertThat(bytes).hasSize(coinSet.width() * Integer.BYTES);
+        assertThat(CoinVector.fromBytes(coinSet, bytes)).isEqualTo(coins);
+    }
+
+    @Test
+    void testJsonKeepsDepositFormat() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new SimpleModule().addDeserializer(CoinVector.class, new CoinVectorDeserializer(coinSet)));
+
+        String json = objectMapper.writeValueAsString(CoinVector.of(coinSet, 1, 0, 2, 0, 3));
+
+        assertThat(json).isEqualTo("{\"5\":1,\"10\":0,\"20\":2,\"50\":0,\"100\":3}");
+        assertThat(objectMapper.readValue(json, CoinVector.class)).isEqualTo(CoinVector.of(coinSet, 1, 0, 2, 0, 3));
+    }
+
+    @Test
+    void testSlotOf() {
+        assertThat(coinSet.slotOf(50)).isEqualTo(3);
+        assertThat(coinSet.slotOf(25)).isEqualTo(-1);
+    }
+
+    @Test
+    void testCopyIsIndependent() {
+        CoinVector coins = CoinVector.of(coinSet, 1, 1, 1, 1, 1);
+        CoinVector copy = coins.copy();
+
+        coins.add(0, 2);
+
+        assertThat(copy.count(0)).isEqualTo(1);
+        assertThat(coins.count(0)).isEqualTo(3);
+    }
+
+    @Test
+    void testCanPayExactAmounts() {
+        CoinVector coins = CoinVector.of(coinSet, 0, 0, 3, 1, 0);
+
+        assertThat(coins.canPay(0)).isTrue();
+        assertThat(coins.canPay(60)).isTrue();
+        assertThat(coins.canPay(90)).isTrue();
+        assertThat(coins.canPay(110)).isTrue();
+        assertThat(coins.canPay(10)).isFalse();
+        assertThat(coins.canPay(30)).isFalse();
+        assertThat(coins.canPay(120)).isFalse();
+        assertThat(coins.canPay(7)).isFalse();
+    }
+
+    @Test
+    void testCanPayFollowsDepositsAndRemovals() {
+        CoinVector coins = new CoinVector(coinSet);
+        assertThat(coins.canPay(105)).isFalse();
+
+        coins.add(coinSet.slotOf(100), 1);
+        coins.add(coinSet.slotOf(5), 1);
+        assertThat(coins.canPay(105)).isTrue();
+
+        coins.add(coinSet.slotOf(5), -1);
+        assertThat(coins.canPay(105)).isFalse();
+        assertThat(coins.canPay(100)).isTrue();
+
+        coins.clear();
+        assertThat(coins.canPay(100)).isFalse();
+    }
+
+    @Test
+    void testCopyTakesItsOwnTableAndAddingCoinsExtendsIt() {
+        CoinVector deposit = CoinVector.of(coinSet, 0, 0, 3, 1, 0);
+        assertThat(deposit.canPay(60)).isTrue();
+
+        CoinVector copy = deposit.copy();
+        long[] table = copy.payableTable();
+        copy.add(coinSet.slotOf(5), 1);
+
+        assertThat(copy.payableTable()).isSameAs(table).isNotSameAs(deposit.payableTable());
+        assertThat(copy.canPay(65)).isTrue();
+        assertThat(deposit.canPay(65)).isFalse();
+    }
+
+    @Test
+    void testCanPayMatchesBruteForce() {
+        CoinVector coins = CoinVector.of(coinSet, 3, 2, 4, 1, 2);
+        boolean[] reachable = new boolean[2001];
+        for (int a = 0; a <= 3; a++) {
+            for (int b = 0; b <= 2; b++) {
+                for (int c = 0; c <= 4; c++) {
+                    for (int d = 0; d <= 1; d++) {
+                        for (int e = 0; e <= 2; e++) {
+                            reachable[5 * a + 10 * b + 20 * c + 50 * d + 100 * e] = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int amount = 0; amount <= 2000; amount += 5) {
+            assertThat(coins.canPay(amount)).as("amount %d", amount).isEqualTo(reachable[amount]);
+        }
+    }
+
+    @Test
+    void testRejectsInvalidCoinSets() {
+        assertThatThrownBy(() -> new CoinSet(new int[] { 10, 5 }, 2000)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CoinSet(new int[0], 2000)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(coinSet.denominations()).containsExactly(5, 10, 20, 50, 100);
+        assertThat(coinSet.unit()).isEqualTo(5);
+    }
+
+    @Test
+    void testVectorsFollowTheirCoinSet() {
+        CoinSet euro = new CoinSet(new int[] { 1, 2, 5, 10, 20, 50, 100, 200 }, 500);
+        CoinVector coins = CoinVector.of(euro, 1, 1, 0, 0, 0, 0, 0, 1);
+
+        assertThat(coins.total()).isEqualTo(203);
+        assertThat(coins.canPay(3)).isTrue();
+        assertThat(coins.canPay(4)).isFalse();
+        assertThat(CoinVector.fromBytes(euro, coins.toBytes())).isEqualTo(coins);
+        assertThat(coinSet.width()).isEqualTo(5);
+    }
+}
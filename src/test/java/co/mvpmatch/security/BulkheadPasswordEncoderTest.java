@@ -0,0 +1,120 @@
+package co.mvpmatch.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import co.mvpmatch.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+class BulkheadPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    private final CountDownLatch hashing = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private BulkheadPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    @Test
+    void testHashesOnTheDelegate() {
+        encoder = newEncoder(new PlainEncoder());
+
+        String encoded = encoder.encode("secret");
+
+        assertThat(encoded).isEqualTo("{plain}secret");
+        assertThat(encoder.matches("secret", encoded)).isTrue();
+        assertThat(encoder.matches("other", encoded)).isFalse();
+        assertThat(meterRegistry.get("vmachine.password.hash").tag("operation", "encode").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("vmachine.password.hash").tag("operation", "matches").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void testHashesBeyondTheQueueAreRejected() throws Exception {
+        applicationProperties.getPasswordHashing().setThreads(1);
+        applicationProperties.getPasswordHashing().setQueueCapacity(1);
+        encoder = newEncoder(new BlockingEncoder());
+        CompletableFuture.runAsync(() -> encoder.matches("first", "{plain}first"));
+        assertThat(hashing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture.runAsync(() -> encoder.matches("second", "{plain}second"));
+        while (meterRegistry.get("vmachine.password.queue").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThatThrownBy(() -> encoder.matches("third", "{plain}third")).isInstanceOf(PasswordHashingRejectedException.class);
+        assertThat(meterRegistry.get("vmachine.password.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testHashWaitedForTooLongIsRejected() {
+        applicationProperties.getPasswordHashing().setTimeout(50);
+        encoder = newEncoder(new BlockingEncoder());
+
+        assertThatThrownBy(() -> encoder.encode("secret")).isInstanceOf(PasswordHashingRejectedException.class);
+        assertThat(meterRegistry.get("vmachine.password.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailureOfTheDelegateIsRethrown() {
+        encoder =
+            newEncoder(
+                new PlainEncoder() {
+                    @Override
+                    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                        throw new IllegalArgumentException("Encoded password does not look like BCrypt");
+                    }
+                }
+            );
+
+        assertThatThrownBy(() -> encoder.matches("secret", "secret")).isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("vmachine.password.rejected").counter().count()).isZero();
+    }
+
+    private BulkheadPasswordEncoder newEncoder(PasswordEncoder delegate) {
+        return new BulkheadPasswordEncoder(delegate, applicationProperties, meterRegistry);
+    }
+
+    private static class PlainEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "{plain}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+
+    /**
+     * Hashes only once released.
+     */
+    private class BlockingEncoder extends PlainEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            hashing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.encode(rawPassword);
+        }
+    }
+}
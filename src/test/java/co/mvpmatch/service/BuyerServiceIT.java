@@ -0,0 +1,169 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import co.mvpmatch.IntegrationTest;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.User;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.repository.UserRepository;
+import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.CartItem;
+import co.mvpmatch.service.dto.CartResponse;
+import co.mvpmatch.service.dto.PurchaseOrder;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import java.util.List;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link BuyerService}.
+ */
+@IntegrationTest
+@Transactional
+class BuyerServiceIT {
+
+    private static final String BUYER = "buyer-it";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BuyerService buyerService;
+
+    @Autowired
+    private CoinSet coinSet;
+
+    private User buyer;
+
+    private int sellers;
+
+    @BeforeEach
+    public void init() {
+        buyer = new User();
+        buyer.setUsername(BUYER);
+        buyer.setPassword(RandomStringUtils.random(60));
+        buyer.setRole("BUYER");
+        buyer.setDeposit(CoinVector.of(coinSet, 0, 0, 1, 1, 0));
+        userRepository.saveAndFlush(buyer);
+    }
+
+    @Test
+    void testBuyTakesStockAndPaysChangeOutOfTheDeposit() {
+        Product product = createProduct(50L, 1L);
+
+        BuyResponse response = buyerService.buy(BUYER, product.getId(), 1);
+
+        assertThat(response.getTotalSpent()).isEqualTo(50L);
+        assertThat(response.getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 1, 0, 0));
+        assertThat(productRepository.findById(product.getId()).get().getAmountAvailable()).isZero();
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 1, 0, 0));
+    }
+
+    @Test
+    void testBuyBreaksACoinToPayChange() {
+        buyer.setDeposit(CoinVector.of(coinSet, 0, 0, 0, 0, 1));
+        userRepository.saveAndFlush(buyer);
+        Product product = createProduct(35L, 1L);
+
+        BuyResponse response = buyerService.buy(BUYER, product.getId(), 1);
+
+        assertThat(response.getTotalSpent()).isEqualTo(35L);
+        assertThat(response.getDeposit()).isEqualTo(CoinVector.of(coinSet, 1, 1, 0, 1, 0));
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 1, 1, 0, 1, 0));
+    }
+
+    @Test
+    void testBuyRejectsMoreThanTheStock() {
+        Product product = createProduct(10L, 1L);
+
+        assertThatThrownBy(() -> buyerService.buy(BUYER, product.getId(), 2))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasMessage("Amount unavailable");
+        assertThat(productRepository.findById(product.getId()).get().getAmountAvailable()).isEqualTo(1L);
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 1, 1, 0));
+    }
+
+    @Test
+    void testBuyRejectsQuantitiesBelowOne() {
+        Product product = createProduct(10L, 1L);
+
+        for (int quantity : new int[] { 0, -5 }) {
+            assertThatThrownBy(() -> buyerService.buy(BUYER, product.getId(), quantity))
+                .isInstanceOf(BadRequestAlertException.class)
+                .hasMessage("A purchase needs a positive quantity.");
+            assertThatThrownBy(() -> buyerService.buyReserved(BUYER, product.getId(), quantity, () -> {}))
+                .isInstanceOf(BadRequestAlertException.class)
+                .hasMessage("A purchase needs a positive quantity.");
+        }
+        assertThat(productRepository.findById(product.getId()).get().getAmountAvailable()).isEqualTo(1L);
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 1, 1, 0));
+    }
+
+    @Test
+    void testDepositRejectsCountsBelowOne() {
+        for (int nr : new int[] { 0, -3 }) {
+            assertThatThrownBy(() -> buyerService.deposit(BUYER, 20, nr))
+                .isInstanceOf(BadRequestAlertException.class)
+                .hasMessage("Add at least one coin.");
+        }
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 1, 1, 0));
+    }
+
+    @Test
+    void testBuyCartPaysForAllProductsOutOfOneDeposit() {
+        Product water = createProduct(20L, 2L);
+        Product juice = createProduct(50L, 1L);
+
+        CartResponse response = buyerService.buyCart(BUYER, List.of(new CartItem(juice.getId(), 1), new CartItem(water.getId(), 1)));
+
+        assertThat(response.getTotalSpent()).isEqualTo(70L);
+        assertThat(response.getItems()).extracting(item -> item.getProduct().getId()).containsExactly(water.getId(), juice.getId());
+        assertThat(response.getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 0, 0, 0));
+        assertThat(productRepository.findById(water.getId()).get().getAmountAvailable()).isEqualTo(1L);
+        assertThat(productRepository.findById(juice.getId()).get().getAmountAvailable()).isZero();
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 0, 0, 0));
+    }
+
+    @Test
+    void testBuyCartMergesLinesOfTheSameProduct() {
+        Product water = createProduct(10L, 1L);
+
+        assertThatThrownBy(() -> buyerService.buyCart(BUYER, List.of(new CartItem(water.getId(), 1), new CartItem(water.getId(), 1))))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasMessage("Amount unavailable");
+        assertThat(productRepository.findById(water.getId()).get().getAmountAvailable()).isEqualTo(1L);
+    }
+
+    @Test
+    void testBuyBatchRunsPurchasesOfTheSameBuyerInOneTransaction() {
+        Product water = createProduct(20L, 1L);
+        Product juice = createProduct(50L, 1L);
+
+        List<BuyResponse> responses = buyerService.buyBatch(
+            List.of(new PurchaseOrder(BUYER, water.getId(), 1), new PurchaseOrder(BUYER, juice.getId(), 1))
+        );
+
+        assertThat(responses).extracting(BuyResponse::getTotalSpent).containsExactly(20L, 50L);
+        assertThat(userRepository.findOneByUsername(BUYER).get().getDeposit()).isEqualTo(CoinVector.of(coinSet, 0, 0, 0, 0, 0));
+    }
+
+    private Product createProduct(Long cost, Long amountAvailable) {
+        User seller = new User();
+        seller.setUsername("seller-it-" + sellers++);
+        seller.setPassword(RandomStringUtils.random(60));
+        seller.setRole("SELLER");
+        seller.setDeposit(new CoinVector(coinSet));
+        userRepository.saveAndFlush(seller);
+        return productRepository.saveAndFlush(new Product().name("water").cost(cost).amountAvailable(amountAvailable).seller(seller));
+    }
+}
@@ -0,0 +1,105 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.service.change.ChangeEngine;
+import co.mvpmatch.service.dto.ChangeRequest;
+import co.mvpmatch.service.dto.ChangeResponse;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChangeBatchServiceTest {
+
+    private final CoinSet coinSet = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    private ChangeEngine changeEngine;
+
+    private ChangeBatchService changeBatchService;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getChange().setBatchThreshold(16);
+        applicationProperties.getChange().setMaxAmount(10_000);
+        applicationProperties.getChange().setMaxBatchSize(4);
+        changeEngine = new ChangeEngine(coinSet);
+        changeBatchService = new ChangeBatchService(changeEngine, coinSet, applicationProperties);
+    }
+
+    @Test
+    void testSplitBatchMatchesOneByOne() {
+        int width = coinSet.width();
+        int items = 1000;
+        Random random = new Random(42);
+        int[] available = new int[items * width];
+        int[] amounts = new int[items];
+        for (int k = 0; k < items; k++) {
+            for (int i = 0; i < width; i++) {
+                available[k * width + i] = random.nextInt(4);
+            }
+            amounts[k] = 5 * random.nextInt(60);
+        }
+
+        int[] change = new int[available.length];
+        int[] coins = changeBatchService.makeChange(available, amounts, change);
+
+        int[] expected = new int[width];
+        for (int k = 0; k < items; k++) {
+            int[] coinsOfItem = Arrays.copyOfRange(available, k * width, (k + 1) * width);
+            assertThat(coins[k]).as("item %d", k).isEqualTo(changeEngine.makeChange(coinsOfItem, amounts[k], expected));
+            assertThat(Arrays.copyOfRange(change, k * width, (k + 1) * width)).as("item %d", k).containsExactly(expected);
+        }
+    }
+
+    @Test
+    void testMapsRequestsToResponses() {
+        List<ChangeResponse> responses = changeBatchService.makeChange(
+            List.of(new ChangeRequest(CoinVector.of(coinSet, 1, 1, 1, 0, 0), 15), new ChangeRequest(CoinVector.of(coinSet, 0, 0, 0, 0, 1), 35))
+        );
+
+        assertThat(responses).hasSize(2);
+        assertThat(responses.get(0).isExact()).isTrue();
+        assertThat(responses.get(0).getCoins()).isEqualTo(2);
+        assertThat(responses.get(0).getChange()).isEqualTo(CoinVector.of(coinSet, 1, 1, 0, 0, 0));
+        assertThat(responses.get(1).isExact()).isFalse();
+        assertThat(responses.get(1).getChange()).isNull();
+    }
+
+    @Test
+    void testRejectsMismatchedArrays() {
+        assertThatThrownBy(() -> changeBatchService.makeChange(new int[4], new int[1], new int[4]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRejectsOversizedBatchesAndAmounts() {
+        CoinVector deposit = CoinVector.of(coinSet, 1, 1, 1, 1, 1);
+
+        assertThatThrownBy(() -> changeBatchService.makeChange(List.of(new ChangeRequest(deposit, 10_005))))
+            .isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> changeBatchService.makeChange(List.of(new ChangeRequest(deposit, -5))))
+            .isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(
+                () ->
+                    changeBatchService.makeChange(
+                        List.of(
+                            new ChangeRequest(deposit, 5),
+                            new ChangeRequest(deposit, 5),
+                            new ChangeRequest(deposit, 5),
+                            new ChangeRequest(deposit, 5),
+                            new ChangeRequest(deposit, 5)
+                        )
+                    )
+            )
+            .isInstanceOf(BadRequestAlertException.class);
+        assertThat(changeBatchService.makeChange(List.of(new ChangeRequest(deposit, 10_000)))).hasSize(1);
+    }
+}
@@ -0,0 +1,218 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.MachineCoin;
+import co.mvpmatch.repository.MachineCoinRepository;
+import co.mvpmatch.service.change.ChangeEngine;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class CoinFloatServiceTest {
+
+    private MachineCoinRepository machineCoinRepository;
+
+    private final CoinSet coinSet = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    private CoinFloatService coinFloatService;
+
+    @BeforeEach
+    public void setup() {
+        machineCoinRepository = mock(MachineCoinRepository.class);
+        applicationProperties.getCoinFloat().setEnabled(true);
+        coinFloatService = new CoinFloatService(machineCoinRepository, new ChangeEngine(coinSet), coinSet, mock(PlatformTransactionManager.class), applicationProperties, meterRegistry);
+    }
+
+    @Test
+    void testSettleTakesInsertedCoinsAndPaysChangeFromFloat() {
+        load(10, 10, 10, 10, 0);
+        int[] change = new int[5];
+
+        boolean settled = coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 35, change);
+
+        assertThat(settled).isTrue();
+        assertThat(change).containsExactly(1, 1, 1, 0, 0);
+        assertThat(floatCounts()).containsExactly(9, 9, 9, 10, 1);
+    }
+
+    @Test
+    void testSettleLeavesFloatUntouchedWithoutExactChange() {
+        load(0, 0, 0, 0, 0);
+        int[] change = new int[5];
+
+        boolean settled = coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 35, change);
+
+        assertThat(settled).isFalse();
+        assertThat(floatCounts()).containsExactly(0, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testStockedCoinsPayChange() {
+        load(0, 0, 0, 0, 0);
+
+        coinFloatService.stock(5, 1);
+        coinFloatService.stock(10, 1);
+        coinFloatService.stock(20, 1);
+        boolean settled = coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 35, new int[5]);
+
+        assertThat(settled).isTrue();
+        assertThat(floatCounts()).containsExactly(0, 0, 0, 0, 1);
+    }
+
+    @Test
+    void testStockRejectsUnknownCoinsAndCountsBelowOne() {
+        load(0, 0, 0, 0, 0);
+
+        assertThatThrownBy(() -> coinFloatService.stock(7, 1)).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> coinFloatService.stock(5, 0)).isInstanceOf(BadRequestAlertException.class);
+        assertThat(floatCounts()).containsExactly(0, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testLoadStartsCoinsWithoutARowAtTheirInitialCount() {
+        applicationProperties.getCoinFloat().setInitial(Map.of(10, 20, 50, 4));
+        coinFloatService = new CoinFloatService(machineCoinRepository, new ChangeEngine(coinSet), coinSet, mock(PlatformTransactionManager.class), applicationProperties, meterRegistry);
+        when(machineCoinRepository.findAll()).thenReturn(List.of(new MachineCoin(5, 3)));
+
+        coinFloatService.load();
+
+        assertThat(floatCounts()).containsExactly(3, 20, 0, 4, 0);
+    }
+
+    @Test
+    void testTryApplyIsAllOrNothing() {
+        load(1, 1, 0, 0, 0);
+
+        assertThat(coinFloatService.tryApply(new int[] { -1, -2, 0, 0, 1 })).isFalse();
+        assertThat(floatCounts()).containsExactly(1, 1, 0, 0, 0);
+    }
+
+    @Test
+    void testConcurrentSettlementsNeverOverdrawTheFloat() throws Exception {
+        load(0, 0, 0, 100, 0);
+        int buyers = 200;
+        AtomicInteger settled = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < buyers; i++) {
+            executor.submit(
+                () -> {
+                    start.await();
+                    // pay 50 with a 100 coin, getting a 50 back from the float
+                    if (coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 50, new int[5])) {
+                        settled.incrementAndGet();
+                    }
+                    return null;
+                }
+            );
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(settled.get()).isEqualTo(100);
+        assertThat(floatCounts()).containsExactly(0, 0, 0, 0, 100);
+    }
+
+    @Test
+    void testRollbackAfterTheCoinsWerePaidOutStopsAtZero() {
+        load(0, 0, 0, 0, 0);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // a purchase puts a 50 coin in, then rolls back after another buyer got it as change
+            assertThat(coinFloatService.settle(new int[] { 0, 0, 0, 1, 0 }, 0, new int[5])).isTrue();
+            List<TransactionSynchronization> rollback = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            assertThat(coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 50, new int[5])).isTrue();
+
+            rollback.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        assertThat(floatCounts()).containsExactly(0, 0, 0, 0, 1);
+        assertThat(meterRegistry.get("vmachine.coin-float.shortfall").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testFlushAddsOnlyTheCoinsMovedSinceTheLastFlush() {
+        load(10, 10, 10, 10, 0);
+
+        coinFloatService.flush();
+        verify(machineCoinRepository, never()).addAmount(any(), any());
+
+        coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 35, new int[5]);
+        coinFloatService.settle(new int[] { 0, 0, 0, 0, 1 }, 35, new int[5]);
+        coinFloatService.flush();
+        verify(machineCoinRepository).addAmount(5, -2);
+        verify(machineCoinRepository).addAmount(10, -2);
+        verify(machineCoinRepository).addAmount(20, -2);
+        verify(machineCoinRepository).addAmount(100, 2);
+        verify(machineCoinRepository, never()).addAmount(eq(50), any());
+
+        coinFloatService.flush();
+        verify(machineCoinRepository, times(4)).addAmount(any(), any());
+    }
+
+    @Test
+    void testFailedFlushKeepsTheCoinsForTheNextOne() {
+        load(0, 0, 0, 0, 0);
+        coinFloatService.stock(5, 3);
+        when(machineCoinRepository.addAmount(5, 3)).thenThrow(new IllegalStateException("database down")).thenReturn(1);
+
+        assertThatThrownBy(() -> coinFloatService.flush()).isInstanceOf(IllegalStateException.class);
+        coinFloatService.flush();
+
+        verify(machineCoinRepository, times(2)).addAmount(5, 3);
+    }
+
+    private void load(int... counts) {
+        when(machineCoinRepository.findAll())
+            .thenReturn(
+                List.of(
+                    new MachineCoin(5, counts[0]),
+                    new MachineCoin(10, counts[1]),
+                    new MachineCoin(20, counts[2]),
+                    new MachineCoin(50, counts[3]),
+                    new MachineCoin(100, counts[4])
+                )
+            );
+        coinFloatService.load();
+    }
+
+    private int[] floatCounts() {
+        int[] counts = new int[coinSet.width()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = coinFloatService.count(i);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,180 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class FastRejectCacheTest {
+
+    private final CoinSet coinSet = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    private final CoinFloatService coinFloatService = mock(CoinFloatService.class);
+
+    private FastRejectCache cache = newCache(new ApplicationProperties());
+
+    @Test
+    void testLetsThroughWhatItDoesNotKnow() {
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testRejectsABuyerThatCouldNotPay() {
+        FastRejectCache.Probe probe = cache.probe("buyer", List.of(1L));
+        probe.stock(product(1L, 50L), 5);
+        probe.balance(20);
+
+        assertThatThrownBy(() -> cache.check("buyer", Map.of(1L, 1)))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasMessage("Not enough money.");
+        assertThatCode(() -> cache.check("other", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testRejectsMoreThanTheStock() {
+        cache.probe("buyer", List.of(1L)).stock(product(1L, 10L), 0);
+
+        assertThatThrownBy(() -> cache.check("other", Map.of(1L, 1)))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasMessage("Amount unavailable");
+    }
+
+    @Test
+    void testAddsUpTheCostOfACart() {
+        FastRejectCache.Probe probe = cache.probe("buyer", List.of(1L, 2L));
+        probe.stock(product(1L, 20L), 5);
+        probe.stock(product(2L, 50L), 5);
+        probe.balance(60);
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 3))).doesNotThrowAnyException();
+        assertThatThrownBy(() -> cache.check("buyer", Map.of(1L, 1, 2L, 1))).hasMessage("Not enough money.");
+    }
+
+    @Test
+    void testForgetsTheBalanceOfADeposit() {
+        FastRejectCache.Probe probe = cache.probe("buyer", List.of(1L));
+        probe.stock(product(1L, 50L), 5);
+        probe.balance(20);
+
+        cache.balanceChanging("buyer");
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testIgnoresWhatWasReadWhileItChanged() {
+        FastRejectCache.Probe probe = cache.probe("buyer", List.of(1L));
+        cache.stockChanged(1L);
+        probe.stock(product(1L, 10L), 0);
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testLearnsOnceTheTransactionIsOver() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.probe("buyer", List.of(1L)).stock(product(1L, 10L), 0);
+            assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+
+            TransactionSynchronizationManager
+                .getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThatThrownBy(() -> cache.check("buyer", Map.of(1L, 1))).hasMessage("Amount unavailable");
+    }
+
+    @Test
+    void testTrustsAReadOnlyForTheTtl() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getFastReject().setTtl(0);
+        cache = newCache(applicationProperties);
+
+        cache.probe("buyer", List.of(1L)).stock(product(1L, 10L), 0);
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testLearnsNothingWhenDisabled() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getFastReject().setEnabled(false);
+        cache = newCache(applicationProperties);
+
+        cache.probe("buyer", List.of(1L)).stock(product(1L, 10L), 0);
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testRejectsChangeNeitherTheDepositNorTheFloatCanPay() {
+        cache.depositChanging("buyer", CoinVector.of(coinSet, 0, 0, 0, 1, 1));
+        cache.probe("buyer", List.of(1L)).stock(product(1L, 50L), 5);
+        cache.probe("buyer", List.of(2L)).stock(product(2L, 35L), 5);
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+        assertThatThrownBy(() -> cache.check("buyer", Map.of(2L, 1))).hasMessage("Cannot make exact change.");
+
+        when(coinFloatService.canSettle(any(), eq(115))).thenReturn(true);
+        assertThatCode(() -> cache.check("buyer", Map.of(2L, 1))).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testHandsTheKeptDepositOnOnlyWhileItHoldsTheSameCoins() {
+        CoinVector kept = CoinVector.of(coinSet, 0, 0, 1, 1, 0);
+        cache.depositChanging("buyer", kept);
+
+        CoinVector loaded = cache.deposit("buyer", CoinVector.of(coinSet, 0, 0, 1, 1, 0));
+        loaded.add(coinSet.slotOf(5), 1);
+
+        assertThat(loaded.canPay(75)).isTrue();
+        assertThat(kept.canPay(75)).isFalse();
+        CoinVector other = CoinVector.of(coinSet, 1, 0, 0, 0, 0);
+        assertThat(cache.deposit("buyer", other)).isSameAs(other);
+    }
+
+    @Test
+    void testKeepsNoDepositOfARolledBackTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.depositChanging("buyer", CoinVector.of(coinSet, 0, 0, 0, 0, 1));
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        cache.probe("buyer", List.of(1L)).stock(product(1L, 35L), 5);
+
+        assertThatCode(() -> cache.check("buyer", Map.of(1L, 1))).doesNotThrowAnyException();
+    }
+
+    private static Product product(Long id, Long cost) {
+        Product product = new Product();
+        product.setId(id);
+        product.setCost(cost);
+        return product;
+    }
+
+    private FastRejectCache newCache(ApplicationProperties applicationProperties) {
+        return new FastRejectCache(applicationProperties, coinFloatService, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,195 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.CoinVectorDeserializer;
+import co.mvpmatch.domain.IdempotentResult;
+import co.mvpmatch.repository.IdempotentResultRepository;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class IdempotencyServiceTest {
+
+    private static final CoinSet COIN_SET = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    private IdempotentResultRepository idempotentResultRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    public void setup() {
+        idempotentResultRepository = mock(IdempotentResultRepository.class);
+        when(idempotentResultRepository.findById(any())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyService = newService();
+    }
+
+    @Test
+    void testReplaysTheResultOfAKey() {
+        AtomicInteger runs = new AtomicInteger();
+
+        String first = idempotencyService.execute("buyer", "key-1", "buy", String.class, () -> "bought " + runs.incrementAndGet());
+        String second = idempotencyService.execute("buyer", "key-1", "buy", String.class, () -> "bought " + runs.incrementAndGet());
+
+        assertThat(first).isEqualTo("bought 1");
+        assertThat(second).isEqualTo("bought 1");
+        assertThat(meterRegistry.counter("vmachine.idempotency.replays").count()).isEqualTo(1);
+        verify(idempotentResultRepository).save(any(IdempotentResult.class));
+    }
+
+    @Test
+    void testKeysAreScopedToTheUser() {
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotencyService.execute("buyer", "key-1", "buy", Integer.class, runs::incrementAndGet);
+        idempotencyService.execute("other", "key-1", "buy", Integer.class, runs::incrementAndGet);
+
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void testRunsAgainWithoutAKey() {
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotencyService.execute("buyer", null, "buy", Integer.class, runs::incrementAndGet);
+        idempotencyService.execute("buyer", null, "buy", Integer.class, runs::incrementAndGet);
+
+        assertThat(runs.get()).isEqualTo(2);
+        verify(idempotentResultRepository, never()).save(any());
+    }
+
+    @Test
+    void testDoesNotRecordAFailure() {
+        AtomicInteger runs = new AtomicInteger();
+
+        assertThatThrownBy(
+                () ->
+                    idempotencyService.execute(
+                        "buyer",
+                        "key-1",
+                        "buy",
+                        Integer.class,
+                        () -> {
+                            runs.incrementAndGet();
+                            throw new BadRequestAlertException("Not enough money.", "", "");
+                        }
+                    )
+            )
+            .isInstanceOf(BadRequestAlertException.class);
+        Integer result = idempotencyService.execute("buyer", "key-1", "buy", Integer.class, runs::incrementAndGet);
+
+        assertThat(result).isEqualTo(2);
+        verify(idempotentResultRepository).save(any());
+    }
+
+    @Test
+    void testRejectsAKeyUsedForAnotherOperation() {
+        idempotencyService.execute("buyer", "key-1", "buy", String.class, () -> "bought");
+
+        assertThatThrownBy(() -> idempotencyService.execute("buyer", "key-1", "reset", String.class, () -> "reset"))
+            .isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void testReplaysAStoredResultAfterARestart() {
+        CoinVector deposit = CoinVector.of(COIN_SET, 0, 1, 0, 0, 0);
+        when(idempotentResultRepository.findById("buyer key-1"))
+            .thenReturn(Optional.of(new IdempotentResult("buyer key-1", "reset", "{\"10\":1}", Instant.now())));
+
+        CoinVector result = newService().execute("buyer", "key-1", "reset", CoinVector.class, () -> new CoinVector(COIN_SET));
+
+        assertThat(result).isEqualTo(deposit);
+    }
+
+    @Test
+    void testRunsAgainOnceTheStoredResultExpired() {
+        when(idempotentResultRepository.findById("buyer key-1"))
+            .thenReturn(Optional.of(new IdempotentResult("buyer key-1", "buy", "\"bought\"", Instant.now().minusSeconds(2))));
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getIdempotency().setTtl(1000);
+
+        String result = newService(applicationProperties).execute("buyer", "key-1", "buy", String.class, () -> "bought again");
+
+        assertThat(result).isEqualTo("bought again");
+    }
+
+    @Test
+    void testConcurrentRetryWaitsForTheFirstRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> first = executor.submit(
+                () ->
+                    idempotencyService.execute(
+                        "buyer",
+                        "key-1",
+                        "buy",
+                        Integer.class,
+                        () -> {
+                            started.countDown();
+                            await(release);
+                            return runs.incrementAndGet();
+                        }
+                    )
+            );
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            new Thread(release::countDown).start();
+
+            Integer second = idempotencyService.execute("buyer", "key-1", "buy", Integer.class, runs::incrementAndGet);
+
+            assertThat(second).isEqualTo(1);
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(runs.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private IdempotencyService newService() {
+        return newService(new ApplicationProperties());
+    }
+
+    private IdempotencyService newService(ApplicationProperties applicationProperties) {
+        return new IdempotencyService(
+            idempotentResultRepository,
+            new ObjectMapper().registerModule(new SimpleModule().addDeserializer(CoinVector.class, new CoinVectorDeserializer(COIN_SET))),
+            mock(PlatformTransactionManager.class),
+            applicationProperties,
+            meterRegistry
+        );
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
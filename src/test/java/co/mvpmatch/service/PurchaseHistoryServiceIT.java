@@ -0,0 +1,79 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import co.mvpmatch.IntegrationTest;
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link PurchaseHistoryService}, with purchases recorded by committed transactions.
+ */
+@IntegrationTest
+class PurchaseHistoryServiceIT {
+
+    private static final long BUYER_ID = -18L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CoinSet coinSet;
+
+    @AfterEach
+    public void cleanup() {
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> jdbcTemplate.update("delete from purchase where buyer_id = ?", BUYER_ID));
+    }
+
+    @Test
+    void testPurchasesOverflowingTheQueueAreWrittenByTheCommittingThread() throws InterruptedException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPurchaseHistory().setCapacity(1);
+        PurchaseHistoryService purchaseHistoryService = new PurchaseHistoryService(
+            jdbcTemplate,
+            transactionManager,
+            applicationProperties,
+            new SimpleMeterRegistry()
+        );
+
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(
+                status -> {
+                    for (int i = 0; i < 20; i++) {
+                        purchaseHistoryService.record(BUYER_ID, 1L, 1, 10L, new CoinVector(coinSet));
+                    }
+                }
+            );
+        purchaseHistoryService.shutdown();
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from purchase where buyer_id = ?", Long.class, BUYER_ID)).isEqualTo(20L);
+    }
+
+    @Test
+    void testPurchasesCommittedAfterShutdownAreStillWritten() throws InterruptedException {
+        PurchaseHistoryService purchaseHistoryService = new PurchaseHistoryService(
+            jdbcTemplate,
+            transactionManager,
+            new ApplicationProperties(),
+            new SimpleMeterRegistry()
+        );
+        purchaseHistoryService.shutdown();
+
+        new TransactionTemplate(transactionManager)
+            .executeWithoutResult(status -> purchaseHistoryService.record(BUYER_ID, 1L, 1, 10L, new CoinVector(coinSet)));
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from purchase where buyer_id = ?", Long.class, BUYER_ID)).isEqualTo(1L);
+    }
+}
@@ -0,0 +1,134 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class PurchaseHistoryServiceTest {
+
+    private static final CoinSet COIN_SET = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    private JdbcTemplate jdbcTemplate;
+
+    private PurchaseHistoryService purchaseHistoryService;
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        purchaseHistoryService =
+            new PurchaseHistoryService(
+                jdbcTemplate,
+                mock(PlatformTransactionManager.class),
+                new ApplicationProperties(),
+                new SimpleMeterRegistry()
+            );
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        purchaseHistoryService.shutdown();
+    }
+
+    @Test
+    void testWritesThePurchasesInABatch() {
+        purchaseHistoryService.record(1L, 7L, 2, 40, CoinVector.of(COIN_SET, 0, 1, 0, 0, 0));
+
+        Collection<?> batch = captureBatch(1);
+
+        assertThat(batch).hasSize(1);
+    }
+
+    @Test
+    void testWritesAPurchaseOnlyOnceItsTransactionCommits() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            purchaseHistoryService.record(1L, 7L, 1, 20, CoinVector.of(COIN_SET, 0, 0, 0, 0, 0));
+            verify(jdbcTemplate, after(300).never()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(captureBatch(1)).hasSize(1);
+    }
+
+    @Test
+    void testRetriesAFailedBatch() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+            .thenThrow(new QueryTimeoutException("timeout"))
+            .thenReturn(new int[][] { { 1 } });
+
+        purchaseHistoryService.record(1L, 7L, 1, 20, CoinVector.of(COIN_SET, 0, 0, 0, 0, 0));
+
+        verify(jdbcTemplate, timeout(5000).times(2)).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+    }
+
+    @Test
+    void testAddsThePartitionsOfTheComingMonths() {
+        List<String> statements = PurchaseHistoryService.maintenanceStatements(
+            List.of("p202610", "p202611", "pfuture"),
+            YearMonth.of(2026, 11),
+            2,
+            0
+        );
+
+        assertThat(statements)
+            .containsExactly(
+                "alter table purchase reorganize partition pfuture into (" +
+                "partition p202612 values less than (to_days('2027-01-01')), " +
+                "partition p202701 values less than (to_days('2027-02-01')), " +
+                "partition pfuture values less than maxvalue)"
+            );
+    }
+
+    @Test
+    void testDropsThePartitionsPastTheRetention() {
+        List<String> statements = PurchaseHistoryService.maintenanceStatements(
+            List.of("p202610", "p202611", "p202612", "pfuture"),
+            YearMonth.of(2026, 12),
+            0,
+            2
+        );
+
+        assertThat(statements).containsExactly("alter table purchase drop partition p202610");
+    }
+
+    @Test
+    void testLeavesAnUnpartitionedTableAlone() {
+        assertThat(PurchaseHistoryService.maintenanceStatements(List.of(), YearMonth.of(2026, 12), 3, 1)).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<?> captureBatch(int times) {
+        ArgumentCaptor<Collection<Object>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, timeout(5000).times(times))
+            .batchUpdate(anyString(), batch.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        return batch.getValue();
+    }
+}
@@ -0,0 +1,177 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.repository.EarningsSlotRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class SellerRevenueServiceTest {
+
+    private EarningsSlotRepository earningsSlotRepository;
+
+    private SellerRevenueService sellerRevenueService;
+
+    @BeforeEach
+    public void setup() {
+        earningsSlotRepository = mock(EarningsSlotRepository.class);
+        when(earningsSlotRepository.addToSlot(anyLong(), anyInt(), anyLong())).thenReturn(1);
+        sellerRevenueService = newService(new ApplicationProperties());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sellerRevenueService.flushOnShutdown();
+    }
+
+    @Test
+    void testFlushesTheSumOfEverySellerInIdOrder() {
+        sellerRevenueService.credit(2L, 50);
+        sellerRevenueService.credit(1L, 20);
+        sellerRevenueService.credit(2L, 30);
+
+        sellerRevenueService.flush();
+
+        InOrder inOrder = Mockito.inOrder(earningsSlotRepository);
+        inOrder.verify(earningsSlotRepository).addToSlot(1L, 0, 20L);
+        inOrder.verify(earningsSlotRepository).addToSlot(2L, 0, 80L);
+        assertThat(sellerRevenueService.unflushed(2L)).isZero();
+    }
+
+    @Test
+    void testOnlyFlushesWhatWasCreditedSinceTheLastFlush() {
+        sellerRevenueService.credit(1L, 20);
+        sellerRevenueService.flush();
+        sellerRevenueService.credit(1L, 5);
+
+        sellerRevenueService.flush();
+        sellerRevenueService.flush();
+
+        verify(earningsSlotRepository).addToSlot(1L, 0, 20L);
+        verify(earningsSlotRepository).addToSlot(1L, 0, 5L);
+    }
+
+    @Test
+    void testCreatesTheSlotOfANewSeller() {
+        when(earningsSlotRepository.addToSlot(1L, 0, 20L)).thenReturn(0);
+        sellerRevenueService.credit(1L, 20);
+
+        sellerRevenueService.flush();
+
+        verify(earningsSlotRepository).save(argThat(slot -> slot.getSellerId() == 1L && slot.getSlot() == 0 && slot.getAmount() == 20L));
+    }
+
+    @Test
+    void testKeepsTheEarningsOfAFailedFlush() {
+        when(earningsSlotRepository.addToSlot(1L, 0, 20L)).thenThrow(new QueryTimeoutException("timeout"));
+        sellerRevenueService.credit(1L, 20);
+
+        sellerRevenueService.flush();
+
+        assertThat(sellerRevenueService.unflushed(1L)).isEqualTo(20);
+        sellerRevenueService.credit(1L, 5);
+        sellerRevenueService.flush();
+        verify(earningsSlotRepository).addToSlot(1L, 0, 25L);
+        assertThat(sellerRevenueService.unflushed(1L)).isZero();
+    }
+
+    @Test
+    void testFlushesOnceEnoughPurchasesAreCredited() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSellerRevenue().setFlushThreshold(3);
+        sellerRevenueService.flushOnShutdown();
+        sellerRevenueService = newService(applicationProperties);
+
+        sellerRevenueService.credit(1L, 10);
+        sellerRevenueService.credit(1L, 10);
+        verify(earningsSlotRepository, never()).addToSlot(anyLong(), anyInt(), anyLong());
+        sellerRevenueService.credit(1L, 10);
+
+        verify(earningsSlotRepository, timeout(5000)).addToSlot(1L, 0, 30L);
+    }
+
+    @Test
+    void testAFailedFlushKeepsCountingTowardsTheThreshold() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSellerRevenue().setFlushThreshold(3);
+        sellerRevenueService.flushOnShutdown();
+        sellerRevenueService = newService(applicationProperties);
+        when(earningsSlotRepository.addToSlot(1L, 0, 20L)).thenThrow(new QueryTimeoutException("timeout"));
+
+        sellerRevenueService.credit(1L, 10);
+        sellerRevenueService.credit(1L, 10);
+        sellerRevenueService.flush();
+        sellerRevenueService.credit(1L, 10);
+
+        verify(earningsSlotRepository, timeout(5000)).addToSlot(1L, 0, 30L);
+    }
+
+    @Test
+    void testSpreadsABusySellerOverMoreSlots() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSellerRevenue().setPurchasesPerSlot(1);
+        applicationProperties.getSellerRevenue().setMaxSlots(4);
+        sellerRevenueService.flushOnShutdown();
+        sellerRevenueService = newService(applicationProperties);
+        for (int i = 0; i < 100; i++) {
+            sellerRevenueService.credit(1L, 10);
+        }
+
+        sellerRevenueService.flush();
+
+        assertThat(sellerRevenueService.slots(1L)).isEqualTo(4);
+        verify(earningsSlotRepository, times(3)).save(argThat(slot -> slot.getSellerId() == 1L && slot.getAmount() == 0L));
+        verify(earningsSlotRepository).addToSlot(eq(1L), anyInt(), eq(1000L));
+    }
+
+    @Test
+    void testCachesTheEarningsReadFromTheSlots() {
+        when(earningsSlotRepository.sumBySellerId(1L)).thenReturn(100L);
+        sellerRevenueService.credit(1L, 20);
+
+        assertThat(sellerRevenueService.earnings(1L)).isEqualTo(120);
+        assertThat(sellerRevenueService.earnings(1L)).isEqualTo(120);
+        verify(earningsSlotRepository).sumBySellerId(1L);
+
+        when(earningsSlotRepository.sumBySellerId(1L)).thenReturn(120L);
+        sellerRevenueService.flush();
+        assertThat(sellerRevenueService.earnings(1L)).isEqualTo(120);
+        verify(earningsSlotRepository, times(2)).sumBySellerId(1L);
+    }
+
+    @Test
+    void testIgnoresProductsWithoutSeller() {
+        sellerRevenueService.credit(null, 10);
+
+        sellerRevenueService.flush();
+
+        verifyNoInteractions(earningsSlotRepository);
+    }
+
+    private SellerRevenueService newService(ApplicationProperties applicationProperties) {
+        return new SellerRevenueService(
+            earningsSlotRepository,
+            mock(PlatformTransactionManager.class),
+            applicationProperties,
+            new SimpleMeterRegistry()
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package co.mvpmatch.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.service.inventory.Inventory;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WaitingRoomTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+
+    private final Inventory inventory = mock(Inventory.class);
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    @BeforeEach
+    void setUp() {
+        applicationProperties.getWaitingRoom().setThreshold(3);
+        applicationProperties.getWaitingRoom().setRefresh(60000);
+        stock(2L);
+        when(inventory.available(any(), anyLong())).thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @Test
+    void testPurchasesBelowTheThresholdAreNotQueued() {
+        WaitingRoom waitingRoom = newWaitingRoom();
+
+        assertThat(waitingRoom.enter(1L, 1)).isSameAs(WaitingRoom.Ticket.NONE);
+        assertThat(waitingRoom.enter(1L, 1)).isSameAs(WaitingRoom.Ticket.NONE);
+        assertThat(waitingRoom.enter(2L, 1)).isSameAs(WaitingRoom.Ticket.NONE);
+
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    void testOnlyAsManyBuyersAsUnitsAreAdmitted() {
+        WaitingRoom waitingRoom = newWaitingRoom();
+        waitingRoom.enter(1L, 1);
+        waitingRoom.enter(1L, 1);
+
+        WaitingRoom.Ticket first = waitingRoom.enter(1L, 1);
+        WaitingRoom.Ticket second = waitingRoom.enter(1L, 1);
+
+        assertThat(first.position()).isEqualTo(1L);
+        assertThat(second.position()).isEqualTo(2L);
+        assertThatThrownBy(() -> waitingRoom.enter(1L, 1)).isInstanceOf(BadRequestAlertException.class).hasMessage("Amount unavailable");
+        verify(productRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void testUnitsOfAFailedPurchaseGoBackToTheRoom() {
+        WaitingRoom waitingRoom = newWaitingRoom();
+        waitingRoom.enter(1L, 1);
+        waitingRoom.enter(1L, 1);
+        WaitingRoom.Ticket failing = waitingRoom.enter(1L, 2);
+        assertThatThrownBy(() -> waitingRoom.enter(1L, 1)).isInstanceOf(BadRequestAlertException.class);
+
+        failing.leave(false);
+
+        WaitingRoom.Ticket next = waitingRoom.enter(1L, 2);
+        assertThat(next.position()).isEqualTo(3L);
+        next.leave(true);
+        assertThatThrownBy(() -> waitingRoom.enter(1L, 1)).isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void testRestockIsReadAgain() {
+        WaitingRoom waitingRoom = newWaitingRoom();
+        waitingRoom.enter(1L, 1);
+        waitingRoom.enter(1L, 1);
+        WaitingRoom.Ticket buying = waitingRoom.enter(1L, 2);
+        assertThatThrownBy(() -> waitingRoom.enter(1L, 1)).isInstanceOf(BadRequestAlertException.class);
+
+        // the purchase in flight is not committed yet, so the stock read still counts its units
+        stock(12L);
+        waitingRoom.stockChanging(1L);
+
+        assertThat(waitingRoom.enter(1L, 10).position()).isNotNull();
+        buying.leave(true);
+        assertThatThrownBy(() -> waitingRoom.enter(1L, 1)).isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void testOtherBuyersAreNotHeldWhileTheStockIsRead() throws Exception {
+        WaitingRoom waitingRoom = newWaitingRoom();
+        waitingRoom.enter(1L, 1);
+        waitingRoom.enter(1L, 1);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productRepository.findById(1L))
+            .thenAnswer(
+                invocation -> {
+                    reading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(new Product().id(1L).amountAvailable(2L));
+                }
+            );
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<WaitingRoom.Ticket> opening = executor.submit(() -> waitingRoom.enter(1L, 1));
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // the room is not open yet, so the buyer goes on without a ticket instead of waiting for the read
+            assertThat(waitingRoom.enter(1L, 1)).isSameAs(WaitingRoom.Ticket.NONE);
+
+            release.countDown();
+            assertThat(opening.get(5, TimeUnit.SECONDS).position()).isEqualTo(1L);
+            verify(productRepository, times(1)).findById(1L);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testQuantitiesBelowOneAreRejected() {
+        WaitingRoom waitingRoom = newWaitingRoom();
+
+        assertThatThrownBy(() -> waitingRoom.enter(1L, 0)).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> waitingRoom.enter(1L, -3)).isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void testDisabledRoomQueuesNobody() {
+        applicationProperties.getWaitingRoom().setEnabled(false);
+        WaitingRoom waitingRoom = newWaitingRoom();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(waitingRoom.enter(1L, 1)).isSameAs(WaitingRoom.Ticket.NONE);
+        }
+        verify(productRepository, never()).findById(any());
+    }
+
+    private void stock(long amount) {
+        when(productRepository.findById(1L)).thenReturn(Optional.of(new Product().id(1L).amountAvailable(amount)));
+    }
+
+    private WaitingRoom newWaitingRoom() {
+        return new WaitingRoom(productRepository, inventory, applicationProperties, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,149 @@
+package co.mvpmatch.service.change;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ChangeEngineTest {
+
+    private final ChangeEngine changeEngine = new ChangeEngine(5, 10, 20, 50, 100);
+
+    @Test
+    void testMinimumCoinsWhenAllCoinsAvailable() {
+        int[] change = new int[5];
+
+        int coins = changeEngine.makeChange(new int[] { 10, 10, 10, 10, 10 }, 185, change);
+
+        assertThat(coins).isEqualTo(5);
+        assertThat(change).containsExactly(1, 1, 1, 1, 1);
+    }
+
+    @Test
+    void testUsesSmallerCoinsWhenLargerOnesRunOut() {
+        int[] change = new int[5];
+
+        int coins = changeEngine.makeChange(new int[] { 0, 3, 3, 1, 0 }, 60, change);
+
+        assertThat(coins).isEqualTo(2);
+        assertThat(change).containsExactly(0, 1, 0, 1, 0);
+    }
+
+    @Test
+    void testFindsExactChangeWhereGreedyFails() {
+        int[] change = new int[5];
+
+        // greedy takes the 50 and is then stuck with 10 left and only 20s
+        int coins = changeEngine.makeChange(new int[] { 0, 0, 3, 1, 0 }, 60, change);
+
+        assertThat(coins).isEqualTo(3);
+        assertThat(change).containsExactly(0, 0, 3, 0, 0);
+    }
+
+    @Test
+    void testReturnsNoExactChangeAndClearsOutput() {
+        int[] change = { 7, 7, 7, 7, 7 };
+
+        int coins = changeEngine.makeChange(new int[] { 0, 0, 0, 0, 1 }, 35, change);
+
+        assertThat(coins).isEqualTo(ChangeEngine.NO_EXACT_CHANGE);
+        assertThat(change).containsExactly(0, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testRejectsAmountOffTheGrid() {
+        int[] change = new int[5];
+
+        assertThat(changeEngine.makeChange(new int[] { 10, 10, 10, 10, 10 }, 12, change)).isEqualTo(ChangeEngine.NO_EXACT_CHANGE);
+    }
+
+    @Test
+    void testZeroAmountNeedsNoCoins() {
+        int[] change = new int[5];
+
+        assertThat(changeEngine.makeChange(new int[5], 0, change)).isZero();
+        assertThat(change).containsExactly(0, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testDoesNotModifyAvailableCoins() {
+        int[] available = { 2, 2, 2, 2, 2 };
+
+        changeEngine.makeChange(available, 150, new int[5]);
+
+        assertThat(available).containsExactly(2, 2, 2, 2, 2);
+    }
+
+    @Test
+    void testRejectsUnorderedDenominations() {
+        assertThatThrownBy(() -> new ChangeEngine(10, 5)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRecognizesCanonicalCoinSets() {
+        assertThat(changeEngine.isCanonical()).isTrue();
+        assertThat(new ChangeEngine(1, 5, 10, 25, 50, 100).isCanonical()).isTrue();
+        assertThat(new ChangeEngine(1, 3, 4).isCanonical()).isFalse();
+        assertThat(new ChangeEngine(10, 25).isCanonical()).isFalse();
+    }
+
+    @Test
+    void testNonCanonicalCoinSetStillGetsFewestCoins() {
+        int[] change = new int[3];
+
+        // greedy would pay 4 + 1 + 1
+        int coins = new ChangeEngine(1, 3, 4).makeChange(new int[] { 10, 10, 10 }, 6, change);
+
+        assertThat(coins).isEqualTo(2);
+        assertThat(change).containsExactly(0, 2, 0);
+    }
+
+    @Test
+    void testAmountsBeyondTheKeptScratchAreStillSolved() {
+        ChangeEngine engine = new ChangeEngine(1, 3, 4);
+        int[] change = new int[3];
+
+        int amount = ChangeEngine.MAX_KEPT_SCRATCH;
+        assertThat(engine.makeChange(new int[] { 0, 0, amount / 4 }, amount, change)).isEqualTo(amount / 4);
+        assertThat(engine.makeChange(new int[] { 10, 10, 10 }, 6, change)).isEqualTo(2);
+        assertThat(change).containsExactly(0, 2, 0);
+    }
+
+    @Test
+    void testGreedyPathMatchesBruteForce() {
+        int[] available = { 3, 2, 4, 1, 2 };
+        int[] denominations = { 5, 10, 20, 50, 100 };
+        int[] fewest = new int[501];
+        Arrays.fill(fewest, ChangeEngine.NO_EXACT_CHANGE);
+        for (int a = 0; a <= 3; a++) {
+            for (int b = 0; b <= 2; b++) {
+                for (int c = 0; c <= 4; c++) {
+                    for (int d = 0; d <= 1; d++) {
+                        for (int e = 0; e <= 2; e++) {
+                            int amount = 5 * a + 10 * b + 20 * c + 50 * d + 100 * e;
+                            int count = a + b + c + d + e;
+                            if (fewest[amount] == ChangeEngine.NO_EXACT_CHANGE || count < fewest[amount]) {
+                                fewest[amount] = count;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        int[] change = new int[5];
+        for (int amount = 0; amount <= 500; amount += 5) {
+            int coins = changeEngine.makeChange(available, amount, change);
+            assertThat(coins).as("amount %d", amount).isEqualTo(fewest[amount]);
+            if (coins != ChangeEngine.NO_EXACT_CHANGE) {
+                int paid = 0;
+                for (int i = 0; i < change.length; i++) {
+                    assertThat(change[i]).isLessThanOrEqualTo(available[i]);
+                    paid += change[i] * denominations[i];
+                }
+                assertThat(paid).isEqualTo(amount);
+            }
+        }
+    }
+}
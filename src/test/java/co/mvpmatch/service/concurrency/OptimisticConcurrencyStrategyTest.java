@@ -0,0 +1,92 @@
+package co.mvpmatch.service.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class OptimisticConcurrencyStrategyTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private OptimisticConcurrencyStrategy strategy;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getPurchase().setMaxAttempts(3);
+        applicationProperties.getPurchase().setBackoff(1);
+        meterRegistry = new SimpleMeterRegistry();
+        strategy =
+            new OptimisticConcurrencyStrategy(
+                mock(PlatformTransactionManager.class),
+                mock(ProductRepository.class),
+                mock(UserRepository.class),
+                applicationProperties,
+                meterRegistry
+            );
+    }
+
+    @Test
+    void testRetriesUntilTheTransactionCommits() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = strategy.execute(
+            () -> {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new ObjectOptimisticLockingFailureException("Product", 1L);
+                }
+                return "bought";
+            }
+        );
+
+        assertThat(result).isEqualTo("bought");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.counter("vmachine.purchase.retries").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("vmachine.purchase.conflicts", "strategy", "optimistic").count()).isZero();
+    }
+
+    @Test
+    void testReportsTheConflictAfterTheLastAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(
+                () ->
+                    strategy.execute(
+                        () -> {
+                            attempts.incrementAndGet();
+                            throw new ObjectOptimisticLockingFailureException("Product", 1L);
+                        }
+                    )
+            )
+            .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(meterRegistry.counter("vmachine.purchase.conflicts", "strategy", "optimistic").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testDoesNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(
+                () ->
+                    strategy.execute(
+                        () -> {
+                            attempts.incrementAndGet();
+                            throw new IllegalStateException("Not enough money.");
+                        }
+                    )
+            )
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+}
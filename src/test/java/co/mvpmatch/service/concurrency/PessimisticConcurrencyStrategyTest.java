@@ -0,0 +1,66 @@
+package co.mvpmatch.service.concurrency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class PessimisticConcurrencyStrategyTest {
+
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private PessimisticConcurrencyStrategy strategy;
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        strategy =
+            new PessimisticConcurrencyStrategy(
+                mock(PlatformTransactionManager.class),
+                productRepository,
+                mock(UserRepository.class),
+                meterRegistry
+            );
+    }
+
+    @Test
+    void testLoadsProductsWithALockAndTimesIt() {
+        Product product = new Product().id(1L);
+        when(productRepository.findOneForUpdateById(1L)).thenReturn(Optional.of(product));
+
+        assertThat(strategy.loadProduct(1L)).contains(product);
+        assertThat(meterRegistry.timer("vmachine.purchase.lock.wait").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailsFastOnALockedRow() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(
+                () ->
+                    strategy.execute(
+                        () -> {
+                            attempts.incrementAndGet();
+                            throw new CannotAcquireLockException("NOWAIT");
+                        }
+                    )
+            )
+            .isInstanceOf(CannotAcquireLockException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(meterRegistry.counter("vmachine.purchase.conflicts", "strategy", "pessimistic").count()).isEqualTo(1);
+    }
+}
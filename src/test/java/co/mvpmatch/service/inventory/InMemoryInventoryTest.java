@@ -0,0 +1,128 @@
+package co.mvpmatch.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.repository.ProductRepository;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class InMemoryInventoryTest {
+
+    private ProductRepository productRepository;
+
+    private InMemoryInventory inventory;
+
+    private final Product water = new Product().id(1L).amountAvailable(10L);
+
+    @BeforeEach
+    public void setup() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.findAll()).thenReturn(List.of(water, new Product().id(2L).amountAvailable(5L)));
+        inventory = new InMemoryInventory(productRepository, mock(PlatformTransactionManager.class), new ApplicationProperties());
+        inventory.load();
+    }
+
+    @Test
+    void testRebuildsStockFromRows() {
+        assertThat(inventory.available(1L, 10L)).isEqualTo(10L);
+        assertThat(inventory.available(2L, 5L)).isEqualTo(5L);
+    }
+
+    @Test
+    void testTakeWritesNothingUntilTheFlush() {
+        assertThat(inventory.take(water, 7L)).isEqualTo(3L);
+        assertThat(inventory.take(water, 4L)).isEqualTo(Inventory.UNAVAILABLE);
+        assertThat(inventory.take(water, 2L)).isEqualTo(1L);
+        verify(productRepository, never()).addStock(any(), any());
+
+        inventory.flush();
+
+        verify(productRepository).addStock(1L, -9L);
+        verify(productRepository, times(1)).addStock(any(), any());
+    }
+
+    @Test
+    void testSetFlushesTheDifferenceAndLeavesTheRowAlone() {
+        long stored = inventory.set(water, 20L);
+        inventory.flush();
+
+        assertThat(stored).isEqualTo(10L);
+        assertThat(inventory.available(1L, stored)).isEqualTo(20L);
+        verify(productRepository).addStock(1L, 10L);
+    }
+
+    @Test
+    void testRolledBackTakeGivesTheUnitsBackAndFlushesNothing() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventory.take(water, 4L);
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        inventory.flush();
+
+        assertThat(inventory.available(1L, 10L)).isEqualTo(10L);
+        verify(productRepository, never()).addStock(any(), any());
+    }
+
+    @Test
+    void testFailedFlushKeepsTheChangesForTheNextOne() {
+        inventory.take(water, 3L);
+        when(productRepository.addStock(1L, -3L)).thenThrow(new IllegalStateException("database down")).thenReturn(1);
+
+        assertThatThrownBy(() -> inventory.flush()).isInstanceOf(IllegalStateException.class);
+        inventory.flush();
+        inventory.flush();
+
+        verify(productRepository, times(2)).addStock(1L, -3L);
+    }
+
+    @Test
+    void testConcurrentTakesNeverOversell() throws Exception {
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 100; i++) {
+            executor.submit(
+                () -> {
+                    start.await();
+                    if (inventory.take(water, 1L) != Inventory.UNAVAILABLE) {
+                        taken.incrementAndGet();
+                    }
+                    return null;
+                }
+            );
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(taken.get()).isEqualTo(10);
+        assertThat(inventory.available(1L, 10L)).isZero();
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+}
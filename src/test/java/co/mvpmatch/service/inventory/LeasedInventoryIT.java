@@ -0,0 +1,232 @@
+package co.mvpmatch.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import co.mvpmatch.IntegrationTest;
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.StockLease;
+import co.mvpmatch.domain.User;
+import co.mvpmatch.repository.ProductRepository;
+import co.mvpmatch.repository.StockLeaseRepository;
+import co.mvpmatch.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Integration tests for {@link LeasedInventory}, with two nodes selling the same product out of one database.
+ */
+@IntegrationTest
+class LeasedInventoryIT {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StockLeaseRepository stockLeaseRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CoinSet coinSet;
+
+    private TransactionTemplate transactionTemplate;
+
+    private User seller;
+
+    private Product product;
+
+    private LeasedInventory nodeA;
+
+    private LeasedInventory nodeB;
+
+    @BeforeEach
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        seller = new User();
+        seller.setUsername("seller-lease-it");
+        seller.setPassword(RandomStringUtils.random(60));
+        seller.setRole("SELLER");
+        seller.setDeposit(new CoinVector(coinSet));
+        userRepository.saveAndFlush(seller);
+        product = productRepository.saveAndFlush(new Product().name("water").cost(10L).amountAvailable(10L).seller(seller));
+        nodeA = newNode("node-a", 30000, 15000);
+        nodeB = newNode("node-b", 30000, 15000);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        stockLeaseRepository.deleteAll();
+        productRepository.deleteById(product.getId());
+        userRepository.delete(seller);
+    }
+
+    @Test
+    void testNodesSellFromTheirOwnBlocks() {
+        assertThat(take(nodeA, 1)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(take(nodeB, 2)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stored()).isEqualTo(2L);
+
+        // out of node A's lease, the row is left alone
+        assertThat(take(nodeA, 3)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stored()).isEqualTo(2L);
+
+        // node A leases what is left on the row, node B cannot get more than its lease
+        assertThat(take(nodeA, 1)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stored()).isZero();
+        assertThat(take(nodeB, 3)).isEqualTo(Inventory.UNAVAILABLE);
+        assertThat(take(nodeB, 2)).isNotEqualTo(Inventory.UNAVAILABLE);
+
+        nodeA.giveBackAll();
+        nodeB.giveBackAll();
+
+        assertThat(stored()).isEqualTo(1L);
+        assertThat(stockLeaseRepository.count()).isZero();
+    }
+
+    @Test
+    void testARolledBackPurchaseGoesBackToTheLease() {
+        take(nodeA, 1);
+
+        transactionTemplate.executeWithoutResult(
+            status -> {
+                nodeA.take(productRepository.findById(product.getId()).get(), 2);
+                status.setRollbackOnly();
+            }
+        );
+
+        assertThat(nodeA.available(product.getId(), stored())).isEqualTo(9L);
+        nodeA.giveBackAll();
+        assertThat(stored()).isEqualTo(9L);
+    }
+
+    @Test
+    void testTheLeaseOfACrashedNodeIsGivenBackOnceExpired() throws InterruptedException {
+        LeasedInventory crashing = newNode("node-crashing", 0, 15000);
+        LeasedInventory reclaiming = newNode("node-reclaiming", 30000, 10);
+        take(crashing, 1);
+        assertThat(stored()).isEqualTo(6L);
+        Thread.sleep(30);
+
+        reclaiming.maintain();
+
+        assertThat(stored()).isEqualTo(9L);
+        assertThat(stockLeaseRepository.count()).isZero();
+        // the crashed node finds its lease gone and leases a new block
+        assertThat(take(crashing, 1)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stored()).isEqualTo(5L);
+    }
+
+    @Test
+    void testALateNodeWritesBackItsSalesBeforeItsLeaseIsGivenBack() throws InterruptedException {
+        LeasedInventory late = newNode("node-late", 200, 15000);
+        take(late, 1);
+        take(late, 2);
+        Thread.sleep(300);
+
+        nodeB.maintain();
+
+        // still within the grace period, so the units the late node sold are not offered again
+        assertThat(stored()).isEqualTo(6L);
+        assertThat(stockLeaseRepository.findAll()).extracting(StockLease::getRemaining).containsExactly(3L);
+        late.maintain();
+        assertThat(stockLeaseRepository.findAll()).extracting(StockLease::getRemaining).containsExactly(1L);
+        late.giveBackAll();
+        assertThat(stored()).isEqualTo(7L);
+    }
+
+    @Test
+    void testANodeStopsSellingFromALeaseWhoseRowIsGone() {
+        take(nodeA, 1);
+        transactionTemplate.executeWithoutResult(status -> stockLeaseRepository.deleteAll());
+
+        nodeA.maintain();
+
+        assertThat(nodeA.available(product.getId(), stored())).isEqualTo(stored());
+        assertThat(take(nodeA, 1)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stockLeaseRepository.findAll()).extracting(StockLease::getRemaining).containsExactly(3L);
+    }
+
+    @Test
+    void testSettingTheStockRevokesTheLeases() {
+        take(nodeA, 1);
+        take(nodeB, 1);
+
+        transactionTemplate.executeWithoutResult(
+            status -> {
+                Product stored = productRepository.findById(product.getId()).get();
+                stored.setAmountAvailable(nodeA.set(stored, 20L));
+            }
+        );
+
+        assertThat(stockLeaseRepository.count()).isZero();
+        assertThat(stored()).isEqualTo(20L);
+        assertThat(nodeA.available(product.getId(), 20L)).isEqualTo(20L);
+        // node B finds its lease revoked at its next renewal
+        take(nodeB, 1);
+        nodeB.maintain();
+        assertThat(nodeB.available(product.getId(), 20L)).isEqualTo(20L);
+        assertThat(take(nodeB, 1)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stored()).isEqualTo(16L);
+    }
+
+    @Test
+    void testSalesAreWrittenBackToTheLeaseOnRenewal() {
+        take(nodeA, 1);
+        take(nodeA, 2);
+        assertThat(stockLeaseRepository.findAll()).extracting(StockLease::getRemaining).containsExactly(3L);
+
+        nodeA.maintain();
+
+        assertThat(stockLeaseRepository.findAll()).extracting(StockLease::getRemaining).containsExactly(1L);
+        nodeA.giveBackAll();
+        assertThat(stored()).isEqualTo(7L);
+    }
+
+    @Test
+    void testARestartedNodeTakesBackItsLeases() {
+        take(nodeA, 1);
+        take(nodeA, 1);
+        nodeA.maintain();
+
+        LeasedInventory restarted = newNode("node-a", 30000, 15000);
+        restarted.recover();
+
+        assertThat(restarted.available(product.getId(), stored())).isEqualTo(8L);
+        assertThat(take(restarted, 2)).isNotEqualTo(Inventory.UNAVAILABLE);
+        assertThat(stored()).isEqualTo(6L);
+        restarted.giveBackAll();
+        assertThat(stored()).isEqualTo(6L);
+        assertThat(stockLeaseRepository.count()).isZero();
+    }
+
+    private long take(LeasedInventory node, long quantity) {
+        return transactionTemplate.execute(status -> node.take(productRepository.findById(product.getId()).get(), quantity));
+    }
+
+    private long stored() {
+        return productRepository.findById(product.getId()).get().getAmountAvailable();
+    }
+
+    private LeasedInventory newNode(String name, long duration, long grace) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getInventory().getLease().setNode(name);
+        applicationProperties.getInventory().getLease().setBlockSize(4);
+        applicationProperties.getInventory().getLease().setDuration(duration);
+        applicationProperties.getInventory().getLease().setRenewDelay(grace / 2);
+        applicationProperties.getInventory().getLease().setGrace(grace);
+        return new LeasedInventory(productRepository, stockLeaseRepository, transactionManager, applicationProperties, new SimpleMeterRegistry());
+    }
+}
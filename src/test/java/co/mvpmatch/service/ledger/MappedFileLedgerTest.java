@@ -0,0 +1,158 @@
+package co.mvpmatch.service.ledger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.CoinSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+class MappedFileLedgerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testFoldsTheMovementsIntoBalances() throws IOException {
+        MappedFileLedger ledger = open(1024);
+
+        ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 70, new int[] { 0, 0, 1, 1, 0 });
+        ledger.append(Ledger.Type.BUY, 1L, 7L, 2, 40, new int[] { 0, 1, -1, 0, 0 });
+        ledger.append(Ledger.Type.RESET, 1L, null, 0, 60, new int[] { 0, -1, 0, -1, 0 });
+
+        assertThat(ledger.sequence()).isEqualTo(4);
+        assertThat(ledger.deposit(1L)).containsExactly(0, 0, 0, 0, 0);
+        assertThat(ledger.stockChange(7L)).isEqualTo(-2);
+        ledger.close();
+    }
+
+    @Test
+    void testReplaysTheJournalOnStartup() throws IOException {
+        MappedFileLedger ledger = open(1024);
+        ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 70, new int[] { 0, 0, 1, 1, 0 });
+        ledger.append(Ledger.Type.BUY, 1L, 7L, 1, 50, new int[] { 0, 0, 0, -1, 0 });
+        ledger.close();
+        deleteSnapshots();
+
+        MappedFileLedger reopened = open(1024);
+
+        assertThat(reopened.sequence()).isEqualTo(3);
+        assertThat(reopened.deposit(1L)).containsExactly(0, 0, 1, 0, 0);
+        assertThat(reopened.stockChange(7L)).isEqualTo(-1);
+        reopened.append(Ledger.Type.DEPOSIT, 1L, null, 0, 5, new int[] { 1, 0, 0, 0, 0 });
+        assertThat(reopened.deposit(1L)).containsExactly(1, 0, 1, 0, 0);
+        reopened.close();
+    }
+
+    @Test
+    void testReplaysOnlyTheRecordsAfterTheSnapshot() throws IOException {
+        MappedFileLedger ledger = open(1024);
+        ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 20, new int[] { 0, 0, 1, 0, 0 });
+        ledger.snapshot();
+        ledger.append(Ledger.Type.DEPOSIT, 2L, null, 0, 10, new int[] { 0, 1, 0, 0, 0 });
+        ledger.close();
+
+        MappedFileLedger reopened = open(1024);
+
+        assertThat(reopened.sequence()).isEqualTo(3);
+        assertThat(reopened.deposit(1L)).containsExactly(0, 0, 1, 0, 0);
+        assertThat(reopened.deposit(2L)).containsExactly(0, 1, 0, 0, 0);
+        reopened.close();
+    }
+
+    @Test
+    void testRollsOverToANewSegment() throws IOException {
+        MappedFileLedger ledger = open(2);
+        for (int i = 0; i < 5; i++) {
+            ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 5, new int[] { 1, 0, 0, 0, 0 });
+        }
+        ledger.close();
+        deleteSnapshots();
+
+        assertThat(files("journal-")).hasSize(3);
+        MappedFileLedger reopened = open(2);
+        assertThat(reopened.sequence()).isEqualTo(6);
+        assertThat(reopened.deposit(1L)).containsExactly(5, 0, 0, 0, 0);
+        reopened.close();
+    }
+
+    @Test
+    void testStopsAtATornRecord() throws IOException {
+        MappedFileLedger ledger = open(1024);
+        ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 5, new int[] { 1, 0, 0, 0, 0 });
+        ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 5, new int[] { 1, 0, 0, 0, 0 });
+        ledger.close();
+        deleteSnapshots();
+        try (FileChannel journal = FileChannel.open(directory.resolve(files("journal-").get(0)), StandardOpenOption.WRITE)) {
+            journal.write(ByteBuffer.wrap(new byte[] { 42 }), MappedFileLedger.RECORD_SIZE + 60);
+        }
+
+        MappedFileLedger reopened = open(1024);
+
+        assertThat(reopened.sequence()).isEqualTo(2);
+        assertThat(reopened.deposit(1L)).containsExactly(1, 0, 0, 0, 0);
+        reopened.close();
+    }
+
+    @Test
+    void testCommittedMovementsThatCannotBeJournaledAreCountedNotThrown() throws IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MappedFileLedger ledger = open(1, meterRegistry);
+        ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 5, new int[] { 1, 0, 0, 0, 0 });
+        // the next record needs a new segment, which cannot be created once the directory is gone
+        for (String journal : files("journal-")) {
+            Files.delete(directory.resolve(journal));
+        }
+        Files.delete(directory);
+        Files.createFile(directory);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ledger.append(Ledger.Type.DEPOSIT, 1L, null, 0, 5, new int[] { 1, 0, 0, 0, 0 });
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(meterRegistry.counter("vmachine.ledger.failures").count()).isEqualTo(1);
+        assertThat(ledger.sequence()).isEqualTo(2);
+        Files.delete(directory);
+        Files.createDirectory(directory);
+        ledger.close();
+    }
+
+    private MappedFileLedger open(int segmentRecords) {
+        return open(segmentRecords, new SimpleMeterRegistry());
+    }
+
+    private MappedFileLedger open(int segmentRecords, SimpleMeterRegistry meterRegistry) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getLedger().setDirectory(directory.toString());
+        applicationProperties.getLedger().setSegmentSize((long) segmentRecords * MappedFileLedger.RECORD_SIZE);
+        return new MappedFileLedger(applicationProperties, new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000), meterRegistry);
+    }
+
+    private void deleteSnapshots() throws IOException {
+        for (String snapshot : files("snapshot-")) {
+            Files.delete(directory.resolve(snapshot));
+        }
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package co.mvpmatch.service.purchase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.service.BuyerService;
+import co.mvpmatch.service.command.CommandRejectedException;
+import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.PurchaseOrder;
+import co.mvpmatch.service.dto.PurchaseTicket;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PurchasePipelineTest {
+
+    private final BuyerService buyerService = mock(BuyerService.class);
+
+    private PurchasePipeline pipeline;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void testRunsQueuedPurchasesInOneBatch() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        when(buyerService.buy(anyString(), anyLong(), anyInt()))
+            .thenAnswer(
+                invocation -> {
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return response(invocation.getArgument(2));
+                }
+            );
+        when(buyerService.buyBatch(any()))
+            .thenAnswer(
+                invocation -> {
+                    List<PurchaseOrder> orders = invocation.getArgument(0);
+                    batchSizes.add(orders.size());
+                    List<BuyResponse> responses = new ArrayList<>();
+                    for (PurchaseOrder order : orders) {
+                        responses.add(response(order.getQuantity()));
+                    }
+                    return responses;
+                }
+            );
+        pipeline = newPipeline(1, 16);
+
+        // the first purchase keeps the worker busy while the others queue up
+        PurchaseTicket first = pipeline.submit("buyer", 1L, 1);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        List<PurchaseTicket> queued = new ArrayList<>();
+        for (int quantity = 2; quantity <= 4; quantity++) {
+            queued.add(pipeline.submit("buyer", 1L, quantity));
+        }
+        release.countDown();
+
+        assertThat(outcome("buyer", first).getResult().getQuantity()).isEqualTo(1);
+        for (int i = 0; i < queued.size(); i++) {
+            PurchaseTicket ticket = outcome("buyer", queued.get(i));
+            assertThat(ticket.getStatus()).isEqualTo(PurchaseTicket.Status.COMPLETED);
+            assertThat(ticket.getResult().getQuantity()).isEqualTo(i + 2);
+        }
+        assertThat(batchSizes).containsExactly(3);
+    }
+
+    @Test
+    void testFailedBatchIsRunAgainOneByOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(buyerService.buyBatch(any())).thenThrow(new BadRequestAlertException("Amount unavailable", "", ""));
+        when(buyerService.buy(anyString(), anyLong(), anyInt()))
+            .thenAnswer(
+                invocation -> {
+                    started.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return response(invocation.getArgument(2));
+                }
+            );
+        doThrow(new BadRequestAlertException("Amount unavailable", "", "")).when(buyerService).buy(anyString(), eq(2L), anyInt());
+        pipeline = newPipeline(1, 16);
+
+        PurchaseTicket first = pipeline.submit("buyer", 1L, 1);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        PurchaseTicket failing = pipeline.submit("buyer", 2L, 1);
+        PurchaseTicket passing = pipeline.submit("buyer", 1L, 3);
+        release.countDown();
+
+        assertThat(outcome("buyer", first).getStatus()).isEqualTo(PurchaseTicket.Status.COMPLETED);
+        PurchaseTicket failed = outcome("buyer", failing);
+        assertThat(failed.getStatus()).isEqualTo(PurchaseTicket.Status.FAILED);
+        assertThat(failed.getError()).isEqualTo("Amount unavailable");
+        assertThat(outcome("buyer", passing).getResult().getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void testRejectsWhenTheQueueIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(buyerService.buy(anyString(), anyLong(), anyInt()))
+            .thenAnswer(
+                invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return response(1);
+                }
+            );
+        pipeline = newPipeline(1, 1);
+        try {
+            pipeline.submit("buyer", 1L, 1);
+            assertThatThrownBy(
+                    () -> {
+                        for (int i = 0; i < 3; i++) {
+                            pipeline.submit("buyer", 1L, 1);
+                        }
+                    }
+                )
+                .isInstanceOf(CommandRejectedException.class);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testTicketsBelongToTheirBuyer() throws Exception {
+        when(buyerService.buy(anyString(), anyLong(), anyInt())).thenReturn(response(1));
+        pipeline = newPipeline(1, 16);
+
+        PurchaseTicket ticket = pipeline.submit("buyer", 1L, 1);
+
+        assertThat(outcome("buyer", ticket).getStatus()).isEqualTo(PurchaseTicket.Status.COMPLETED);
+        assertThat(pipeline.find("other", ticket.getId())).isEmpty();
+        assertThat(pipeline.completion("other", ticket.getId())).isEmpty();
+    }
+
+    @Test
+    void testRejectsAnInvalidPurchase() {
+        pipeline = newPipeline(1, 16);
+
+        assertThatThrownBy(() -> pipeline.submit("buyer", 1L, 0)).isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void testShutdownFailsPurchasesNoWorkerTook() throws Exception {
+        pipeline = newStoppedPipeline(1, 16);
+        PurchaseTicket queued = pipeline.submit("buyer", 1L, 1);
+
+        pipeline.shutdown();
+
+        PurchaseTicket failed = outcome("buyer", queued);
+        assertThat(failed.getStatus()).isEqualTo(PurchaseTicket.Status.FAILED);
+        assertThat(failed.getError()).isEqualTo("Shutting down");
+        assertThatThrownBy(() -> pipeline.submit("buyer", 1L, 1)).isInstanceOf(CommandRejectedException.class);
+        verify(buyerService, never()).buy(anyString(), anyLong(), anyInt());
+    }
+
+    private PurchaseTicket outcome(String userName, PurchaseTicket ticket) throws Exception {
+        return pipeline.completion(userName, ticket.getId()).get().get(5, TimeUnit.SECONDS);
+    }
+
+    private PurchasePipeline newPipeline(int workers, int capacity) {
+        PurchasePipeline pipeline = newStoppedPipeline(workers, capacity);
+        pipeline.start();
+        return pipeline;
+    }
+
+    private PurchasePipeline newStoppedPipeline(int workers, int capacity) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAsyncPurchase().setWorkers(workers);
+        applicationProperties.getAsyncPurchase().setCapacity(capacity);
+        return new PurchasePipeline(buyerService, applicationProperties, new SimpleMeterRegistry());
+    }
+
+    private static BuyResponse response(int quantity) {
+        BuyResponse response = new BuyResponse();
+        response.setQuantity(quantity);
+        return response;
+    }
+}
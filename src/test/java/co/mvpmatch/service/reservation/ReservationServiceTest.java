@@ -0,0 +1,206 @@
+package co.mvpmatch.service.reservation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.ReservationHold;
+import co.mvpmatch.repository.ReservationHoldRepository;
+import co.mvpmatch.service.BuyerService;
+import co.mvpmatch.service.CoinFloatService;
+import co.mvpmatch.service.FastRejectCache;
+import co.mvpmatch.service.command.CommandRejectedException;
+import co.mvpmatch.service.concurrency.ConcurrencyStrategy;
+import co.mvpmatch.service.dto.BuyResponse;
+import co.mvpmatch.service.dto.Reservation;
+import co.mvpmatch.service.inventory.Inventory;
+import co.mvpmatch.web.rest.errors.BadRequestAlertException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class ReservationServiceTest {
+
+    private final BuyerService buyerService = mock(BuyerService.class);
+
+    private final ConcurrencyStrategy concurrencyStrategy = mock(ConcurrencyStrategy.class);
+
+    private final Inventory inventory = mock(Inventory.class);
+
+    private final ReservationHoldRepository reservationHoldRepository = mock(ReservationHoldRepository.class);
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    private ReservationService reservationService;
+
+    @BeforeEach
+    void setUp() {
+        when(concurrencyStrategy.execute(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(concurrencyStrategy.loadProduct(1L)).thenReturn(Optional.of(new Product().id(1L).amountAvailable(10L)));
+        when(concurrencyStrategy.loadProduct(2L)).thenReturn(Optional.of(new Product().id(2L).amountAvailable(10L)));
+        when(inventory.take(any(), anyLong())).thenReturn(5L);
+        when(reservationHoldRepository.release(any())).thenReturn(1);
+        applicationProperties.getReservation().setMaxHold(60);
+        applicationProperties.getReservation().setCapacity(3);
+        reservationService = newService();
+    }
+
+    @Test
+    void testExpiredHoldsAreGivenBackTogether() {
+        reservationService.reserve("buyer", 1L, 2, 1L);
+        reservationService.reserve("other", 1L, 3, 1L);
+        reservationService.reserve("buyer", 2L, 1, 5L);
+        verify(inventory, never()).giveBack(any(), anyLong());
+
+        reservationService.expire(System.currentTimeMillis() + 2000);
+
+        verify(inventory).giveBack(1L, 5L);
+        verify(inventory, never()).giveBack(eq(2L), anyLong());
+
+        reservationService.expire(System.currentTimeMillis() + 6000);
+
+        verify(inventory).giveBack(2L, 1L);
+    }
+
+    @Test
+    void testCheckoutBuysTheHeldUnits() {
+        BuyResponse bought = new BuyResponse();
+        when(buyerService.buyReserved(eq("buyer"), eq(1L), eq(2), any())).thenReturn(bought);
+        Reservation reservation = reservationService.reserve("buyer", 1L, 2, 1L);
+
+        assertThat(reservationService.checkout("buyer", reservation.getId())).isSameAs(bought);
+        assertThatThrownBy(() -> reservationService.checkout("buyer", reservation.getId())).isInstanceOf(BadRequestAlertException.class);
+
+        reservationService.expire(System.currentTimeMillis() + 2000);
+        verify(inventory, never()).giveBack(any(), anyLong());
+    }
+
+    @Test
+    void testFailedCheckoutKeepsTheUnitsHeld() {
+        when(buyerService.buyReserved(eq("buyer"), eq(1L), eq(2), any())).thenThrow(new BadRequestAlertException("Not enough money.", "", ""));
+        Reservation reservation = reservationService.reserve("buyer", 1L, 2, 1L);
+
+        assertThatThrownBy(() -> reservationService.checkout("buyer", reservation.getId())).isInstanceOf(BadRequestAlertException.class);
+
+        assertThat(reservationService.find("buyer", reservation.getId())).isPresent();
+        reservationService.expire(System.currentTimeMillis() + 2000);
+        verify(inventory).giveBack(1L, 2L);
+        assertThat(reservationService.find("buyer", reservation.getId())).isEmpty();
+    }
+
+    @Test
+    void testCancelGivesBackAtOnce() {
+        Reservation reservation = reservationService.reserve("buyer", 1L, 2, 30L);
+
+        reservationService.cancel("buyer", reservation.getId());
+
+        verify(inventory).giveBack(1L, 2L);
+        assertThat(reservationService.find("buyer", reservation.getId())).isEmpty();
+    }
+
+    @Test
+    void testHoldsWhoseRowIsGoneAreNotGivenBack() {
+        Reservation reservation = reservationService.reserve("buyer", 1L, 2, 30L);
+        verify(reservationHoldRepository).save(any());
+        when(reservationHoldRepository.release(reservation.getId())).thenReturn(0);
+
+        reservationService.cancel("buyer", reservation.getId());
+
+        verify(inventory, never()).giveBack(any(), anyLong());
+    }
+
+    @Test
+    void testHoldsLeftInTheTableAreTakenBackOnStartup() {
+        long now = System.currentTimeMillis();
+        when(reservationHoldRepository.findAll())
+            .thenReturn(
+                List.of(
+                    new ReservationHold("held", "buyer", 1L, 2, Instant.ofEpochMilli(now + 30000)),
+                    new ReservationHold("expired", "other", 2L, 1, Instant.ofEpochMilli(now - 1000))
+                )
+            );
+
+        reservationService.recover();
+
+        verify(inventory).giveBack(2L, 1L);
+        verify(inventory, never()).giveBack(eq(1L), anyLong());
+        assertThat(reservationService.find("buyer", "held")).isPresent();
+        reservationService.expire(now + 31000);
+        verify(inventory).giveBack(1L, 2L);
+    }
+
+    @Test
+    void testReservationOfAnotherBuyerIsNotFound() {
+        Reservation reservation = reservationService.reserve("buyer", 1L, 2, 30L);
+
+        assertThat(reservationService.find("other", reservation.getId())).isEmpty();
+        assertThatThrownBy(() -> reservationService.checkout("other", reservation.getId())).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> reservationService.cancel("other", reservation.getId())).isInstanceOf(BadRequestAlertException.class);
+        assertThat(reservationService.find("buyer", reservation.getId())).isPresent();
+    }
+
+    @Test
+    void testUnavailableStockIsNotHeld() {
+        when(inventory.take(any(), anyLong())).thenReturn(Inventory.UNAVAILABLE);
+
+        assertThatThrownBy(() -> reservationService.reserve("buyer", 1L, 20, 30L))
+            .isInstanceOf(BadRequestAlertException.class)
+            .hasMessage("Amount unavailable");
+
+        reservationService.giveBackAll();
+        verify(inventory, never()).giveBack(any(), anyLong());
+    }
+
+    @Test
+    void testHoldLongerThanAllowedIsRejected() {
+        assertThatThrownBy(() -> reservationService.reserve("buyer", 1L, 1, 61L)).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> reservationService.reserve("buyer", 1L, 0, 30L)).isInstanceOf(BadRequestAlertException.class);
+        verify(inventory, never()).take(any(), anyLong());
+    }
+
+    @Test
+    void testTooManyHoldsAreRejected() {
+        for (int i = 0; i < 3; i++) {
+            reservationService.reserve("buyer", 1L, 1, 30L);
+        }
+
+        assertThatThrownBy(() -> reservationService.reserve("buyer", 1L, 1, 30L)).isInstanceOf(CommandRejectedException.class);
+    }
+
+    @Test
+    void testShutdownGivesBackEveryHold() {
+        reservationService.reserve("buyer", 1L, 2, 30L);
+        reservationService.reserve("other", 2L, 1, 30L);
+
+        reservationService.giveBackAll();
+
+        verify(inventory).giveBack(1L, 2L);
+        verify(inventory).giveBack(2L, 1L);
+    }
+
+    private ReservationService newService() {
+        return new ReservationService(
+            buyerService,
+            concurrencyStrategy,
+            inventory,
+            new FastRejectCache(applicationProperties, mock(CoinFloatService.class), new SimpleMeterRegistry()),
+            reservationHoldRepository,
+            mock(PlatformTransactionManager.class),
+            applicationProperties,
+            new SimpleMeterRegistry()
+        );
+    }
+}
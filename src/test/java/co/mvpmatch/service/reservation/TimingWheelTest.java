@@ -0,0 +1,97 @@
+package co.mvpmatch.service.reservation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    @Test
+    void testItemExpiresAtTheTickOfItsDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 3, 1000);
+        wheel.schedule("a", 1025);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(1029, expired::add);
+        assertThat(expired).isEmpty();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        wheel.advance(1030, expired::add);
+        assertThat(expired).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testPassedDeadlineExpiresAtTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 3, 0);
+        wheel.advance(500, item -> {});
+        wheel.schedule("late", 100);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(500, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(510, expired::add);
+        assertThat(expired).containsExactly("late");
+    }
+
+    @Test
+    void testEveryItemExpiresOnTimeAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 3, 0);
+        Random random = new Random(42);
+        Map<Long, Long> expiredAt = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            wheel.schedule((long) i, 1 + random.nextInt(300_000));
+        }
+
+        for (long now = 0; now <= 301_000; now += 997) {
+            long at = now;
+            wheel.advance(now, item -> expiredAt.put(item, at));
+        }
+
+        random = new Random(42);
+        for (long i = 0; i < 2000; i++) {
+            long deadline = 1 + random.nextInt(300_000);
+            assertThat(expiredAt.get(i)).isBetween(deadline, deadline + 996);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void testDeadlineBeyondTheHighestLevelWaitsInTheOverflow() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 1, 0);
+        wheel.advance(60, item -> {});
+        wheel.schedule("far", 1000);
+        wheel.schedule("across", 70);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(69, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(70, expired::add);
+        assertThat(expired).containsExactly("across");
+        wheel.advance(999, expired::add);
+        assertThat(expired).containsExactly("across");
+        wheel.advance(1000, expired::add);
+        assertThat(expired).containsExactly("across", "far");
+    }
+
+    @Test
+    void testCancelledItemDoesNotExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 2, 0);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 5000);
+        TimingWheel.Timeout<String> kept = wheel.schedule("kept", 5000);
+
+        assertThat(wheel.cancel(cancelled)).isTrue();
+        assertThat(wheel.cancel(cancelled)).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(5000, expired::add);
+        assertThat(expired).containsExactly("kept");
+        assertThat(wheel.cancel(kept)).isFalse();
+    }
+}
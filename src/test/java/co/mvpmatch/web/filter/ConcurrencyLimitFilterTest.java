@@ -0,0 +1,70 @@
+package co.mvpmatch.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import co.mvpmatch.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getConcurrencyLimit().setInitialLimit(1);
+        applicationProperties.getConcurrencyLimit().setMinLimit(1);
+        applicationProperties.getConcurrencyLimit().setRetryAfter(2);
+        filter = new ConcurrencyLimitFilter(applicationProperties, meterRegistry);
+    }
+
+    @Test
+    void testRequestWithinTheLimitGoesThrough() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/buy"), response, chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(filter.getLimit().getInFlight()).isZero();
+        assertThat(meterRegistry.get("vmachine.concurrency.in-flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void testRequestOverTheLimitGetsA503() throws Exception {
+        filter.getLimit().tryAcquire();
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/deposit"), response, chain);
+
+        assertThat(chain.getRequest()).isNull();
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(response.getContentAsString()).contains("error.overloaded");
+        assertThat(meterRegistry.get("vmachine.concurrency.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testOtherRoutesAreNotLimited() throws Exception {
+        filter.getLimit().tryAcquire();
+
+        for (String path : new String[] { "/api/products", "/api/purchases", "/management/health" }) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(new MockHttpServletRequest("GET", path), new MockHttpServletResponse(), chain);
+            assertThat(chain.getRequest()).isNotNull();
+        }
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/buy/cart"), new MockHttpServletResponse(), chain);
+        assertThat(chain.getRequest()).isNull();
+    }
+}
@@ -0,0 +1,85 @@
+package co.mvpmatch.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class GradientLimitTest {
+
+    @Test
+    void testRequestsBeyondTheLimitAreTurnedAway() {
+        GradientLimit limit = new GradientLimit(2, 1, 10, 0.2, 600);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+
+        limit.release(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void testLimitFollowsTheLatency() {
+        GradientLimit limit = new GradientLimit(20, 4, 200, 0.2, 100);
+
+        saturate(limit, 1, 100);
+        int healthy = limit.getLimit();
+        assertThat(healthy).isGreaterThan(20);
+
+        saturate(limit, 20, 15);
+        int slow = limit.getLimit();
+        assertThat(slow).isLessThan(healthy / 2);
+
+        saturate(limit, 1, 100);
+        assertThat(limit.getLimit()).isGreaterThan(slow);
+    }
+
+    @Test
+    void testLastingLatencyBecomesTheNewNormal() {
+        GradientLimit limit = new GradientLimit(20, 4, 200, 0.2, 100);
+        saturate(limit, 1, 100);
+        int healthy = limit.getLimit();
+
+        saturate(limit, 20, 15);
+        int slow = limit.getLimit();
+        saturate(limit, 20, 500);
+
+        assertThat(limit.getLimit()).isGreaterThan(slow).isLessThanOrEqualTo(healthy);
+    }
+
+    @Test
+    void testLimitDoesNotGrowWhileMostOfItIsUnused() {
+        GradientLimit limit = new GradientLimit(20, 4, 200, 0.2, 100);
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void testLimitStaysWithinItsBounds() {
+        GradientLimit limit = new GradientLimit(20, 10, 30, 0.5, 200);
+
+        saturate(limit, 1, 500);
+        assertThat(limit.getLimit()).isEqualTo(30);
+
+        saturate(limit, 1000, 25);
+        assertThat(limit.getLimit()).isEqualTo(10);
+    }
+
+    /**
+     * Keeps the limit full of requests, letting one out with the latency at a time; they stay in flight after.
+     */
+    private static void saturate(GradientLimit limit, long rttMillis, int samples) {
+        for (int i = 0; i < samples; i++) {
+            while (limit.tryAcquire()) {}
+            limit.release(TimeUnit.MILLISECONDS.toNanos(rttMillis));
+        }
+    }
+}
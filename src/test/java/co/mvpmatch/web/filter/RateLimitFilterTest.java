@@ -0,0 +1,138 @@
+package co.mvpmatch.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import co.mvpmatch.config.ApplicationProperties;
+import co.mvpmatch.security.AuthoritiesConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+class RateLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties.RateLimit.Rule deposit = new ApplicationProperties.RateLimit.Rule();
+        deposit.setRole(AuthoritiesConstants.BUYER);
+        deposit.setMethods(List.of("POST"));
+        deposit.setPath("/api/deposit");
+        deposit.setCapacity(3);
+        deposit.setPerSecond(0.5);
+        ApplicationProperties.RateLimit.Rule products = new ApplicationProperties.RateLimit.Rule();
+        products.setRole(AuthoritiesConstants.SELLER);
+        products.setMethods(List.of("put"));
+        products.setPath("/api/products/**");
+        products.setCapacity(1);
+        products.setPerSecond(1000);
+        applicationProperties.getRateLimit().getRules().add(deposit);
+        applicationProperties.getRateLimit().getRules().add(products);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testBurstBeyondTheCapacityGetsA429() throws Exception {
+        RateLimitFilter filter = newFilter();
+        login("buyer", AuthoritiesConstants.BUYER);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(send(filter, "POST", "/api/deposit").getStatus()).isEqualTo(200);
+        }
+        MockHttpServletResponse response = send(filter, "POST", "/api/deposit");
+
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(response.getContentAsString()).contains("error.ratelimited");
+        assertThat(meterRegistry.get("vmachine.rate-limit.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testEachUserHasItsOwnBucket() throws Exception {
+        RateLimitFilter filter = newFilter();
+        login("buyer", AuthoritiesConstants.BUYER);
+        for (int i = 0; i < 3; i++) {
+            send(filter, "POST", "/api/deposit");
+        }
+        assertThat(send(filter, "POST", "/api/deposit").getStatus()).isEqualTo(429);
+
+        login("other", AuthoritiesConstants.BUYER);
+
+        assertThat(send(filter, "POST", "/api/deposit").getStatus()).isEqualTo(200);
+        assertThat(meterRegistry.get("vmachine.rate-limit.buckets").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void testRequestsOutsideTheRulesAreNotLimited() throws Exception {
+        RateLimitFilter filter = newFilter();
+        login("seller", AuthoritiesConstants.SELLER);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(send(filter, "POST", "/api/deposit").getStatus()).isEqualTo(200);
+            assertThat(send(filter, "GET", "/api/products/1").getStatus()).isEqualTo(200);
+        }
+        login("buyer", AuthoritiesConstants.BUYER);
+        for (int i = 0; i < 10; i++) {
+            assertThat(send(filter, "PUT", "/api/products/1").getStatus()).isEqualTo(200);
+        }
+    }
+
+    @Test
+    void testTokensComeBackOverTime() throws Exception {
+        RateLimitFilter filter = newFilter();
+        login("seller", AuthoritiesConstants.SELLER);
+
+        assertThat(send(filter, "PUT", "/api/products/1").getStatus()).isEqualTo(200);
+        assertThat(send(filter, "PUT", "/api/products/2").getStatus()).isEqualTo(429);
+
+        Thread.sleep(5);
+
+        assertThat(send(filter, "PUT", "/api/products/1").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void testUsersBeyondTheBoundAreNotLimited() throws Exception {
+        applicationProperties.getRateLimit().setMaxBuckets(1);
+        RateLimitFilter filter = newFilter();
+        // the deposit bucket takes seconds to fill up again, so it is not dropped to make room
+        login("buyer", AuthoritiesConstants.BUYER);
+        send(filter, "POST", "/api/deposit");
+
+        login("other", AuthoritiesConstants.BUYER);
+        for (int i = 0; i < 4; i++) {
+            assertThat(send(filter, "POST", "/api/deposit").getStatus()).isEqualTo(200);
+        }
+        assertThat(meterRegistry.get("vmachine.rate-limit.untracked").counter().count()).isEqualTo(4);
+    }
+
+    private RateLimitFilter newFilter() {
+        return new RateLimitFilter(applicationProperties, meterRegistry);
+    }
+
+    private static void login(String userName, String role) {
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(userName, null, List.of(new SimpleGrantedAuthority(role))));
+    }
+
+    private static MockHttpServletResponse send(RateLimitFilter filter, String method, String path) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, path), response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,56 @@
+package co.mvpmatch.benchmark;
+
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.User;
+import co.mvpmatch.service.dto.BuyResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of the {@code POST /api/buy} response body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuyResponseSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private BuyResponse response;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper().registerModule(new Hibernate5Module());
+        User seller = new User();
+        seller.setId(1L);
+        seller.setUsername("admin");
+        seller.setRole("SELLER");
+        response = new BuyResponse();
+        response.setProduct(new Product().id(1L).name("Steel").amountAvailable(41L).cost(65L).seller(seller));
+        response.setQuantity(2);
+        response.setTotalSpent(130L);
+        response.setDeposit(CoinVector.of(new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000), 1, 0, 1, 0, 0));
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
@@ -0,0 +1,74 @@
+package co.mvpmatch.benchmark;
+
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.service.change.ChangeEngine;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Change computation of a purchase, i.e. what {@code BuyerService.buy} pays back out of the deposit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChangeEngineBenchmark {
+
+    /**
+     * Deposit shapes seen on the machines: a few coins of each kind, a handful of large coins, a pile of
+     * small coins, and a deposit where greedy runs out of the right coins.
+     */
+    @Param({ "mixed", "largeCoins", "smallCoins", "greedyTrap" })
+    private String shape;
+
+    private ChangeEngine changeEngine;
+
+    private int[] available;
+
+    private int amount;
+
+    private int[] change;
+
+    @Setup
+    public void setup() {
+        changeEngine = new ChangeEngine(new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000));
+        change = new int[changeEngine.size()];
+        switch (shape) {
+            case "mixed":
+                available = new int[] { 3, 3, 3, 3, 3 };
+                amount = 365;
+                break;
+            case "largeCoins":
+                available = new int[] { 0, 0, 0, 2, 8 };
+                amount = 650;
+                break;
+            case "smallCoins":
+                available = new int[] { 120, 80, 40, 0, 0 };
+                amount = 1385;
+                break;
+            case "greedyTrap":
+                available = new int[] { 0, 0, 9, 1, 0 };
+                amount = 120;
+                break;
+            default:
+                throw new IllegalArgumentException(shape);
+        }
+    }
+
+    @Benchmark
+    public int makeChange() {
+        return changeEngine.makeChange(available, amount, change);
+    }
+}
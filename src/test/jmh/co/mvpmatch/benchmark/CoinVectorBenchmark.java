@@ -0,0 +1,56 @@
+package co.mvpmatch.benchmark;
+
+import co.mvpmatch.domain.CoinSet;
+import co.mvpmatch.domain.CoinVector;
+import co.mvpmatch.domain.User;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deposit arithmetic: the balance check done on every purchase and the persisted form of the deposit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoinVectorBenchmark {
+
+    private final CoinSet coinSet = new CoinSet(new int[] { 5, 10, 20, 50, 100 }, 2000);
+
+    private User user;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        user = new User();
+        user.setDeposit(CoinVector.of(coinSet, 7, 3, 12, 1, 4));
+        bytes = user.getDeposit().toBytes();
+    }
+
+    @Benchmark
+    public long getMoney() {
+        return user.getMoney();
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return user.getDeposit().toBytes();
+    }
+
+    @Benchmark
+    public CoinVector fromBytes() {
+        return CoinVector.fromBytes(coinSet, bytes);
+    }
+}
@@ -0,0 +1,53 @@
+package co.mvpmatch.benchmark;
+
+import co.mvpmatch.domain.Product;
+import co.mvpmatch.domain.User;
+import co.mvpmatch.service.dto.ProductDTO;
+import co.mvpmatch.service.dto.ProductMapper;
+import co.mvpmatch.service.dto.ProductMapperImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping done by {@code GET /api/products} on a large catalogue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductMapperBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    private final ProductMapper productMapper = new ProductMapperImpl();
+
+    private List<Product> products;
+
+    @Setup
+    public void setup() {
+        User seller = new User();
+        seller.setId(1L);
+        products = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            products.add(new Product().id(id).name("Product " + id).amountAvailable(id % 100).cost(5 * (id % 40 + 1)).seller(seller));
+        }
+    }
+
+    @Benchmark
+    public List<ProductDTO> productsToProductDTOs() {
+        return productMapper.productsToProductDTOs(products);
+    }
+}